@@ -5,11 +5,13 @@ import javafx.scene.control.Alert;
 import javafx.scene.image.Image;
 import javafx.stage.Stage;
 import org.json.JSONException;
-import org.json.JSONObject;
 import org.whstsa.library.api.BackgroundWorker;
 import org.whstsa.library.api.Callback;
+import org.whstsa.library.api.exceptions.LoadingException;
 import org.whstsa.library.api.exceptions.OutOfStockException;
+import org.whstsa.library.db.CirculationHistory;
 import org.whstsa.library.db.IOFileDelegate;
+import org.whstsa.library.db.Journal;
 import org.whstsa.library.db.Loader;
 import org.whstsa.library.gui.Config;
 import org.whstsa.library.gui.InterfaceManager;
@@ -23,6 +25,7 @@ import org.whstsa.library.util.Readline;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Reader;
 import java.io.UncheckedIOException;
 import java.net.URISyntaxException;
 import java.net.URL;
@@ -48,13 +51,6 @@ public class LibraryDB extends Application {
         return FILE_DELEGATE;
     }
 
-    private static JSONObject getJSONCommandLine() throws IOException, JSONException {
-        String path = READER.question("What is the path to the JSON file? (can be relative)");
-        boolean relative = READER.getBoolean("Is this file relative?");
-        FILE_DELEGATE = new IOFileDelegate(path, relative);
-        return FILE_DELEGATE.parse();
-    }
-
     public void start(Stage stage) {
         final String javaCWD = new File(".").getPath().replace("file:/", "");
 
@@ -82,6 +78,8 @@ public class LibraryDB extends Application {
                 this.config.setProperty("tooltips", "true");
                 this.config.setProperty("autosave", "true");
                 this.config.setProperty("autosaveInterval", "10");
+                this.config.setProperty("lazyLoading", "false");
+                this.config.setProperty("columnarCatalog", "false");
 
                 File dataFile = new File(Paths.get(javaCWD, "libraryDatabase.json").toUri());
                 if (!dataFile.exists()) {
@@ -136,9 +134,19 @@ public class LibraryDB extends Application {
         setDirectory(this.jsonRawFile.getParentFile().toString());
         try {
             FILE_DELEGATE = new IOFileDelegate(rawJSON);
-            JSONObject root = FILE_DELEGATE.parse();
-            Loader.getLoader().load(root);
-        } catch (UncheckedIOException | IOException | NullPointerException | JSONException ex) {
+            Loader.getLoader().setLazyLoading(Boolean.parseBoolean(this.config.getProperty("lazyLoading")));
+            Loader.getLoader().setColumnarCatalog(Boolean.parseBoolean(this.config.getProperty("columnarCatalog")));
+            FILE_DELEGATE.load(Loader.getLoader());
+            File journalFile = Journal.getJournalFile(rawJSON);
+            int replayed = 0;
+            try (Reader journalReader = Journal.openReader(journalFile)) {
+                if (journalReader != null) {
+                    replayed = Loader.getLoader().replay(journalReader);
+                }
+            }
+            Journal.getJournal().attach(FILE_DELEGATE, journalFile, replayed);
+            CirculationHistory.getHistory().attach(CirculationHistory.getHistoryFile(rawJSON));
+        } catch (UncheckedIOException | IOException | NullPointerException | JSONException | LoadingException ex) {
             Alert alert = DialogUtils.createDialog("Invalid file", "You have provided an invalid file. Please check that you chose the correct file, or try a new database.", null, Alert.AlertType.ERROR);
             alert.showAndWait();
             loadJSON(callback);
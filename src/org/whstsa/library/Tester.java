@@ -17,6 +17,9 @@ import org.whstsa.library.api.library.IMember;
 import org.whstsa.library.db.Loader;
 import org.whstsa.library.db.ObjectDelegate;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -55,7 +58,7 @@ public class Tester {
         this.testAllReturns();
         this.advanceTime(40);
         this.testAllReturns();
-        Loader.getLoader().load(this.computeJSON());
+        this.reloadJSON();
         try {
             this.testDeregistrationWhileHavingBooks();
         } catch (OutOfStockException | MaximumCheckoutsException e) {
@@ -241,8 +244,14 @@ public class Tester {
         }
     }
 
-    public JSONObject computeJSON() {
-        System.out.println("Computing JSON");
-        return Loader.getLoader().computeJSON();
+    public void reloadJSON() {
+        System.out.println("Saving and reloading JSON");
+        StringWriter writer = new StringWriter();
+        try {
+            Loader.getLoader().writeJSON(writer);
+            Loader.getLoader().load(new StringReader(writer.toString()));
+        } catch (IOException | LoadingException ex) {
+            ex.printStackTrace();
+        }
     }
 }
@@ -1,10 +1,13 @@
 package org.whstsa.library;
 
+import org.whstsa.library.api.DateUtils;
+
 import java.util.Date;
 
 public class World {
 
     private static Date currentDate = null;
+    private static volatile Day currentDay = new Day(Long.MIN_VALUE, 0, 0);
 
     public static Date getDate() {
         return currentDate == null ? new Date() : currentDate;
@@ -14,4 +17,36 @@ public class World {
         currentDate = date;
     }
 
+    /**
+     * Returns the current world date as a number of days since 1970-01-01 in the
+     * system time zone. The day is cached together with the span of time it covers,
+     * so it is only recomputed once the world date leaves that span.
+     *
+     * @return the current epoch day
+     */
+    public static long getEpochDay() {
+        Date date = currentDate;
+        long now = date == null ? System.currentTimeMillis() : date.getTime();
+        Day day = currentDay;
+        if (now < day.start || now >= day.end) {
+            long epochDay = DateUtils.toEpochDay(now);
+            day = new Day(epochDay, DateUtils.toEpochMillis(epochDay), DateUtils.toEpochMillis(epochDay + 1));
+            currentDay = day;
+        }
+        return day.epochDay;
+    }
+
+    private static class Day {
+
+        private final long epochDay;
+        private final long start;
+        private final long end;
+
+        private Day(long epochDay, long start, long end) {
+            this.epochDay = epochDay;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
 }
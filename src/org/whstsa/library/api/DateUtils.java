@@ -1,23 +1,67 @@
 package org.whstsa.library.api;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Date;
 
 public class DateUtils {
 
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSX");
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSX");
 
     public static String toDateString(Date date) {
-        return DATE_FORMAT.format(date);
+        return DATE_FORMAT.format(date.toInstant().atZone(ZoneId.systemDefault()));
     }
 
     public static Date fromDateString(String string) {
         try {
-            return DATE_FORMAT.parse(string);
-        } catch (ParseException e) {
+            return Date.from(OffsetDateTime.parse(string, DATE_FORMAT).toInstant());
+        } catch (DateTimeParseException e) {
             return null;
         }
     }
 
+    /**
+     * Formats an epoch day as {@code yyyy-MM-dd}
+     *
+     * @param epochDay the number of days since 1970-01-01
+     * @return the formatted day
+     */
+    public static String toDayString(long epochDay) {
+        return LocalDate.ofEpochDay(epochDay).toString();
+    }
+
+    /**
+     * Parses a day written by {@link #toDayString(long)}. Full timestamps written by
+     * {@link #toDateString(Date)} are accepted as well and resolve to the day they
+     * fall on in the system time zone.
+     *
+     * @param string the formatted day or timestamp
+     * @return the epoch day
+     * @throws IllegalArgumentException if the string is neither a day nor a timestamp
+     */
+    public static long fromDayString(String string) {
+        try {
+            return LocalDate.parse(string).toEpochDay();
+        } catch (DateTimeParseException ex) {
+            Date date = fromDateString(string);
+            if (date == null) {
+                throw new IllegalArgumentException("Invalid day " + string, ex);
+            }
+            return toEpochDay(date.getTime());
+        }
+    }
+
+    public static long toEpochDay(long epochMillis) {
+        return Instant.ofEpochMilli(epochMillis).atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+
+    public static long toEpochMillis(long epochDay) {
+        return LocalDate.ofEpochDay(epochDay).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    public static Date toDate(long epochDay) {
+        return new Date(toEpochMillis(epochDay));
+    }
+
 }
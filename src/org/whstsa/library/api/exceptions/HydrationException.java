@@ -0,0 +1,27 @@
+package org.whstsa.library.api.exceptions;
+
+import org.whstsa.library.api.library.ILibrary;
+
+/**
+ * Thrown when the members of a lazily loaded library could not be built.
+ * The library keeps its unbuilt members, so it is never saved without them.
+ */
+public class HydrationException extends RuntimeException {
+
+    private ILibrary library;
+
+    public HydrationException(ILibrary library, LoadingException cause) {
+        super(cause);
+        this.library = library;
+    }
+
+    public ILibrary getLibrary() {
+        return this.library;
+    }
+
+    @Override
+    public String getMessage() {
+        return "Couldn't load the members of " + this.library.getName() + ": " + this.getCause().getMessage();
+    }
+
+}
@@ -3,7 +3,9 @@ package org.whstsa.library.api.impl;
 import org.json.JSONObject;
 import org.whstsa.library.api.BookType;
 import org.whstsa.library.api.books.IBook;
+import org.whstsa.library.db.Journal;
 import org.whstsa.library.db.Loader;
+import org.whstsa.library.db.ObjectDelegate;
 
 import java.util.UUID;
 
@@ -18,10 +20,14 @@ public class Book implements IBook {
     private UUID uuid;
 
     public Book(String title, String authorName, BookType type) {
+        this(title, authorName, type, UUID.randomUUID());
+    }
+
+    public Book(String title, String authorName, BookType type, UUID uuid) {
         this.title = title;
         this.authorName = authorName;
         this.type = type;
-        this.uuid = UUID.randomUUID();
+        this.uuid = uuid;
     }
 
     @Override
@@ -53,6 +59,8 @@ public class Book implements IBook {
     @Override
     public void setType(BookType type) {
         this.type = type;
+        ObjectDelegate.reindex(this);
+        Journal.getJournal().recordBook(this);
     }
 
     @Override
@@ -68,11 +76,15 @@ public class Book implements IBook {
     @Override
     public void setTitle(String title) {
         this.title = title;
+        ObjectDelegate.reindex(this);
+        Journal.getJournal().recordBook(this);
     }
 
     @Override
     public void setAuthor(String authorName) {
         this.authorName = authorName;
+        ObjectDelegate.reindex(this);
+        Journal.getJournal().recordBook(this);
     }
 
     @Override
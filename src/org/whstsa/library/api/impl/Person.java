@@ -4,15 +4,16 @@ import org.json.JSONObject;
 import org.whstsa.library.api.IPerson;
 import org.whstsa.library.api.books.IBook;
 import org.whstsa.library.api.exceptions.MemberMismatchException;
+import org.whstsa.library.api.impl.library.Library;
 import org.whstsa.library.api.impl.library.Member;
 import org.whstsa.library.api.library.ILibrary;
 import org.whstsa.library.api.library.IMember;
+import org.whstsa.library.db.Journal;
 import org.whstsa.library.db.Loader;
 import org.whstsa.library.db.ObjectDelegate;
 import org.whstsa.library.util.Logger;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Created by eric on 11/18/17.
@@ -27,10 +28,14 @@ public class Person implements IPerson {
     private UUID uuid;
 
     public Person(String firstName, String lastName, boolean teacher) {
+        this(firstName, lastName, teacher, UUID.randomUUID());
+    }
+
+    public Person(String firstName, String lastName, boolean teacher, UUID uuid) {
         this.firstName = firstName;
         this.lastName = lastName;
         this.teacher = teacher;
-        this.uuid = UUID.randomUUID();
+        this.uuid = uuid;
     }
 
     public Person(String firstName, String lastName) {
@@ -104,6 +109,8 @@ public class Person implements IPerson {
     @Override
     public void setFirstName(String firstName) {
         this.firstName = firstName;
+        ObjectDelegate.reindex(this);
+        Journal.getJournal().recordPerson(this);
     }
 
     @Override
@@ -114,6 +121,8 @@ public class Person implements IPerson {
     @Override
     public void setLastName(String lastName) {
         this.lastName = lastName;
+        ObjectDelegate.reindex(this);
+        Journal.getJournal().recordPerson(this);
     }
 
     @Override
@@ -123,15 +132,21 @@ public class Person implements IPerson {
 
     @Override
     public void setTeacher(boolean teacher) {
+        if (this.teacher == teacher) {
+            return;
+        }
         this.teacher = teacher;
+        ObjectDelegate.getMembershipLibraries(this).forEach(library -> {
+            if (library instanceof Library) {
+                ((Library) library).impl_invalidateFines();
+            }
+        });
+        Journal.getJournal().recordPerson(this);
     }
 
     @Override
     public List<IMember> getMemberships() {
-        return ObjectDelegate.getLibraries().stream()
-                .filter(library -> library.hasMember(this))
-                .map(library -> library.getMember(this))
-                .collect(Collectors.toList());
+        return ObjectDelegate.getMemberships(this);
     }
 
     @Deprecated
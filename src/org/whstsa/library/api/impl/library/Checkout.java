@@ -7,28 +7,44 @@ import org.whstsa.library.api.books.IBook;
 import org.whstsa.library.api.exceptions.CheckedInException;
 import org.whstsa.library.api.library.ICheckout;
 import org.whstsa.library.api.library.IMember;
+import org.whstsa.library.db.CirculationHistory;
+import org.whstsa.library.db.CirculationRecord;
+import org.whstsa.library.db.Journal;
 
-import java.util.Calendar;
 import java.util.Date;
 import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class Checkout implements ICheckout {
 
     public static final double LATE_FEE = 0.5;
     public static final double LATE_FEE_TEACHER = 0.25;
+    public static final long UNKNOWN_DAY = -1;
     private static final int DUE_DATE_DAYS_LATER = 7;
     private IMember member;
     private IBook book;
-    private Date dueDate;
-    private boolean returned;
+    private volatile long dueDay;
+    private long checkoutDay;
+    private volatile boolean returned;
+    private final Lock localLock = new ReentrantLock();
     private UUID uuid;
 
     public Checkout(IMember member, IBook book) {
+        this(member, book, UUID.randomUUID(), computeDueDay());
+    }
+
+    public Checkout(IMember member, IBook book, UUID uuid, long dueDay) {
+        this(member, book, uuid, dueDay, World.getEpochDay());
+    }
+
+    public Checkout(IMember member, IBook book, UUID uuid, long dueDay, long checkoutDay) {
         this.member = member;
         this.book = book;
-        this.uuid = UUID.randomUUID();
+        this.uuid = uuid;
         this.returned = false;
-        this.resetDueDate();
+        this.dueDay = dueDay;
+        this.checkoutDay = checkoutDay;
     }
 
     public void impl_setID(UUID uuid) {
@@ -39,17 +55,24 @@ public class Checkout implements ICheckout {
         this.returned = returned;
     }
 
-    public void impl_setDueDate(Date dueDate) {
-        this.dueDate = dueDate;
+    public void impl_setDueDay(long dueDay) {
+        this.moveDueDay(dueDay);
     }
 
     @Override
     public JSONObject toJSON() {
+        return toJSON(this.uuid, this.book.getID(), this.dueDay, this.checkoutDay, this.returned);
+    }
+
+    static JSONObject toJSON(UUID uuid, UUID bookID, long dueDay, long checkoutDay, boolean returned) {
         JSONObject object = new JSONObject();
-        object.put("uuid", this.uuid);
-        object.put("dueDate", DateUtils.toDateString(this.dueDate));
-        object.put("returned", this.returned);
-        object.put("bookID", this.book.getID());
+        object.put("uuid", uuid);
+        object.put("dueDate", DateUtils.toDayString(dueDay));
+        if (checkoutDay != UNKNOWN_DAY) {
+            object.put("checkoutDate", DateUtils.toDayString(checkoutDay));
+        }
+        object.put("returned", returned);
+        object.put("bookID", bookID);
         return object;
     }
 
@@ -70,15 +93,23 @@ public class Checkout implements ICheckout {
 
     @Override
     public Date getDueDate() {
-        return this.dueDate;
+        return DateUtils.toDate(this.dueDay);
+    }
+
+    @Override
+    public long getDueDay() {
+        return this.dueDay;
+    }
+
+    @Override
+    public long getCheckoutDay() {
+        return this.checkoutDay;
     }
 
     @Override
     public void resetDueDate() {
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(World.getDate());
-        cal.add(Calendar.DAY_OF_MONTH, DUE_DATE_DAYS_LATER);
-        this.dueDate = cal.getTime();
+        this.moveDueDay(computeDueDay());
+        Journal.getJournal().recordDueDate(this);
     }
 
     @Override
@@ -96,16 +127,7 @@ public class Checkout implements ICheckout {
 
     @Override
     public int getDaysPast() {
-        Date now = World.getDate();
-        if (now.after(this.dueDate)) {
-            Calendar nowCal = Calendar.getInstance();
-            Calendar dueCal = Calendar.getInstance();
-            nowCal.setTime(now);
-            dueCal.setTime(this.dueDate);
-            long millisDiff = nowCal.getTimeInMillis() - dueCal.getTimeInMillis();
-            return (int) Math.ceil((float) millisDiff / (24 * 60 * 60 * 1000));
-        }
-        return 0;
+        return daysPast(this.dueDay, World.getEpochDay());
     }
 
     @Override
@@ -120,10 +142,53 @@ public class Checkout implements ICheckout {
 
     @Override
     public void checkIn() throws CheckedInException {
-        if (this.returned) {
-            throw new CheckedInException(this);
+        this.checkIn(true);
+    }
+
+    /**
+     * Checks in a checkout whose return is being replayed from the journal. The return
+     * is not added to the {@link CirculationHistory} again: the history is committed
+     * before the journal, so it already holds every return the journal holds.
+     *
+     * @throws CheckedInException thrown when the checkout was already checked in
+     */
+    public void impl_replayReturn() throws CheckedInException {
+        this.checkIn(false);
+    }
+
+    /**
+     * Returns this checkout under the lock of its library. The history record and the
+     * journal entry are built under the lock, so they describe the checkout as it was
+     * returned, but they are only recorded once the lock is released, so other readers
+     * and writers of the library do not wait on the history and the journal.
+     */
+    private void checkIn(boolean record) throws CheckedInException {
+        CirculationRecord historyRecord;
+        JSONObject returnEntry;
+        Lock lock = this.getWriteLock();
+        lock.lock();
+        try {
+            if (this.returned) {
+                throw new CheckedInException(this);
+            }
+            this.returned = true;
+            if (this.member.getLibrary() instanceof Library) {
+                ((Library) this.member.getLibrary()).onReturn(this);
+            }
+            if (this.member instanceof Member) {
+                ((Member) this.member).onReturn(this);
+            }
+            if (!record) {
+                return;
+            }
+            long returnDay = World.getEpochDay();
+            historyRecord = CirculationHistory.createRecord(this, returnDay);
+            returnEntry = Journal.createReturnEntry(this, returnDay);
+        } finally {
+            lock.unlock();
         }
-        this.returned = true;
+        CirculationHistory.getHistory().record(historyRecord);
+        Journal.getJournal().recordReturn(returnEntry);
     }
 
     @Override
@@ -131,8 +196,53 @@ public class Checkout implements ICheckout {
         return this.getBook().getName();
     }
 
+    private void moveDueDay(long dueDay) {
+        Lock lock = this.getWriteLock();
+        lock.lock();
+        try {
+            long previousDueDay = this.dueDay;
+            this.dueDay = dueDay;
+            if (previousDueDay != dueDay && this.member.getLibrary() instanceof Library) {
+                ((Library) this.member.getLibrary()).onDueDateChange(this, previousDueDay);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the lock guarding the circulation state of the library of this checkout
+     */
+    private Lock getWriteLock() {
+        return this.member instanceof Member ? ((Member) this.member).getLock().writeLock() : this.localLock;
+    }
+
+    private static long computeDueDay() {
+        return World.getEpochDay() + DUE_DATE_DAYS_LATER;
+    }
+
     private double getMultiplier() {
-        return this.getOwner().getPerson().isTeacher() ? LATE_FEE_TEACHER : LATE_FEE;
+        return getMultiplier(this.getOwner());
+    }
+
+    /**
+     * Computes the fine a checkout of a member would have on a given day
+     *
+     * @param member the owner of the checkout
+     * @param dueDay the due epoch day of the checkout
+     * @param day    the epoch day to compute the fine on
+     * @return the fine
+     */
+    static double computeFine(IMember member, long dueDay, long day) {
+        return daysPast(dueDay, day) * getMultiplier(member);
+    }
+
+    private static int daysPast(long dueDay, long day) {
+        return day > dueDay ? (int) (day - dueDay) : 0;
+    }
+
+    private static double getMultiplier(IMember member) {
+        return member.getPerson().isTeacher() ? LATE_FEE_TEACHER : LATE_FEE;
     }
 
 }
@@ -1,50 +1,123 @@
 package org.whstsa.library.api.impl.library;
 
-import org.json.JSONArray;
 import org.json.JSONObject;
+import org.json.JSONString;
+import org.whstsa.library.World;
+import org.whstsa.library.api.BookType;
 import org.whstsa.library.api.IPerson;
 import org.whstsa.library.api.books.IBook;
 import org.whstsa.library.api.exceptions.*;
 import org.whstsa.library.api.library.ICheckout;
 import org.whstsa.library.api.library.ILibrary;
+import org.whstsa.library.api.library.ILibrarySnapshot;
 import org.whstsa.library.api.library.IMember;
+import org.whstsa.library.db.Journal;
 import org.whstsa.library.db.Loader;
 import org.whstsa.library.db.ObjectDelegate;
+import org.whstsa.library.util.UUIDIntMap;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
 
 /**
- *
+ * A library and the books and members it holds.
+ * <p>
+ * Libraries are shared between the JavaFX thread, the console, the autosave thread and
+ * the background worker. The book and member lists are copy-on-write and the ID indexes
+ * are concurrent maps, so they can be iterated and looked up without locking. Everything
+ * else, including the checkouts of the members of the library, is guarded by the
+ * read/write lock of the library: readers share it and writers on different libraries
+ * never contend. Code holding the read lock must never try to take the write lock.
+ * <p>
+ * The available copies of every title are kept in an atomic counter beside the lock.
+ * {@link #reserveBook(IMember, IBook, int)} claims a copy from it before the checkout is
+ * recorded, so concurrent reservations can never check out more copies than a title has.
+ * <p>
+ * Snapshots of the library are published lazily. A change only marks the latest
+ * {@link LibrarySnapshot} stale and remembers which members it touched; the next reader
+ * that asks for a snapshot publishes a new version under the write lock, sharing every
+ * untouched part with the previous one. Until the library changes again, readers that
+ * only need a consistent view of it get that version without taking the lock.
  */
 public class Library implements ILibrary {
 
+    private static final BookType[] BOOK_TYPES = BookType.values();
+    private static final int DEFAULT_QUANTITY = 5;
+    private static final AtomicReferenceFieldUpdater<Library, FineLedger> FINE_LEDGER = AtomicReferenceFieldUpdater.newUpdater(Library.class, FineLedger.class, "fineLedger");
+    private static final AtomicReferenceFieldUpdater<Library, TypeCounts> TYPE_COUNTS = AtomicReferenceFieldUpdater.newUpdater(Library.class, TypeCounts.class, "typeCounts");
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object hydrationMonitor = new Object();
+
     private List<IBook> books;
+    private List<IBook> bookView;
+    private Map<UUID, IBook> bookIndex;
+    private Map<UUID, IBook> bookIndexView;
+    private BitSet bookSet;
     private List<IMember> members;
-    private Map<UUID, Integer> bookQuantity;
+    private List<IMember> memberView;
+    private Map<UUID, IMember> memberIndex;
+    private Map<UUID, IMember> memberIndexView;
+    private Map<IPerson, IMember> personIndex;
+    private Map<IPerson, IMember> personIndexView;
+    private Map<UUID, List<ICheckout>> circulation;
+    private int[] checkedOutCounts;
+    private NavigableMap<Long, List<ICheckout>> dueIndex;
+    private volatile FineLedger fineLedger;
+    private volatile MemberHydrator hydrator;
+    private volatile HydrationException hydrationFailure;
+    private UUIDIntMap bookQuantity;
+    private volatile TypeCounts typeCounts;
+    private final Map<UUID, AtomicInteger> stock = new ConcurrentHashMap<>();
+    /**
+     * Checkouts made by {@link #reserveBook(IMember, IBook, int)} whose copy has already
+     * been claimed from {@link #stock}. Every other checkout that is put into circulation
+     * takes its copy from the stock then. Whoever removes a checkout from this set owns
+     * its claim: circulating the checkout consumes it, and a reservation that fails
+     * before its checkout is circulated gives the copy back.
+     */
+    private final Set<ICheckout> claimedCheckouts = ConcurrentHashMap.newKeySet();
+    private volatile LibrarySnapshot snapshot;
+    private LibrarySnapshot lastSnapshot;
+    private final Map<IMember, Integer> memberSlots = new IdentityHashMap<>();
+    private final Map<Integer, IMember> changedMemberSlots = new HashMap<>();
+    private boolean booksChanged;
+    private int nextMemberSlot;
+    private int removedMemberSlots;
+    private long version;
 
     private String name;
 
     private UUID uuid;
 
     public Library(String name) {
-        this.books = new ArrayList<>();
-        this.members = new ArrayList<>();
+        this(name, UUID.randomUUID());
+    }
+
+    public Library(String name, UUID uuid) {
+        this.setBookList(new ArrayList<>());
+        this.setMemberList(new ArrayList<>());
         this.name = name;
-        this.uuid = UUID.randomUUID();
-        this.bookQuantity = new HashMap<>();
+        this.uuid = uuid;
+        this.bookQuantity = new UUIDIntMap();
     }
 
     public static ILibrary findLibrary(UUID memberID) {
-        return ObjectDelegate.getLibraries()
-                .stream()
-                .filter(library -> library.getMemberIDs().contains(memberID))
-                .collect(Collectors.toList())
-                .get(0);
+        return ObjectDelegate.getMemberLibrary(memberID);
     }
 
     public void impl_setBookList(List<IBook> bookList) {
-        this.books = bookList;
+        this.lock.writeLock().lock();
+        try {
+            this.setBookList(bookList);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
     }
 
     public void impl_setID(UUID uuid) {
@@ -52,59 +125,562 @@ public class Library implements ILibrary {
     }
 
     public void impl_setMembers(List<IMember> members) {
-        this.members = members;
+        synchronized (this.hydrationMonitor) {
+            this.lock.writeLock().lock();
+            try {
+                this.setMemberList(members);
+                this.hydrator = null;
+                this.hydrationFailure = null;
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        }
     }
 
-    @Override
-    public JSONObject toJSON() {
-        JSONObject object = new JSONObject();
+    /**
+     * Defers building the members of this library until they are first accessed
+     *
+     * @param hydrator the hydrator that builds the members
+     */
+    public void impl_setHydrator(MemberHydrator hydrator) {
+        this.lock.writeLock().lock();
+        try {
+            this.hydrator = hydrator;
+            this.snapshot = null;
+            this.lastSnapshot = null;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public void impl_removeMember(IMember member) {
+        this.ensureHydrated();
+        this.lock.writeLock().lock();
+        try {
+            if (this.members.remove(member)) {
+                this.unindexMember(member);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the lock that guards this library and the checkouts of its members
+     *
+     * @return the lock
+     */
+    ReentrantReadWriteLock getLock() {
+        return this.lock;
+    }
+
+    private void setBookList(List<IBook> bookList) {
+        this.books = new CopyOnWriteArrayList<>(bookList);
+        this.bookView = Collections.unmodifiableList(this.books);
+        this.bookIndex = new ConcurrentHashMap<>();
+        this.bookIndexView = Collections.unmodifiableMap(this.bookIndex);
+        this.bookSet = new BitSet();
+        this.typeCounts = null;
+        this.markBooksChanged();
+        this.books.forEach(book -> {
+            if (book != null) {
+                this.bookIndex.put(book.getID(), book);
+                this.bookSet.set(Loader.getLoader().internID(book.getID()));
+            }
+        });
+    }
+
+    private void setMemberList(List<IMember> memberList) {
+        this.members = new CopyOnWriteArrayList<>(memberList);
+        this.memberView = Collections.unmodifiableList(this.members);
+        this.memberIndex = new ConcurrentHashMap<>();
+        this.memberIndexView = Collections.unmodifiableMap(this.memberIndex);
+        this.personIndex = new ConcurrentHashMap<>();
+        this.personIndexView = Collections.unmodifiableMap(this.personIndex);
+        this.circulation = new HashMap<>();
+        this.checkedOutCounts = new int[0];
+        this.dueIndex = new TreeMap<>();
+        this.fineLedger = null;
+        this.typeCounts = null;
+        this.stock.clear();
+        this.snapshot = null;
+        this.lastSnapshot = null;
+        this.members.forEach(this::indexMember);
+    }
+
+    private void indexMember(IMember member) {
+        this.memberIndex.put(member.getID(), member);
+        Loader.getLoader().registerMember(member, this);
+        if (member.getPerson() != null) {
+            this.personIndex.put(member.getPerson(), member);
+            Loader.getLoader().indexMembership(member.getPerson().getID(), this);
+        }
+        member.getCheckouts(true).forEach(this::circulate);
+        this.markMemberChanged(member);
+    }
+
+    private void unindexMember(IMember member) {
+        this.memberIndex.remove(member.getID());
+        Loader.getLoader().unregisterMember(member.getID(), this);
+        if (member.getPerson() != null) {
+            this.personIndex.remove(member.getPerson(), member);
+            if (!this.personIndex.containsKey(member.getPerson())) {
+                Loader.getLoader().unindexMembership(member.getPerson().getID(), this);
+            }
+        }
+        member.getCheckouts(true).forEach(this::uncirculate);
+        this.markMemberChanged(member);
+    }
+
+    private void circulate(ICheckout checkout) {
+        this.circulation.computeIfAbsent(checkout.getBook().getID(), id -> new ArrayList<>()).add(checkout);
+        int bookID = Loader.getLoader().internID(checkout.getBook().getID());
+        if (bookID >= this.checkedOutCounts.length) {
+            this.checkedOutCounts = Arrays.copyOf(this.checkedOutCounts, Math.max(bookID + 1, this.checkedOutCounts.length * 2));
+        }
+        this.checkedOutCounts[bookID]++;
+        if (!this.claimedCheckouts.remove(checkout)) {
+            this.adjustStock(checkout.getBook().getID(), -1);
+        }
+        TypeCounts typeCounts = this.typeCounts;
+        if (typeCounts != null && this.bookSet.get(bookID)) {
+            typeCounts.checkedOut[typeCounts.types[bookID]]++;
+        }
+        this.schedule(checkout, checkout.getDueDay());
+        this.markMemberChanged(checkout.getOwner());
+    }
+
+    private void uncirculate(ICheckout checkout) {
+        UUID bookID = checkout.getBook().getID();
+        List<ICheckout> checkouts = this.circulation.get(bookID);
+        if (checkouts != null && checkouts.remove(checkout)) {
+            int denseID = Loader.getLoader().getDenseID(bookID);
+            this.checkedOutCounts[denseID]--;
+            this.adjustStock(bookID, 1);
+            TypeCounts typeCounts = this.typeCounts;
+            if (typeCounts != null && this.bookSet.get(denseID)) {
+                typeCounts.checkedOut[typeCounts.types[denseID]]--;
+            }
+            if (checkouts.isEmpty()) {
+                this.circulation.remove(bookID);
+            }
+        }
+        this.unschedule(checkout, checkout.getDueDay());
+        this.markMemberChanged(checkout.getOwner());
+    }
+
+    /**
+     * Returns the latest snapshot of this library, publishing a new version if the
+     * library has changed since the last one was published. Must not be called while
+     * holding the read lock.
+     */
+    private LibrarySnapshot getSnapshot() {
+        LibrarySnapshot snapshot = this.snapshot;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        this.lock.writeLock().lock();
+        try {
+            snapshot = this.snapshot;
+            if (snapshot == null) {
+                snapshot = this.publishSnapshot();
+                this.snapshot = snapshot;
+            }
+            return snapshot;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Builds the next version from the last published one. Only the chunks of the
+     * members that changed since then are copied, and the books and quantities are only
+     * copied if they changed. The slots are compacted by building the version from
+     * scratch once removed members take up more slots than the remaining ones.
+     */
+    private LibrarySnapshot publishSnapshot() {
+        LibrarySnapshot previous = this.lastSnapshot;
+        LibrarySnapshot next;
+        if (previous == null || this.removedMemberSlots > this.memberSlots.size()) {
+            next = this.buildSnapshot();
+        } else {
+            next = previous.withChanges(++this.version, this.name, this.booksChanged ? this.books : null, this.booksChanged ? this.bookQuantity : null, this.changedMemberSlots);
+        }
+        this.changedMemberSlots.clear();
+        this.booksChanged = false;
+        this.lastSnapshot = next;
+        return next;
+    }
+
+    private LibrarySnapshot buildSnapshot() {
+        List<IMember> members = new ArrayList<>(this.members);
+        this.memberSlots.clear();
+        for (int slot = 0; slot < members.size(); slot++) {
+            this.memberSlots.put(members.get(slot), slot);
+        }
+        this.nextMemberSlot = members.size();
+        this.removedMemberSlots = 0;
+        return LibrarySnapshot.of(++this.version, this.uuid, this.name, this.books, this.bookQuantity, this.hydrator, members);
+    }
+
+    /**
+     * Marks the snapshot stale after the checkouts of a member changed, or after it was
+     * added to or removed from this library. Nothing is copied until the next snapshot
+     * is asked for.
+     */
+    private void markMemberChanged(IMember member) {
+        this.snapshot = null;
+        if (this.lastSnapshot == null) {
+            return;
+        }
+        boolean indexed = this.isIndexed(member);
+        Integer slot = this.memberSlots.get(member);
+        if (slot == null) {
+            if (!indexed) {
+                return;
+            }
+            slot = this.nextMemberSlot++;
+            this.memberSlots.put(member, slot);
+        } else if (!indexed) {
+            this.memberSlots.remove(member);
+            this.removedMemberSlots++;
+        }
+        this.changedMemberSlots.put(slot, indexed ? member : null);
+    }
+
+    private void markBooksChanged() {
+        this.snapshot = null;
+        this.booksChanged = true;
+    }
+
+    /**
+     * Claims one available copy of a book. Copies are claimed with compare-and-set on
+     * the counter of the title alone, so reservations of different titles never contend
+     * and a title can never be claimed more times than it has copies.
+     *
+     * @param id the ID of the book
+     * @return whether a copy was claimed
+     */
+    private boolean claimStock(UUID id) {
+        AtomicInteger available = this.stock.get(id);
+        if (available == null) {
+            this.lock.readLock().lock();
+            try {
+                available = this.stock.computeIfAbsent(id, key -> new AtomicInteger(this.bookQuantity.getInt(key, 0) - this.countCheckedOut(Loader.getLoader().getDenseID(key))));
+            } finally {
+                this.lock.readLock().unlock();
+            }
+        }
+        int copies;
+        do {
+            copies = available.get();
+            if (copies <= 0) {
+                return false;
+            }
+        } while (!available.compareAndSet(copies, copies - 1));
+        return true;
+    }
+
+    private void adjustStock(UUID id, int delta) {
+        AtomicInteger available = this.stock.get(id);
+        if (available != null) {
+            available.addAndGet(delta);
+        }
+    }
+
+    private int countCheckedOut(int bookID) {
+        return bookID >= 0 && bookID < this.checkedOutCounts.length ? this.checkedOutCounts[bookID] : 0;
+    }
+
+    private void schedule(ICheckout checkout, long dueDay) {
+        this.dueIndex.computeIfAbsent(dueDay, day -> new ArrayList<>(1)).add(checkout);
+        this.accrue(checkout, dueDay, 1);
+    }
+
+    private boolean unschedule(ICheckout checkout, long dueDay) {
+        List<ICheckout> checkouts = this.dueIndex.get(dueDay);
+        if (checkouts == null || !checkouts.remove(checkout)) {
+            return false;
+        }
+        if (checkouts.isEmpty()) {
+            this.dueIndex.remove(dueDay);
+        }
+        this.accrue(checkout, dueDay, -1);
+        return true;
+    }
+
+    private void accrue(ICheckout checkout, long dueDay, int sign) {
+        FineLedger fineLedger = this.fineLedger;
+        if (fineLedger != null) {
+            fineLedger.accrue(checkout, dueDay, sign);
+        }
+    }
+
+    /**
+     * Returns the fine ledger of the current world date. The ledger is only accrued
+     * again when the date has moved since it was published, and then only the overdue
+     * checkouts are visited; checkout changes in between are applied to the published
+     * ledger by the writers as they happen.
+     * <p>
+     * Accruing only reads the due date index, so it is done under the read lock, which
+     * keeps writers out until the new ledger has been published. Readers accruing at the
+     * same time build equal ledgers and the first one published is kept.
+     */
+    private FineLedger getFineLedger() {
+        long today = World.getEpochDay();
+        FineLedger fineLedger = this.fineLedger;
+        if (fineLedger != null && fineLedger.day == today) {
+            return fineLedger;
+        }
+        this.lock.readLock().lock();
+        try {
+            fineLedger = this.fineLedger;
+            if (fineLedger != null && fineLedger.day == today) {
+                return fineLedger;
+            }
+            FineLedger accrued = new FineLedger(today);
+            this.dueIndex.headMap(today, false).forEach((dueDay, checkouts) -> checkouts.forEach(checkout -> accrued.accrue(checkout, dueDay, 1)));
+            FINE_LEDGER.compareAndSet(this, fineLedger, accrued);
+            return accrued;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private boolean isIndexed(IMember member) {
+        return this.memberIndex.get(member.getID()) == member;
+    }
+
+    /**
+     * Called by {@link Member} when a checkout has been added to one of its members
+     *
+     * @param checkout the new checkout
+     */
+    void onCheckout(ICheckout checkout) {
+        this.lock.writeLock().lock();
+        try {
+            if (!checkout.isReturned() && this.isIndexed(checkout.getOwner())) {
+                this.circulate(checkout);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Called by {@link Checkout} when a checkout of one of its members has been returned
+     *
+     * @param checkout the returned checkout
+     */
+    void onReturn(ICheckout checkout) {
+        this.lock.writeLock().lock();
+        try {
+            if (this.isIndexed(checkout.getOwner())) {
+                this.uncirculate(checkout);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Called by {@link Checkout} when the due date of a checkout of one of its members has moved
+     *
+     * @param checkout       the checkout
+     * @param previousDueDay the due epoch day before it was moved
+     */
+    void onDueDateChange(ICheckout checkout, long previousDueDay) {
+        this.lock.writeLock().lock();
+        try {
+            if (this.isIndexed(checkout.getOwner()) && this.unschedule(checkout, previousDueDay)) {
+                this.schedule(checkout, checkout.getDueDay());
+                this.markMemberChanged(checkout.getOwner());
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the accrued fine of a member of this library
+     *
+     * @param member the member
+     * @return the fine, or null if the member is not tracked by this library
+     */
+    Double getAccruedFine(IMember member) {
+        if (!this.isIndexed(member)) {
+            return null;
+        }
+        return this.getFineLedger().balances.getOrDefault(member, 0.0);
+    }
+
+    /**
+     * Discards the fine ledger so it is rebuilt the next time it is read. Used when
+     * something other than a checkout changes the fines, such as a member becoming
+     * a teacher.
+     */
+    public void impl_invalidateFines() {
+        this.lock.writeLock().lock();
+        try {
+            this.fineLedger = null;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Moves a book of this library to the counters of its current book type. Called
+     * whenever the type of a loaded book changes.
+     *
+     * @param book the book
+     */
+    public void impl_updateBookType(IBook book) {
+        int bookID = Loader.getLoader().getDenseID(book.getID());
+        if (this.typeCounts == null || bookID < 0) {
+            return;
+        }
+        this.lock.writeLock().lock();
+        try {
+            TypeCounts typeCounts = this.typeCounts;
+            if (typeCounts == null || !this.bookSet.get(bookID)) {
+                return;
+            }
+            int previousType = typeCounts.types[bookID];
+            int type = book.getType().ordinal();
+            if (previousType != type) {
+                this.countBook(typeCounts, book, bookID, previousType, -1);
+                this.countBook(typeCounts, book, bookID, type, 1);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
 
-        JSONArray books = new JSONArray();
-        this.books.forEach(book -> books.put(book.getID()));
-        object.put("books", books);
+    /**
+     * Returns the book type counters of this library, building them from its books the
+     * first time. After that they are kept up to date by the writers as books,
+     * quantities, types and checkouts change. Must be called while holding the read
+     * lock, which keeps writers out while the counters are built; readers building them
+     * at the same time count the same books and the first counters published are kept.
+     */
+    private TypeCounts countTypes() {
+        TypeCounts typeCounts = this.typeCounts;
+        if (typeCounts != null) {
+            return typeCounts;
+        }
+        TypeCounts counted = new TypeCounts();
+        this.books.forEach(book -> {
+            if (book != null) {
+                this.countBook(counted, book, Loader.getLoader().internID(book.getID()), book.getType().ordinal(), 1);
+            }
+        });
+        return TYPE_COUNTS.compareAndSet(this, null, counted) ? counted : this.typeCounts;
+    }
 
-        JSONArray members = new JSONArray();
-        this.members.forEach(member -> members.put(member.toJSON()));
-        object.put("members", members);
+    private void countBook(TypeCounts typeCounts, IBook book, int bookID, int type, int sign) {
+        if (bookID >= typeCounts.types.length) {
+            typeCounts.types = Arrays.copyOf(typeCounts.types, Math.max(bookID + 1, typeCounts.types.length * 2));
+        }
+        typeCounts.types[bookID] = (byte) type;
+        typeCounts.titles[type] += sign;
+        typeCounts.copies[type] += sign * this.bookQuantity.getInt(book.getID(), 0);
+        typeCounts.checkedOut[type] += sign * this.countCheckedOut(bookID);
+    }
 
-        object.put("uuid", this.uuid.toString());
+    private void putQuantity(UUID id, int amount) {
+        int previousAmount = this.bookQuantity.getInt(id, 0);
+        this.bookQuantity.putInt(id, amount);
+        this.adjustStock(id, amount - previousAmount);
+        this.markBooksChanged();
+        int bookID = Loader.getLoader().getDenseID(id);
+        TypeCounts typeCounts = this.typeCounts;
+        if (typeCounts != null && bookID >= 0 && this.bookSet.get(bookID)) {
+            typeCounts.copies[typeCounts.types[bookID]] += amount - previousAmount;
+        }
+    }
 
-        object.put("name", this.name);
+    @Override
+    public JSONObject toJSON() {
+        this.checkHydrated();
+        MemberHydrator hydrator = this.hydrator;
+        if (hydrator != null && !(hydrator instanceof JSONString)) {
+            this.ensureHydrated();
+        }
+        return this.getSnapshot().toJSON();
+    }
 
-        JSONObject quantities = new JSONObject();
-        this.bookQuantity.forEach((id, quantity) -> quantities.put(id.toString(), quantity));
-        object.put("quantities", quantities);
+    /**
+     * Returns the latest snapshot of this library without building its members if they
+     * have not been loaded yet. The members of such a snapshot are left to its
+     * {@link LibrarySnapshot#getHydrator() hydrator}.
+     *
+     * @return the snapshot
+     */
+    public LibrarySnapshot impl_getSnapshot() {
+        return this.getSnapshot();
+    }
 
-        return object;
+    @Override
+    public ILibrarySnapshot snapshot() {
+        this.ensureHydrated();
+        return this.getSnapshot();
     }
 
     @Override
     public void addBook(IBook book, int quantity) {
-        if (this.books.contains(book)) {
-            return;
+        this.lock.writeLock().lock();
+        try {
+            if (this.bookIndex.containsKey(book.getID())) {
+                return;
+            }
+            this.books.add(book);
+            this.bookIndex.put(book.getID(), book);
+            int bookID = Loader.getLoader().internID(book.getID());
+            this.bookSet.set(bookID);
+            TypeCounts typeCounts = this.typeCounts;
+            if (typeCounts != null) {
+                this.countBook(typeCounts, book, bookID, book.getType().ordinal(), 1);
+            }
+            Journal.getJournal().recordAddBook(this, book);
+            this.setQuantity(book.getID(), quantity);
+        } finally {
+            this.lock.writeLock().unlock();
         }
-        this.books.add(book);
-        this.setQuantity(book.getID(), quantity);
     }
 
     @Override
     public void removeBook(IBook book) {
-        for (IMember member : this.members) {
-            if (member.hasBook(book)) {
+        if (book == null) {
+            return;
+        }
+        this.ensureHydrated();
+        this.lock.writeLock().lock();
+        try {
+            if (this.getCheckedOutCount(book.getID()) > 0) {
                 throw new InCirculationException(this, book);
             }
+            if (this.bookIndex.remove(book.getID()) != null) {
+                this.books.remove(book);
+                int bookID = Loader.getLoader().getDenseID(book.getID());
+                TypeCounts typeCounts = this.typeCounts;
+                if (typeCounts != null) {
+                    this.countBook(typeCounts, book, bookID, typeCounts.types[bookID], -1);
+                }
+                this.bookSet.clear(bookID);
+                this.stock.remove(book.getID());
+                this.markBooksChanged();
+                Journal.getJournal().recordRemoveBook(this, book);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
         }
-        this.books.remove(book);
     }
 
     @Override
     public void addBook(UUID id) {
         IBook book = ObjectDelegate.getBook(id);
         if (book != null) {
-            if (!this.books.contains(book)) {
-                this.books.add(book);
-                this.setQuantity(id, 5);
-            }
+            this.addBook(book, DEFAULT_QUANTITY);
         }
     }
 
@@ -115,14 +691,12 @@ public class Library implements ILibrary {
 
     @Override
     public List<IBook> getBooks() {
-        return this.books;
+        return this.bookView;
     }
 
     @Override
     public Map<UUID, IBook> getBookMap() {
-        Map<UUID, IBook> bookMap = new HashMap<>();
-        this.books.forEach(book -> bookMap.put(book.getID(), book));
-        return bookMap;
+        return this.bookIndexView;
     }
 
     @Override
@@ -139,18 +713,36 @@ public class Library implements ILibrary {
 
     @Override
     public ICheckout reserveBook(IMember member, IBook book, int quantity) throws BookNotRegisteredException, OutOfStockException, MaximumCheckoutsException {
-        if (!this.bookQuantity.containsKey(book.getID())) {
-            this.bookQuantity.put(book.getID(), 5);
-        }
-        if (this.bookQuantity.get(book.getID()) == null || checkOutOfStock(book)) {
-            throw new OutOfStockException(book, this);
+        this.ensureHydrated();
+        this.lock.writeLock().lock();
+        try {
+            if (!this.bookQuantity.containsKey(book.getID())) {
+                this.putQuantity(book.getID(), DEFAULT_QUANTITY);
+                Journal.getJournal().recordQuantity(this, book.getID(), DEFAULT_QUANTITY);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
         }
-        if (member.getCheckouts().size() == (member.getPerson().isTeacher() ? 10 : 5)) {
+        if (!(member instanceof Member) && member.getCheckouts().size() >= Member.getCheckoutLimit(member)) {
             throw new MaximumCheckoutsException(member);
         }
+        if (!this.claimStock(book.getID())) {
+            throw new OutOfStockException(book, this);
+        }
         ICheckout checkout = new Checkout(member, book);
-        member.checkout(checkout);
-        this.bookQuantity.put(book.getID(), bookQuantity.get(book.getID()));
+        this.claimedCheckouts.add(checkout);
+        try {
+            if (member instanceof Member) {
+                // the limit is checked under the lock the checkout is recorded under
+                ((Member) member).reserve(checkout);
+            } else {
+                member.checkout(checkout);
+            }
+        } finally {
+            if (this.claimedCheckouts.remove(checkout)) {
+                this.adjustStock(book.getID(), 1);
+            }
+        }
         return checkout;
     }
 
@@ -159,15 +751,24 @@ public class Library implements ILibrary {
         if (member.getLibrary() != this) {
             throw new MemberMismatchException("Member is not created for this library.");
         }
-        if (!this.members.contains(member) && !this.getPeople().contains(member.getPerson())) {
-            this.members.add(member);
+        this.ensureHydrated();
+        this.lock.writeLock().lock();
+        try {
+            if (!this.memberIndex.containsKey(member.getID()) && (member.getPerson() == null || !this.personIndex.containsKey(member.getPerson()))) {
+                this.members.add(member);
+                this.indexMember(member);
+                Journal.getJournal().recordAddMember(member);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
         }
         return member;
     }
 
     @Override
     public IMember getMember(IPerson person) {
-        return this.getPersonMemberMap().get(person);
+        this.ensureHydrated();
+        return person == null ? null : this.personIndex.get(person);
     }
 
     @Override
@@ -209,47 +810,125 @@ public class Library implements ILibrary {
         if (member.getBooks().size() >= 1) {
             throw new MemberHasBooksException(member);
         }
-        this.members.remove(member);
-
+        this.ensureHydrated();
+        this.lock.writeLock().lock();
+        try {
+            if (this.members.remove(member)) {
+                this.unindexMember(member);
+                Journal.getJournal().recordRemoveMember(member);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
     }
 
     @Override
     public boolean isMember(IPerson person) {
-        for (IMember member : person.getMemberships()) {
-            if (member.getLibrary() == this) {
-                return true;
-            }
-        }
-        return false;
+        return this.hasMember(person);
     }
 
     @Override
     public List<IMember> getMembers() {
-        return this.members;
+        this.ensureHydrated();
+        return this.memberView;
+    }
+
+    /**
+     * Returns the hydrator that will build the members of this library, or null
+     * if the members have already been built
+     *
+     * @return the pending hydrator
+     */
+    public MemberHydrator getHydrator() {
+        return this.hydrator;
+    }
+
+    /**
+     * Throws the failure of the last attempt to build the members of this library,
+     * if that attempt failed. A library in that state must not be saved, since its
+     * members are not known.
+     *
+     * @throws HydrationException thrown when the members failed to build
+     */
+    public void checkHydrated() {
+        HydrationException failure = this.hydrationFailure;
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Builds the members of this library if they have not been built yet. Every entry
+     * point that reads or changes the members calls this before it takes the lock of the
+     * library, so hydrating never has to wait for a lock its own thread already holds.
+     */
+    private void ensureHydrated() {
+        if (this.hydrator != null) {
+            this.hydrate();
+        }
+    }
+
+    /**
+     * Builds the members of this library under the hydration monitor, so the members
+     * are only built once, and without holding the lock of the library, so readers of
+     * the books and quantities are not held up by it. The built members are installed
+     * under the write lock.
+     */
+    private void hydrate() {
+        synchronized (this.hydrationMonitor) {
+            MemberHydrator hydrator = this.hydrator;
+            if (hydrator == null) {
+                return;
+            }
+            List<IMember> members;
+            try {
+                members = hydrator.hydrate(this);
+            } catch (LoadingException ex) {
+                // keep the hydrator, so the members are not lost and hydrating is tried again
+                this.hydrationFailure = new HydrationException(this, ex);
+                throw this.hydrationFailure;
+            }
+            this.lock.writeLock().lock();
+            try {
+                this.setMemberList(members);
+                this.hydrator = null;
+                this.hydrationFailure = null;
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        }
     }
 
     @Override
     public List<IPerson> getPeople() {
-        return this.members.stream().map(IMember::getPerson).collect(Collectors.toList());
+        return this.getMembers().stream().map(IMember::getPerson).collect(Collectors.toList());
     }
 
     @Override
     public List<UUID> getMemberIDs() {
         List<UUID> ids = new ArrayList<>();
-        this.members.forEach(member -> ids.add(member.getID()));
+        this.getMembers().forEach(member -> ids.add(member.getID()));
         return ids;
     }
 
     @Override
     public Map<UUID, IMember> getMemberMap() {
-        Map<UUID, IMember> memberMap = new HashMap<>();
-        this.members.forEach(member -> memberMap.put(member.getID(), member));
-        return memberMap;
+        this.ensureHydrated();
+        return this.memberIndexView;
     }
 
     @Override
     public boolean hasBook(UUID id) {
-        return this.getBookMap().containsKey(id);
+        int bookID = Loader.getLoader().getDenseID(id);
+        if (bookID < 0) {
+            return false;
+        }
+        this.lock.readLock().lock();
+        try {
+            return this.bookSet.get(bookID);
+        } finally {
+            this.lock.readLock().unlock();
+        }
     }
 
     @Override
@@ -264,17 +943,21 @@ public class Library implements ILibrary {
 
     @Override
     public void setName(String name) {
-        this.name = name;
+        this.lock.writeLock().lock();
+        try {
+            this.name = name;
+            this.snapshot = null;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+        ObjectDelegate.reindex(this);
+        Journal.getJournal().recordLibrary(this);
     }
 
     @Override
     public boolean hasMember(IPerson person) {
-        for (IMember member : this.members) {
-            if (member.getPerson() == person) {
-                return true;
-            }
-        }
-        return false;
+        this.ensureHydrated();
+        return person != null && this.personIndex.containsKey(person);
     }
 
 
@@ -285,40 +968,177 @@ public class Library implements ILibrary {
 
     @Override
     public Map<IBook, List<ICheckout>> getCheckouts() {
+        this.ensureHydrated();
         Map<IBook, List<ICheckout>> bookListMap = new HashMap<>();
-        this.getMembers().forEach(member -> member.getCheckoutMap().forEach((book, checkoutList) -> {
-            if (!bookListMap.containsKey(book)) {
-                bookListMap.put(book, new ArrayList<>());
-            }
-            bookListMap.get(book).addAll(checkoutList);
-        }));
+        this.circulation.values().forEach(checkouts -> bookListMap.put(checkouts.get(0).getBook(), new ArrayList<>(checkouts)));
         return bookListMap;
     }
 
     protected Map<IPerson, IMember> getPersonMemberMap() {
-        Map<IPerson, IMember> personIMemberMap = new HashMap<>();
-        this.members.forEach(member -> personIMemberMap.put(member.getPerson(), member));
-        return personIMemberMap;
+        this.ensureHydrated();
+        return this.personIndexView;
     }
 
+    /**
+     * Returns a copy of the book quantities of this library
+     *
+     * @return the quantities
+     */
     @Override
-    public Map<UUID, Integer> getBookQuantity() {
-        return bookQuantity;
+    public UUIDIntMap getBookQuantity() {
+        this.lock.readLock().lock();
+        try {
+            UUIDIntMap quantities = new UUIDIntMap(this.bookQuantity.size());
+            this.bookQuantity.forEachInt(quantities::putInt);
+            return quantities;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Sets the quantity of a book while this library is being loaded, without
+     * recording it in the journal
+     *
+     * @param mostSignificantBits  the most significant bits of the book ID
+     * @param leastSignificantBits the least significant bits of the book ID
+     * @param amount               the quantity
+     */
+    public void impl_setQuantity(long mostSignificantBits, long leastSignificantBits, int amount) {
+        this.lock.writeLock().lock();
+        try {
+            this.putQuantity(new UUID(mostSignificantBits, leastSignificantBits), amount);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
     }
 
     @Override
     public int getQuantity(UUID id) {
-        return this.bookQuantity.get(id);
+        this.lock.readLock().lock();
+        try {
+            return this.bookQuantity.getInt(id, 0);
+        } finally {
+            this.lock.readLock().unlock();
+        }
     }
 
     @Override
     public void setQuantity(UUID id, int amount) {
-        this.bookQuantity.put(id, amount);
+        this.lock.writeLock().lock();
+        try {
+            this.putQuantity(id, amount);
+            Journal.getJournal().recordQuantity(this, id, amount);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int getCheckedOutCount(UUID id) {
+        this.ensureHydrated();
+        int bookID = Loader.getLoader().getDenseID(id);
+        this.lock.readLock().lock();
+        try {
+            return this.countCheckedOut(bookID);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<ICheckout> getActiveCheckouts(IBook book) {
+        this.ensureHydrated();
+        this.lock.readLock().lock();
+        try {
+            List<ICheckout> checkouts = this.circulation.get(book.getID());
+            return checkouts == null ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(checkouts));
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public double getOutstandingFines() {
+        this.ensureHydrated();
+        return this.getFineLedger().total;
+    }
+
+    @Override
+    public Map<IMember, Double> getFines() {
+        this.ensureHydrated();
+        return new HashMap<>(this.getFineLedger().balances);
+    }
+
+    @Override
+    public List<ICheckout> getOverdueCheckouts() {
+        this.ensureHydrated();
+        List<ICheckout> overdue = new ArrayList<>();
+        this.lock.readLock().lock();
+        try {
+            this.dueIndex.headMap(World.getEpochDay(), false).values().forEach(overdue::addAll);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return overdue;
+    }
+
+    @Override
+    public List<ICheckout> getUpcomingCheckouts(int count) {
+        this.ensureHydrated();
+        List<ICheckout> upcoming = new ArrayList<>();
+        this.lock.readLock().lock();
+        try {
+            for (List<ICheckout> checkouts : this.dueIndex.tailMap(World.getEpochDay(), true).values()) {
+                for (ICheckout checkout : checkouts) {
+                    if (upcoming.size() >= count) {
+                        return upcoming;
+                    }
+                    upcoming.add(checkout);
+                }
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return upcoming;
+    }
+
+    @Override
+    public int getTitleCount(BookType type) {
+        this.ensureHydrated();
+        this.lock.readLock().lock();
+        try {
+            return this.countTypes().titles[type.ordinal()];
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int getCopyCount(BookType type) {
+        this.ensureHydrated();
+        this.lock.readLock().lock();
+        try {
+            return this.countTypes().copies[type.ordinal()];
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int getCheckedOutCopyCount(BookType type) {
+        this.ensureHydrated();
+        this.lock.readLock().lock();
+        try {
+            return this.countTypes().checkedOut[type.ordinal()];
+        } finally {
+            this.lock.readLock().unlock();
+        }
     }
 
     @Override
     public boolean checkOutOfStock(IBook book) {
-        return getQuantity(book.getID()) == (getCheckouts().get(book) != null ? getCheckouts().get(book).size() : 0);
+        return this.getQuantity(book.getID()) <= this.getCheckedOutCount(book.getID());
     }
 
     @Override
@@ -326,4 +1146,43 @@ public class Library implements ILibrary {
         return this.getName();
     }
 
+    /**
+     * The accrued fines of the members of a library as of one epoch day. Balances are
+     * read without locking; they are only changed by writers holding the write lock.
+     */
+    private static final class FineLedger {
+
+        private final long day;
+        private final Map<IMember, Double> balances = new ConcurrentHashMap<>();
+        private volatile double total;
+
+        private FineLedger(long day) {
+            this.day = day;
+        }
+
+        private void accrue(ICheckout checkout, long dueDay, int sign) {
+            double fine = Checkout.computeFine(checkout.getOwner(), dueDay, this.day);
+            if (fine == 0) {
+                return;
+            }
+            this.balances.compute(checkout.getOwner(), (member, balance) -> {
+                double newBalance = (balance == null ? 0 : balance) + sign * fine;
+                return newBalance == 0 ? null : newBalance;
+            });
+            this.total += sign * fine;
+        }
+    }
+
+    /**
+     * The titles, copies and checked out copies of every book type in a library, and
+     * the type each book was counted under, by dense book ID
+     */
+    private static final class TypeCounts {
+
+        private final int[] titles = new int[BOOK_TYPES.length];
+        private final int[] copies = new int[BOOK_TYPES.length];
+        private final int[] checkedOut = new int[BOOK_TYPES.length];
+        private byte[] types = new byte[0];
+    }
+
 }
@@ -0,0 +1,388 @@
+package org.whstsa.library.api.impl.library;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONString;
+import org.whstsa.library.World;
+import org.whstsa.library.api.books.IBook;
+import org.whstsa.library.api.library.ICheckout;
+import org.whstsa.library.api.library.ILibrarySnapshot;
+import org.whstsa.library.api.library.IMember;
+import org.whstsa.library.util.UUIDIntMap;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * One published version of a {@link Library}.
+ * <p>
+ * Snapshots are immutable and are replaced rather than changed: when a snapshot is
+ * asked for after the library changed, the library builds the next version from the
+ * previous one while holding its write lock and publishes it with a single volatile
+ * write. Members are kept in fixed size chunks, so a new version only copies the chunks
+ * of the members that changed since the previous one and the small array of chunks,
+ * and every other chunk is shared. The book list and quantities are shared too unless
+ * the catalog of the library was edited.
+ * <p>
+ * Lookups by member, checkout or title are served from an index that is built from
+ * the snapshot the first time it is needed. Fines are computed from the due days
+ * recorded in the snapshot on the day they are read.
+ */
+public final class LibrarySnapshot implements ILibrarySnapshot {
+
+    private static final int CHUNK_BITS = 6;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final MemberVersion[][] NO_CHUNKS = new MemberVersion[0][];
+
+    private final long version;
+    private final UUID uuid;
+    private final String name;
+    private final List<IBook> books;
+    private final UUIDIntMap quantities;
+    private final MemberHydrator hydrator;
+    private final MemberVersion[][] memberChunks;
+    private volatile Index index;
+
+    private LibrarySnapshot(long version, UUID uuid, String name, List<IBook> books, UUIDIntMap quantities, MemberHydrator hydrator, MemberVersion[][] memberChunks) {
+        this.version = version;
+        this.uuid = uuid;
+        this.name = name;
+        this.books = books;
+        this.quantities = quantities;
+        this.hydrator = hydrator;
+        this.memberChunks = memberChunks;
+    }
+
+    /**
+     * Builds the first version of a library. The members are placed in the slots given
+     * by their position in the list.
+     */
+    static LibrarySnapshot of(long version, UUID uuid, String name, List<IBook> books, UUIDIntMap quantities, MemberHydrator hydrator, List<IMember> members) {
+        MemberVersion[][] memberChunks = new MemberVersion[(members.size() + CHUNK_SIZE - 1) >> CHUNK_BITS][];
+        for (int chunk = 0; chunk < memberChunks.length; chunk++) {
+            memberChunks[chunk] = new MemberVersion[CHUNK_SIZE];
+        }
+        for (int slot = 0; slot < members.size(); slot++) {
+            memberChunks[slot >> CHUNK_BITS][slot & (CHUNK_SIZE - 1)] = MemberVersion.of(members.get(slot));
+        }
+        return new LibrarySnapshot(version, uuid, name, freezeBooks(books), freezeQuantities(quantities), hydrator, memberChunks.length == 0 ? NO_CHUNKS : memberChunks);
+    }
+
+    /**
+     * Returns the next version, sharing everything that did not change with this one
+     *
+     * @param version    the version number of the next version
+     * @param name       the name of the library
+     * @param books      the books of the library, or null if they did not change
+     * @param quantities the quantities of the books, or null if they did not change
+     * @param members    the members stored in the slots that changed, with null for
+     *                   slots that were cleared
+     * @return the next version
+     */
+    LibrarySnapshot withChanges(long version, String name, List<IBook> books, UUIDIntMap quantities, Map<Integer, IMember> members) {
+        MemberVersion[][] memberChunks = this.memberChunks;
+        if (!members.isEmpty()) {
+            int chunkCount = memberChunks.length;
+            for (int slot : members.keySet()) {
+                chunkCount = Math.max(chunkCount, (slot >> CHUNK_BITS) + 1);
+            }
+            memberChunks = Arrays.copyOf(memberChunks, chunkCount);
+            BitSet copiedChunks = new BitSet(chunkCount);
+            for (Map.Entry<Integer, IMember> entry : members.entrySet()) {
+                int chunk = entry.getKey() >> CHUNK_BITS;
+                if (!copiedChunks.get(chunk)) {
+                    memberChunks[chunk] = memberChunks[chunk] == null ? new MemberVersion[CHUNK_SIZE] : memberChunks[chunk].clone();
+                    copiedChunks.set(chunk);
+                }
+                memberChunks[chunk][entry.getKey() & (CHUNK_SIZE - 1)] = entry.getValue() == null ? null : MemberVersion.of(entry.getValue());
+            }
+        }
+        return new LibrarySnapshot(version, this.uuid, name,
+                books == null ? this.books : freezeBooks(books),
+                quantities == null ? this.quantities : freezeQuantities(quantities),
+                this.hydrator, memberChunks);
+    }
+
+    /**
+     * Returns whether this version shares the chunk of a slot with another version of
+     * the same library
+     *
+     * @param other the other version
+     * @param slot  the slot
+     * @return whether the chunk is shared
+     */
+    boolean sharesMemberChunk(LibrarySnapshot other, int slot) {
+        int chunk = slot >> CHUNK_BITS;
+        return chunk < this.memberChunks.length && chunk < other.memberChunks.length && this.memberChunks[chunk] == other.memberChunks[chunk];
+    }
+
+    /**
+     * Returns the amount of member slots of this version, including cleared ones
+     *
+     * @return the amount of slots
+     */
+    int getMemberSlotCount() {
+        return this.memberChunks.length << CHUNK_BITS;
+    }
+
+    /**
+     * Returns the hydrator of the library if its members had not been built when this
+     * snapshot was taken. The members of such a snapshot are empty.
+     *
+     * @return the hydrator, or null
+     */
+    public MemberHydrator getHydrator() {
+        return this.hydrator;
+    }
+
+    @Override
+    public long getVersion() {
+        return this.version;
+    }
+
+    @Override
+    public UUID getID() {
+        return this.uuid;
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public List<IBook> getBooks() {
+        return this.books;
+    }
+
+    @Override
+    public Map<UUID, Integer> getBookQuantity() {
+        return Collections.unmodifiableMap(this.quantities);
+    }
+
+    @Override
+    public int getQuantity(UUID id) {
+        return this.quantities.getInt(id, 0);
+    }
+
+    @Override
+    public int getCheckedOutCount(UUID id) {
+        Circulation circulation = this.getIndex().titles.get(id);
+        return circulation == null ? 0 : circulation.count;
+    }
+
+    @Override
+    public long getNextDueDay(UUID id) {
+        Circulation circulation = this.getIndex().titles.get(id);
+        return circulation == null ? -1 : circulation.nextDueDay;
+    }
+
+    @Override
+    public List<IMember> getMembers() {
+        return Collections.unmodifiableList(this.getIndex().members);
+    }
+
+    @Override
+    public List<ICheckout> getCheckouts(IMember member) {
+        MemberVersion memberVersion = this.getIndex().memberVersions.get(member);
+        if (memberVersion == null) {
+            return Collections.emptyList();
+        }
+        List<ICheckout> checkouts = new ArrayList<>(memberVersion.checkouts.length);
+        for (CheckoutVersion checkout : memberVersion.checkouts) {
+            checkouts.add(checkout.checkout);
+        }
+        return checkouts;
+    }
+
+    @Override
+    public double getFine(IMember member) {
+        MemberVersion memberVersion = this.getIndex().memberVersions.get(member);
+        return memberVersion == null ? 0 : memberVersion.getFine(World.getEpochDay());
+    }
+
+    @Override
+    public Map<IMember, Double> getFines() {
+        long day = World.getEpochDay();
+        Map<IMember, Double> fines = new HashMap<>();
+        this.forEachMember(memberVersion -> {
+            double fine = memberVersion.getFine(day);
+            if (fine != 0) {
+                fines.put(memberVersion.member, fine);
+            }
+        });
+        return fines;
+    }
+
+    @Override
+    public long getDueDay(ICheckout checkout) {
+        CheckoutVersion checkoutVersion = this.getIndex().checkoutVersions.get(checkout);
+        return checkoutVersion == null ? -1 : checkoutVersion.dueDay;
+    }
+
+    @Override
+    public JSONObject toJSON() {
+        JSONObject object = new JSONObject();
+
+        JSONArray books = new JSONArray();
+        this.books.forEach(book -> books.put(book.getID()));
+        object.put("books", books);
+
+        if (this.hydrator instanceof JSONString) {
+            object.put("members", this.hydrator);
+        } else {
+            JSONArray members = new JSONArray();
+            this.forEachMember(member -> members.put(member.toJSON()));
+            object.put("members", members);
+        }
+
+        object.put("uuid", this.uuid.toString());
+
+        object.put("name", this.name);
+
+        JSONObject quantities = new JSONObject();
+        this.quantities.forEachInt((id, quantity) -> quantities.put(id.toString(), quantity));
+        object.put("quantities", quantities);
+
+        return object;
+    }
+
+    private void forEachMember(Consumer<MemberVersion> consumer) {
+        for (MemberVersion[] members : this.memberChunks) {
+            if (members == null) {
+                continue;
+            }
+            for (MemberVersion member : members) {
+                if (member != null) {
+                    consumer.accept(member);
+                }
+            }
+        }
+    }
+
+    private Index getIndex() {
+        Index index = this.index;
+        if (index == null) {
+            // building the index twice on a race is harmless, both results are equal
+            index = new Index();
+            this.index = index;
+        }
+        return index;
+    }
+
+    private static List<IBook> freezeBooks(List<IBook> books) {
+        return Collections.unmodifiableList(new ArrayList<>(books));
+    }
+
+    private static UUIDIntMap freezeQuantities(UUIDIntMap quantities) {
+        UUIDIntMap frozen = new UUIDIntMap(quantities.size());
+        quantities.forEachInt(frozen::putInt);
+        return frozen;
+    }
+
+    /**
+     * The lookups of one snapshot
+     */
+    private final class Index {
+
+        private final List<IMember> members = new ArrayList<>();
+        private final Map<IMember, MemberVersion> memberVersions = new IdentityHashMap<>();
+        private final Map<ICheckout, CheckoutVersion> checkoutVersions = new IdentityHashMap<>();
+        private final Map<UUID, Circulation> titles = new HashMap<>();
+
+        private Index() {
+            LibrarySnapshot.this.forEachMember(memberVersion -> {
+                this.members.add(memberVersion.member);
+                this.memberVersions.put(memberVersion.member, memberVersion);
+                for (CheckoutVersion checkout : memberVersion.checkouts) {
+                    this.checkoutVersions.put(checkout.checkout, checkout);
+                    this.titles.computeIfAbsent(checkout.bookID, id -> new Circulation()).add(checkout.dueDay);
+                }
+            });
+        }
+    }
+
+    /**
+     * The checked out copies of one title
+     */
+    private static final class Circulation {
+
+        private int count;
+        private long nextDueDay = Long.MAX_VALUE;
+
+        private void add(long dueDay) {
+            this.count++;
+            this.nextDueDay = Math.min(this.nextDueDay, dueDay);
+        }
+    }
+
+    /**
+     * The state of a member in one version of its library
+     */
+    private static final class MemberVersion {
+
+        private final IMember member;
+        private final CheckoutVersion[] checkouts;
+
+        private MemberVersion(IMember member, CheckoutVersion[] checkouts) {
+            this.member = member;
+            this.checkouts = checkouts;
+        }
+
+        private static MemberVersion of(IMember member) {
+            List<ICheckout> checkouts = member.getCheckouts(true);
+            CheckoutVersion[] checkoutVersions = new CheckoutVersion[checkouts.size()];
+            for (int i = 0; i < checkoutVersions.length; i++) {
+                checkoutVersions[i] = new CheckoutVersion(checkouts.get(i));
+            }
+            return new MemberVersion(member, checkoutVersions);
+        }
+
+        private double getFine(long day) {
+            double fine = 0;
+            for (CheckoutVersion checkout : this.checkouts) {
+                fine += Checkout.computeFine(this.member, checkout.dueDay, day);
+            }
+            return fine;
+        }
+
+        private JSONObject toJSON() {
+            JSONObject object = new JSONObject();
+
+            JSONObject checkoutMap = new JSONObject();
+            for (CheckoutVersion checkout : this.checkouts) {
+                String bookID = checkout.bookID.toString();
+                JSONArray checkoutArray = checkoutMap.optJSONArray(bookID);
+                if (checkoutArray == null) {
+                    checkoutArray = new JSONArray();
+                    checkoutMap.put(bookID, checkoutArray);
+                }
+                checkoutArray.put(Checkout.toJSON(checkout.checkout.getID(), checkout.bookID, checkout.dueDay, checkout.checkoutDay, false));
+            }
+            object.put("checkouts", checkoutMap);
+            object.put("personID", this.member.getPerson().getID());
+            object.put("uuid", this.member.getID());
+
+            return object;
+        }
+    }
+
+    /**
+     * The state of an active checkout in one version of its library
+     */
+    private static final class CheckoutVersion {
+
+        private final ICheckout checkout;
+        private final UUID bookID;
+        private final long dueDay;
+        private final long checkoutDay;
+
+        private CheckoutVersion(ICheckout checkout) {
+            this.checkout = checkout;
+            this.bookID = checkout.getBook().getID();
+            this.dueDay = checkout.getDueDay();
+            this.checkoutDay = checkout.getCheckoutDay();
+        }
+    }
+
+}
@@ -6,31 +6,47 @@ import org.whstsa.library.api.IPerson;
 import org.whstsa.library.api.books.IBook;
 import org.whstsa.library.api.exceptions.BookNotRegisteredException;
 import org.whstsa.library.api.exceptions.CheckedInException;
+import org.whstsa.library.api.exceptions.MaximumCheckoutsException;
 import org.whstsa.library.api.exceptions.MemberMismatchException;
 import org.whstsa.library.api.exceptions.OutstandingFinesException;
 import org.whstsa.library.api.library.ICheckout;
 import org.whstsa.library.api.library.ILibrary;
 import org.whstsa.library.api.library.IMember;
+import org.whstsa.library.db.Journal;
 import org.whstsa.library.db.ObjectDelegate;
 import org.whstsa.library.util.Logger;
 
 import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
 
+/**
+ * A member of a library. The checkouts of a member are guarded by the lock of its
+ * {@link Library}, so a member is only ever changed together with the circulation
+ * state of the library it belongs to.
+ */
 public class Member implements IMember {
 
+    private static final int CHECKOUT_LIMIT = 5;
+    private static final int TEACHER_CHECKOUT_LIMIT = 10;
     private static final String MEMBER_MISMATCH_CHECKIN = "Cannot check-in a checkout for member %s under member %s";
     private static final String MEMBER_MISMATCH_CHECKOUT = "Checkout belongs to member %s but was attempted to be added to member %s";
     private Map<IBook, List<ICheckout>> books;
     private IPerson person;
     private ILibrary library;
     private UUID uuid;
+    private final ReentrantReadWriteLock lock;
 
     public Member(IPerson person, ILibrary library) {
+        this(person, library, UUID.randomUUID());
+    }
+
+    public Member(IPerson person, ILibrary library, UUID uuid) {
         this.person = person;
         this.books = new HashMap<>();
-        this.uuid = UUID.randomUUID();
+        this.uuid = uuid;
         this.library = library;
+        this.lock = library instanceof Library ? ((Library) library).getLock() : new ReentrantReadWriteLock();
     }
 
     public void impl_setID(UUID uuid) {
@@ -38,7 +54,22 @@ public class Member implements IMember {
     }
 
     public void impl_setBooks(Map<IBook, List<ICheckout>> books) {
-        this.books = books;
+        this.lock.writeLock().lock();
+        try {
+            this.books = books;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the lock guarding the checkouts of this member, which is the lock of its
+     * library
+     *
+     * @return the lock
+     */
+    ReentrantReadWriteLock getLock() {
+        return this.lock;
     }
 
     @Override
@@ -46,19 +77,24 @@ public class Member implements IMember {
         JSONObject object = new JSONObject();
 
         JSONObject checkoutMap = new JSONObject();
-        this.books.forEach((book, checkoutList) -> {
-            JSONArray checkoutArray = new JSONArray();
-            checkoutList.forEach(checkout -> {
-                if (checkout.isReturned()) {
+        this.lock.readLock().lock();
+        try {
+            this.books.forEach((book, checkoutList) -> {
+                JSONArray checkoutArray = new JSONArray();
+                checkoutList.forEach(checkout -> {
+                    if (checkout.isReturned()) {
+                        return;
+                    }
+                    checkoutArray.put(checkout.toJSON());
+                });
+                if (checkoutArray.length() == 0) {
                     return;
                 }
-                checkoutArray.put(checkout.toJSON());
+                checkoutMap.put(book.getID().toString(), checkoutArray);
             });
-            if (checkoutArray.length() == 0) {
-                return;
-            }
-            checkoutMap.put(book.getID().toString(), checkoutArray);
-        });
+        } finally {
+            this.lock.readLock().unlock();
+        }
         object.put("checkouts", checkoutMap);
         object.put("personID", this.person.getID());
         object.put("uuid", this.uuid);
@@ -68,6 +104,12 @@ public class Member implements IMember {
 
     @Override
     public double getFine() {
+        if (this.library instanceof Library) {
+            Double accruedFine = ((Library) this.library).getAccruedFine(this);
+            if (accruedFine != null) {
+                return accruedFine;
+            }
+        }
         double fine = 0;
         for (ICheckout checkout : this.getCheckouts()) {
             if (checkout.isReturned()) {
@@ -92,8 +134,8 @@ public class Member implements IMember {
     @Override
     public void returnCheckout(ICheckout checkout) throws OutstandingFinesException {
         Logger.DEFAULT_LOGGER.debug("Started checkin process");
-        List<ICheckout> checkoutList = this.books.get(checkout.getBook());
-        if (checkoutList == null || checkoutList.size() == 0) {
+        List<ICheckout> checkoutList = this.getCheckout(checkout.getBook());
+        if (checkoutList.size() == 0) {
             Logger.DEFAULT_LOGGER.warn("Ignoring return checkout for unknown book");
             return;
         }
@@ -109,24 +151,31 @@ public class Member implements IMember {
                 // The error is swallowed at the moment
             }
             Logger.DEFAULT_LOGGER.log(String.format("Checking in %s for person %s", checkout.getBook().getName(), this.getName()));
-            checkoutList.remove(checkout);
+            this.onReturn(checkout);
         }
     }
 
     @Override //TODO ASK ERIC ABOUT INTENTION OF REMOVING ALL CHECKOUTS/BOOK
     public void removeBook(IBook book) throws OutstandingFinesException {
-        if (this.books.containsKey(book)) {
-            for (ICheckout checkout : this.books.get(book)) {
-                if (checkout.getFine() != 0) {
-                    throw new OutstandingFinesException(this, OutstandingFinesException.Actions.REMOVE_BOOK, checkout.getFine());
-                }
-                try {
-                    checkout.checkIn();
-                } catch (CheckedInException e) {
-                    // The error is swallowed at the moment
-                }
+        if (!this.hasBook(book)) {
+            return;
+        }
+        // checked in one by one, so each return is recorded once its lock is released
+        for (ICheckout checkout : this.getCheckout(book)) {
+            if (checkout.getFine() != 0) {
+                throw new OutstandingFinesException(this, OutstandingFinesException.Actions.REMOVE_BOOK, checkout.getFine());
+            }
+            try {
+                checkout.checkIn();
+            } catch (CheckedInException e) {
+                // The error is swallowed at the moment
             }
+        }
+        this.lock.writeLock().lock();
+        try {
             this.books.remove(book);
+        } finally {
+            this.lock.writeLock().unlock();
         }
     }
 
@@ -170,22 +219,25 @@ public class Member implements IMember {
 
     @Override
     public List<IBook> getBooks() {
-        List<IBook> books = new ArrayList<>();
-        books.addAll(this.books.keySet());
-        return books;
+        this.lock.readLock().lock();
+        try {
+            return new ArrayList<>(this.books.keySet());
+        } finally {
+            this.lock.readLock().unlock();
+        }
     }
 
     @Override
     public Map<UUID, IBook> getBookMap() {
         Map<UUID, IBook> bookMap = new HashMap<>();
-        this.books.keySet().forEach(book -> bookMap.put(book.getID(), book));
+        this.getBooks().forEach(book -> bookMap.put(book.getID(), book));
         return bookMap;
     }
 
     @Override
     public List<UUID> getBookIDs() {
         List<UUID> uuidList = new LinkedList<>();
-        this.books.keySet().forEach(book -> uuidList.add(book.getID()));
+        this.getBooks().forEach(book -> uuidList.add(book.getID()));
         return uuidList;
     }
 
@@ -196,7 +248,15 @@ public class Member implements IMember {
 
     @Override
     public boolean hasBook(IBook book) {
-        return book != null && this.books.containsKey(book);
+        if (book == null) {
+            return false;
+        }
+        this.lock.readLock().lock();
+        try {
+            return this.books.containsKey(book);
+        } finally {
+            this.lock.readLock().unlock();
+        }
     }
 
     @Override
@@ -211,27 +271,91 @@ public class Member implements IMember {
 
     @Override
     public List<ICheckout> getCheckout(IBook book) {
-        List<ICheckout> checkouts = this.books.get(book);
-        if (checkouts == null) {
-            return new ArrayList<>();
+        this.lock.readLock().lock();
+        try {
+            List<ICheckout> checkouts = this.books.get(book);
+            return checkouts == null ? new ArrayList<>() : new ArrayList<>(checkouts);
+        } finally {
+            this.lock.readLock().unlock();
         }
-        return checkouts;
     }
 
     @Override
     public void checkout(ICheckout checkout) throws BookNotRegisteredException, MemberMismatchException {
+        this.addCheckout(checkout, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Adds a checkout reserved through {@link Library#reserveBook(IMember, IBook, int)},
+     * unless this member already has as many checkouts as it may have. The limit is
+     * checked under the write lock the checkout is added under, so concurrent
+     * reservations can not take a member past it.
+     *
+     * @param checkout the checkout to add
+     * @throws MaximumCheckoutsException thrown when the member has reached its limit
+     */
+    void reserve(ICheckout checkout) throws MaximumCheckoutsException {
+        if (!this.addCheckout(checkout, getCheckoutLimit(this))) {
+            throw new MaximumCheckoutsException(this);
+        }
+    }
+
+    /**
+     * Returns the amount of checkouts a member may have at once
+     *
+     * @param member the member
+     * @return the limit
+     */
+    static int getCheckoutLimit(IMember member) {
+        return member.getPerson().isTeacher() ? TEACHER_CHECKOUT_LIMIT : CHECKOUT_LIMIT;
+    }
+
+    private boolean addCheckout(ICheckout checkout, int limit) {
         if (checkout.getOwner() != this) {
             throw new MemberMismatchException(String.format(MEMBER_MISMATCH_CHECKOUT, checkout.getOwner().getID(), this.getID()));
         }
         if (!this.getLibrary().hasBook(checkout.getBook())) {
             throw new BookNotRegisteredException(this.getLibrary(), checkout.getBook());
         }
-        if (!this.books.containsKey(checkout.getBook())) {
-            this.books.put(checkout.getBook(), new ArrayList<>());
+        this.lock.writeLock().lock();
+        try {
+            int count = 0;
+            for (List<ICheckout> checkouts : this.books.values()) {
+                count += checkouts.size();
+            }
+            if (count >= limit) {
+                return false;
+            }
+            List<ICheckout> checkouts = this.books.computeIfAbsent(checkout.getBook(), book -> new ArrayList<>());
+            if (!checkouts.contains(checkout)) {
+                checkouts.add(checkout);
+                if (this.library instanceof Library) {
+                    ((Library) this.library).onCheckout(checkout);
+                }
+                Journal.getJournal().recordCheckout(checkout);
+            }
+            return true;
+        } finally {
+            this.lock.writeLock().unlock();
         }
-        List<ICheckout> checkouts = this.books.get(checkout.getBook());
-        if (!checkouts.contains(checkout)) {
-            checkouts.add(checkout);
+    }
+
+    /**
+     * Called by {@link Checkout} when one of the checkouts of this member has been
+     * returned. Returned checkouts are kept in the circulation history rather than
+     * on the member.
+     *
+     * @param checkout the returned checkout
+     */
+    void onReturn(ICheckout checkout) {
+        this.lock.writeLock().lock();
+        try {
+            List<ICheckout> checkouts = this.books.get(checkout.getBook());
+            if (checkouts != null && checkouts.remove(checkout) && checkouts.isEmpty()) {
+                this.books.remove(checkout.getBook());
+            }
+        } finally {
+            this.lock.writeLock().unlock();
         }
     }
 
@@ -243,7 +367,12 @@ public class Member implements IMember {
     @Override
     public List<ICheckout> getCheckouts(boolean notReturned) {
         List<ICheckout> checkouts = new ArrayList<>();
-        this.books.values().forEach(checkouts::addAll);
+        this.lock.readLock().lock();
+        try {
+            this.books.values().forEach(checkouts::addAll);
+        } finally {
+            this.lock.readLock().unlock();
+        }
         if (notReturned) {
             checkouts = checkouts.stream().filter(checkout -> !checkout.isReturned()).collect(Collectors.toList());
         }
@@ -252,7 +381,14 @@ public class Member implements IMember {
 
     @Override
     public Map<IBook, List<ICheckout>> getCheckoutMap() {
-        return this.books;
+        Map<IBook, List<ICheckout>> checkoutMap = new HashMap<>();
+        this.lock.readLock().lock();
+        try {
+            this.books.forEach((book, checkouts) -> checkoutMap.put(book, new ArrayList<>(checkouts)));
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return checkoutMap;
     }
 
     @Override
@@ -0,0 +1,24 @@
+package org.whstsa.library.api.impl.library;
+
+import org.whstsa.library.api.exceptions.LoadingException;
+import org.whstsa.library.api.library.IMember;
+
+import java.util.List;
+
+/**
+ * Builds the members and checkouts of a library that was loaded lazily. The
+ * hydrator is run at most once, the first time the members of the library are
+ * accessed.
+ */
+public interface MemberHydrator {
+
+    /**
+     * Builds the members of the library
+     *
+     * @param library the library the members belong to
+     * @return the members
+     * @throws LoadingException thrown when an error occurs during loading
+     */
+    List<IMember> hydrate(Library library) throws LoadingException;
+
+}
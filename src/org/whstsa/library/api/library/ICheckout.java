@@ -30,6 +30,21 @@ public interface ICheckout extends Serializable, Unique {
      */
     Date getDueDate();
 
+    /**
+     * Returns the due date for this checkout as a number of days since 1970-01-01
+     *
+     * @return the due epoch day
+     */
+    long getDueDay();
+
+    /**
+     * Returns the day the book was checked out as a number of days since 1970-01-01
+     *
+     * @return the checkout epoch day, or -1 if the checkout was saved before checkout
+     * days were kept
+     */
+    long getCheckoutDay();
+
     /**
      * Resets the due date to an implementation-decided number of days
      * out from the current date.
@@ -49,7 +64,8 @@ public interface ICheckout extends Serializable, Unique {
     void payFine();
 
     /**
-     * Returns the days past the due date, or zero if it has not passed the due date
+     * Returns the days past the due date, or zero if it has not passed the due date.
+     * A checkout is not overdue on its due date, and is one day past due the day after.
      *
      * @return the days past the due date
      */
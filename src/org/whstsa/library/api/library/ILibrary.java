@@ -1,5 +1,6 @@
 package org.whstsa.library.api.library;
 
+import org.whstsa.library.api.BookType;
 import org.whstsa.library.api.IPerson;
 import org.whstsa.library.api.Identifiable;
 import org.whstsa.library.api.Loadable;
@@ -126,7 +127,8 @@ public interface ILibrary extends IBookContainer, Loadable, Identifiable {
     Map<UUID, IMember> getMemberMap();
 
     /**
-     * Returns a map that maps books to a list of checkouts for that book
+     * Returns a map that maps books to a list of checkouts for that book.
+     * Only checkouts that have not been returned yet are included.
      *
      * @return the checkout map
      */
@@ -155,6 +157,78 @@ public interface ILibrary extends IBookContainer, Loadable, Identifiable {
      */
     void setQuantity(UUID id, int amount);
 
+    /**
+     * Returns the amount of copies of a book that are checked out and have not
+     * been returned yet
+     *
+     * @param id the book ID
+     * @return the amount of active checkouts
+     */
+    int getCheckedOutCount(UUID id);
+
+    /**
+     * Returns the checkouts of a book that have not been returned yet
+     *
+     * @param book the book
+     * @return the active checkouts
+     */
+    List<ICheckout> getActiveCheckouts(IBook book);
+
+    /**
+     * Returns the total of all outstanding fines owed by members of this library
+     *
+     * @return the outstanding fines
+     */
+    double getOutstandingFines();
+
+    /**
+     * Returns the outstanding fine of every member of this library that owes one
+     *
+     * @return the fines keyed by member
+     */
+    Map<IMember, Double> getFines();
+
+    /**
+     * Returns the active checkouts that are overdue as of the current world date,
+     * ordered by due date
+     *
+     * @return the overdue checkouts
+     */
+    List<ICheckout> getOverdueCheckouts();
+
+    /**
+     * Returns the next active checkouts to become due, ordered by due date
+     *
+     * @param count the maximum number of checkouts to return
+     * @return the upcoming checkouts
+     */
+    List<ICheckout> getUpcomingCheckouts(int count);
+
+    /**
+     * Returns the amount of titles of a book type in this library
+     *
+     * @param type the book type
+     * @return the amount of titles
+     */
+    int getTitleCount(BookType type);
+
+    /**
+     * Returns the total amount of copies of the titles of a book type in this library
+     *
+     * @param type the book type
+     * @return the amount of copies
+     */
+    int getCopyCount(BookType type);
+
+    /**
+     * Returns the amount of copies of the titles of a book type in this library that
+     * are checked out and have not been returned yet
+     *
+     * @param type the book type
+     * @return the amount of checked out copies
+     */
+    int getCheckedOutCopyCount(BookType type);
+
     /**
      * Returns true/false if the book IS out of stock
      *
@@ -163,4 +237,12 @@ public interface ILibrary extends IBookContainer, Loadable, Identifiable {
      */
     boolean checkOutOfStock(IBook book);
 
+    /**
+     * Returns a consistent view of this library as it is now, which stays the same
+     * while the library keeps changing
+     *
+     * @return the snapshot
+     */
+    ILibrarySnapshot snapshot();
+
 }
@@ -0,0 +1,118 @@
+package org.whstsa.library.api.library;
+
+import org.whstsa.library.api.Serializable;
+import org.whstsa.library.api.books.IBook;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A read-only view of a library at one point in time.
+ * <p>
+ * A library publishes a new snapshot when one is asked for after it has changed, and a
+ * published snapshot is never changed again. Tables, saves and reports can therefore read everything in
+ * a snapshot without locking and always see one consistent version of the library,
+ * while checkouts keep going on in the library itself.
+ */
+public interface ILibrarySnapshot extends Serializable {
+
+    /**
+     * Returns the version of the library this snapshot was taken from. Later versions
+     * of the same library have higher numbers.
+     *
+     * @return the version
+     */
+    long getVersion();
+
+    /**
+     * Returns the ID of the library
+     *
+     * @return the ID
+     */
+    UUID getID();
+
+    /**
+     * Returns the name of the library
+     *
+     * @return the name
+     */
+    String getName();
+
+    /**
+     * Returns the books of the library
+     *
+     * @return the books
+     */
+    List<IBook> getBooks();
+
+    /**
+     * Returns the quantities of the books of the library
+     *
+     * @return the quantities, by book ID
+     */
+    Map<UUID, Integer> getBookQuantity();
+
+    /**
+     * Returns the quantity of a book
+     *
+     * @param id the ID of the book
+     * @return the quantity, or zero if the book has none
+     */
+    int getQuantity(UUID id);
+
+    /**
+     * Returns the amount of copies of a book that were checked out
+     *
+     * @param id the ID of the book
+     * @return the amount of checked out copies
+     */
+    int getCheckedOutCount(UUID id);
+
+    /**
+     * Returns the earliest due day of the checked out copies of a book
+     *
+     * @param id the ID of the book
+     * @return the due epoch day, or -1 if no copies were checked out
+     */
+    long getNextDueDay(UUID id);
+
+    /**
+     * Returns the members of the library
+     *
+     * @return the members
+     */
+    List<IMember> getMembers();
+
+    /**
+     * Returns the checkouts a member had not returned
+     *
+     * @param member the member
+     * @return the checkouts, or an empty list if the member was not in the library
+     */
+    List<ICheckout> getCheckouts(IMember member);
+
+    /**
+     * Returns the fine a member owes today for the checkouts it had in this snapshot
+     *
+     * @param member the member
+     * @return the fine, or zero if the member was not in the library
+     */
+    double getFine(IMember member);
+
+    /**
+     * Returns the fines members owe today for the checkouts they had in this snapshot
+     *
+     * @return the fines of the members that owe any, by member
+     */
+    Map<IMember, Double> getFines();
+
+    /**
+     * Returns the due day a checkout had in this snapshot
+     *
+     * @param checkout the checkout
+     * @return the due epoch day, or -1 if the checkout was not active in this snapshot
+     */
+    long getDueDay(ICheckout checkout);
+
+}
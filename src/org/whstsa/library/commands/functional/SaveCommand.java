@@ -4,7 +4,7 @@ import org.json.JSONObject;
 import org.whstsa.library.LibraryDB;
 import org.whstsa.library.commands.api.ICommand;
 import org.whstsa.library.commands.api.ICommandSender;
-import org.whstsa.library.db.Loader;
+import org.whstsa.library.db.Journal;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -17,7 +17,7 @@ public class SaveCommand implements ICommand {
     @Override
     public JSONObject handle(String[] args, ICommandSender commandSender) {
         try {
-            LibraryDB.getFileDelegate().save(Loader.getLoader().computeJSON());
+            Journal.getJournal().save(LibraryDB.getFileDelegate());
         } catch (IOException ex) {
             ex.printStackTrace();
         }
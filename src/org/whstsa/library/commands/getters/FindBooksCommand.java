@@ -0,0 +1,46 @@
+package org.whstsa.library.commands.getters;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.whstsa.library.api.books.IBook;
+import org.whstsa.library.commands.api.ICommand;
+import org.whstsa.library.commands.api.ICommandSender;
+import org.whstsa.library.db.ObjectDelegate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class FindBooksCommand implements ICommand {
+
+    private static final int LIMIT = 25;
+
+    @Override
+    public JSONObject handle(String[] args, ICommandSender commandSender) {
+        if (args.length == 0) {
+            return ICommand.showSyntax();
+        }
+        String query = String.join(" ", args);
+        List<IBook> books = ObjectDelegate.searchBooks(query);
+        if (books.isEmpty()) {
+            commandSender.sendMessage("Notice: No books match " + query + ", showing similar books.");
+            books = ObjectDelegate.findSimilarBooks(query, LIMIT);
+        }
+        JSONArray results = new JSONArray();
+        books.stream().limit(LIMIT).forEach(book -> results.put(book.toJSON()));
+        JSONObject result = new JSONObject();
+        result.put("books", results);
+        return result;
+    }
+
+    @Override
+    public List<String> getArgs() {
+        List<String> args = new ArrayList<>();
+        args.add("...query");
+        return args;
+    }
+
+    @Override
+    public String getName() {
+        return "findbooks";
+    }
+}
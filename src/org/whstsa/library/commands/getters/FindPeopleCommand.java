@@ -0,0 +1,46 @@
+package org.whstsa.library.commands.getters;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.whstsa.library.api.IPerson;
+import org.whstsa.library.commands.api.ICommand;
+import org.whstsa.library.commands.api.ICommandSender;
+import org.whstsa.library.db.ObjectDelegate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class FindPeopleCommand implements ICommand {
+
+    private static final int LIMIT = 25;
+
+    @Override
+    public JSONObject handle(String[] args, ICommandSender commandSender) {
+        if (args.length == 0) {
+            return ICommand.showSyntax();
+        }
+        String query = String.join(" ", args);
+        List<IPerson> people = ObjectDelegate.searchPeople(query);
+        if (people.isEmpty()) {
+            commandSender.sendMessage("Notice: No people match " + query + ", showing people with similar names.");
+            people = ObjectDelegate.findSimilarPeople(query, LIMIT);
+        }
+        JSONArray results = new JSONArray();
+        people.stream().limit(LIMIT).forEach(person -> results.put(person.toJSON()));
+        JSONObject result = new JSONObject();
+        result.put("people", results);
+        return result;
+    }
+
+    @Override
+    public List<String> getArgs() {
+        List<String> args = new ArrayList<>();
+        args.add("...query");
+        return args;
+    }
+
+    @Override
+    public String getName() {
+        return "findpeople";
+    }
+}
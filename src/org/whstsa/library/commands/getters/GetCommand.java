@@ -2,17 +2,14 @@ package org.whstsa.library.commands.getters;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
-import org.whstsa.library.api.IPerson;
 import org.whstsa.library.api.Serializable;
-import org.whstsa.library.api.books.IBook;
-import org.whstsa.library.api.library.ILibrary;
 import org.whstsa.library.commands.api.ICommand;
 import org.whstsa.library.commands.api.ICommandSender;
+import org.whstsa.library.db.EntityType;
 import org.whstsa.library.db.ObjectDelegate;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -27,8 +24,6 @@ public class GetCommand implements ICommand {
         JSONArray libraries = new JSONArray();
         JSONArray other = new JSONArray();
 
-        Map<UUID, Serializable> serializableMap = ObjectDelegate.getCombinedMap();
-
         for (String arg : args) {
             UUID uuid;
             try {
@@ -37,19 +32,25 @@ public class GetCommand implements ICommand {
                 commandSender.sendMessage("Notice: Skipping " + arg + " as it is an invalid UUID.");
                 continue;
             }
-            Serializable serializable = serializableMap.get(uuid);
-            if (serializable == null) {
+            EntityType type = ObjectDelegate.getEntityType(uuid);
+            Serializable serializable = ObjectDelegate.getSerializable(uuid);
+            if (type == null || serializable == null) {
                 commandSender.sendMessage("Notice: Skipping " + arg + " as it does not exist.");
                 continue;
             }
-            if (serializable instanceof IBook) {
-                books.put(serializable.toJSON());
-            } else if (serializable instanceof IPerson) {
-                people.put(serializable.toJSON());
-            } else if (serializable instanceof ILibrary) {
-                libraries.put(serializable.toJSON());
-            } else {
-                other.put(serializable.toJSON());
+            switch (type) {
+                case BOOK:
+                    books.put(serializable.toJSON());
+                    break;
+                case PERSON:
+                    people.put(serializable.toJSON());
+                    break;
+                case LIBRARY:
+                    libraries.put(serializable.toJSON());
+                    break;
+                default:
+                    other.put(serializable.toJSON());
+                    break;
             }
         }
 
@@ -0,0 +1,50 @@
+package org.whstsa.library.commands.getters;
+
+import org.json.JSONObject;
+import org.whstsa.library.api.library.ILibrary;
+import org.whstsa.library.commands.api.ICommand;
+import org.whstsa.library.commands.api.ICommandSender;
+import org.whstsa.library.db.ObjectDelegate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public class GetFinesCommand implements ICommand {
+    @Override
+    public JSONObject handle(String[] args, ICommandSender commandSender) {
+        if (args.length == 0) {
+            return ICommand.showSyntax();
+        }
+        UUID uuid;
+        try {
+            uuid = UUID.fromString(args[0]);
+        } catch (IllegalArgumentException ex) {
+            commandSender.sendMessage("Notice: " + args[0] + " is an invalid UUID.");
+            return null;
+        }
+        ILibrary library = ObjectDelegate.getLibrary(uuid);
+        if (library == null) {
+            commandSender.sendMessage("Notice: " + args[0] + " does not exist.");
+            return null;
+        }
+        JSONObject members = new JSONObject();
+        library.getFines().forEach((member, fine) -> members.put(member.getID().toString(), fine));
+        JSONObject result = new JSONObject();
+        result.put("total", library.getOutstandingFines());
+        result.put("members", members);
+        return result;
+    }
+
+    @Override
+    public List<String> getArgs() {
+        List<String> args = new ArrayList<>();
+        args.add("library uuid");
+        return args;
+    }
+
+    @Override
+    public String getName() {
+        return "fines";
+    }
+}
@@ -0,0 +1,64 @@
+package org.whstsa.library.commands.getters;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.whstsa.library.api.DateUtils;
+import org.whstsa.library.api.impl.library.Checkout;
+import org.whstsa.library.commands.api.ICommand;
+import org.whstsa.library.commands.api.ICommandSender;
+import org.whstsa.library.db.CirculationHistory;
+import org.whstsa.library.db.CirculationRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public class GetHistoryCommand implements ICommand {
+    @Override
+    public JSONObject handle(String[] args, ICommandSender commandSender) {
+        if (args.length == 0) {
+            return ICommand.showSyntax();
+        }
+        UUID uuid;
+        try {
+            uuid = UUID.fromString(args[0]);
+        } catch (IllegalArgumentException ex) {
+            commandSender.sendMessage("Notice: " + args[0] + " is an invalid UUID.");
+            return null;
+        }
+        // members and books that are no longer loaded keep their history, so the ID is not resolved
+        List<CirculationRecord> records = CirculationHistory.getHistory().getMemberHistory(uuid);
+        if (records.isEmpty()) {
+            records = CirculationHistory.getHistory().getBookHistory(uuid);
+        }
+        if (records.isEmpty()) {
+            commandSender.sendMessage("Notice: No returns are recorded for " + args[0] + ".");
+        }
+        JSONArray history = new JSONArray();
+        for (CirculationRecord record : records) {
+            JSONObject entry = new JSONObject();
+            entry.put("member", record.getMemberID());
+            entry.put("book", record.getBookID());
+            if (record.getCheckoutDay() != Checkout.UNKNOWN_DAY) {
+                entry.put("checkoutDate", DateUtils.toDayString(record.getCheckoutDay()));
+            }
+            entry.put("returnDate", DateUtils.toDayString(record.getReturnDay()));
+            history.put(entry);
+        }
+        JSONObject result = new JSONObject();
+        result.put("history", history);
+        return result;
+    }
+
+    @Override
+    public List<String> getArgs() {
+        List<String> args = new ArrayList<>();
+        args.add("member or book uuid");
+        return args;
+    }
+
+    @Override
+    public String getName() {
+        return "history";
+    }
+}
@@ -0,0 +1,36 @@
+package org.whstsa.library.commands.getters;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.whstsa.library.commands.api.ICommand;
+import org.whstsa.library.commands.api.ICommandSender;
+import org.whstsa.library.db.ObjectDelegate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ListBooksByAuthorCommand implements ICommand {
+    @Override
+    public JSONObject handle(String[] args, ICommandSender commandSender) {
+        if (args.length == 0) {
+            return ICommand.showSyntax();
+        }
+        JSONArray books = new JSONArray();
+        ObjectDelegate.getBooksByAuthor(String.join(" ", args)).forEach(book -> books.put(book.toJSON()));
+        JSONObject result = new JSONObject();
+        result.put("books", books);
+        return result;
+    }
+
+    @Override
+    public List<String> getArgs() {
+        List<String> args = new ArrayList<>();
+        args.add("...author");
+        return args;
+    }
+
+    @Override
+    public String getName() {
+        return "booksbyauthor";
+    }
+}
@@ -0,0 +1,51 @@
+package org.whstsa.library.commands.getters;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.whstsa.library.api.BookType;
+import org.whstsa.library.commands.api.ICommand;
+import org.whstsa.library.commands.api.ICommandSender;
+import org.whstsa.library.db.ObjectDelegate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ListBooksByGenreCommand implements ICommand {
+    @Override
+    public JSONObject handle(String[] args, ICommandSender commandSender) {
+        if (args.length == 0) {
+            // without a genre, count the titles of every genre
+            int[] counts = ObjectDelegate.countBookTypes();
+            JSONObject result = new JSONObject();
+            for (BookType type : BookType.values()) {
+                result.put(type.getGenre(), counts[type.ordinal()]);
+            }
+            return result;
+        }
+        String genre = String.join(" ", args);
+        BookType type;
+        try {
+            type = BookType.getGenre(genre);
+        } catch (IllegalArgumentException ex) {
+            commandSender.sendMessage("Notice: " + genre + " is not a genre.");
+            return null;
+        }
+        JSONArray books = new JSONArray();
+        ObjectDelegate.getBooksByType(type).forEach(book -> books.put(book.toJSON()));
+        JSONObject result = new JSONObject();
+        result.put("books", books);
+        return result;
+    }
+
+    @Override
+    public List<String> getArgs() {
+        List<String> args = new ArrayList<>();
+        args.add("...genre");
+        return args;
+    }
+
+    @Override
+    public String getName() {
+        return "booksbygenre";
+    }
+}
@@ -4,7 +4,6 @@ import org.json.JSONObject;
 import org.whstsa.library.api.books.IBook;
 import org.whstsa.library.api.exceptions.MaximumCheckoutsException;
 import org.whstsa.library.api.exceptions.OutOfStockException;
-import org.whstsa.library.api.impl.library.Library;
 import org.whstsa.library.api.library.IMember;
 import org.whstsa.library.commands.CommandUtil;
 import org.whstsa.library.commands.api.ICommand;
@@ -33,7 +32,7 @@ public class CheckoutBookCommand implements ICommand {
         } catch (IllegalArgumentException ex) {
             return CommandUtil.createErrorResponse("The IDs provided are invalid.");
         }
-        IMember member = Library.findLibrary(memberID).getMemberMap().get(memberID);
+        IMember member = ObjectDelegate.getMember(memberID);
         if (member == null) {
             return CommandUtil.createErrorResponse("No member with the given ID could be found.");
         }
@@ -0,0 +1,430 @@
+package org.whstsa.library.db;
+
+import org.apache.commons.lang3.EnumUtils;
+import org.whstsa.library.Tester;
+import org.whstsa.library.api.BookType;
+import org.whstsa.library.api.DateUtils;
+import org.whstsa.library.api.IPerson;
+import org.whstsa.library.api.books.IBook;
+import org.whstsa.library.api.exceptions.LoadingException;
+import org.whstsa.library.api.impl.Person;
+import org.whstsa.library.api.impl.library.Checkout;
+import org.whstsa.library.api.impl.library.Library;
+import org.whstsa.library.api.impl.library.LibrarySnapshot;
+import org.whstsa.library.api.impl.library.Member;
+import org.whstsa.library.api.impl.library.MemberHydrator;
+import org.whstsa.library.api.library.ICheckout;
+import org.whstsa.library.api.library.ILibrary;
+import org.whstsa.library.api.library.ILibrarySnapshot;
+import org.whstsa.library.api.library.IMember;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Reads and writes the compact binary snapshot format.
+ * <p>
+ * A snapshot starts with the {@link #MAGIC} bytes and a format version, followed by
+ * a table of every distinct string in the database. The book, person and library
+ * sections then only refer to strings by their index in that table. UUIDs are stored
+ * as two longs and due dates as epoch days. Book types are stored by name in the
+ * string table, so adding or reordering types does not change what a snapshot means.
+ * Reading a snapshot is mostly a matter of constructing the objects. Version 1
+ * snapshots, which stored due dates as epoch milliseconds, and version 2 snapshots,
+ * which did not store checkout dates, can still be read.
+ * <p>
+ * Book and person records have a fixed size, so both sections are decoded in
+ * batches on the load pool of the {@link Loader}. Library records are located with
+ * a quick scan over their counts and are then decoded in parallel as well, once
+ * every book and person they refer to has been loaded.
+ * <p>
+ * When the loader loads lazily, the member section of each library is copied out
+ * of the mapping and only decoded once the members of that library are accessed.
+ * <p>
+ * All integers are big-endian, which is what both {@link DataOutputStream} and
+ * {@link ByteBuffer} use by default.
+ */
+public class BinarySnapshot {
+
+    public static final byte[] MAGIC = {'L', 'B', 'D', 'B'};
+    public static final int VERSION = 3;
+    private static final int VERSION_EPOCH_MILLIS = 1;
+    private static final int VERSION_NO_CHECKOUT_DAY = 2;
+
+    private static final int UUID_SIZE = 16;
+    private static final int BOOK_RECORD_SIZE = UUID_SIZE + 4 + 4 + 4;
+    private static final int PERSON_RECORD_SIZE = UUID_SIZE + 4 + 4 + 1;
+    private static final int CHECKOUT_RECORD_SIZE = UUID_SIZE * 2 + 8 + 8 + 1;
+    private static final int BATCH_SIZE = 1024;
+
+    private BinarySnapshot() {
+    }
+
+    /**
+     * Returns whether the given bytes begin with the snapshot magic
+     *
+     * @param header the first bytes of a file
+     * @return whether the bytes belong to a binary snapshot
+     */
+    public static boolean isSnapshot(byte[] header) {
+        return header.length >= MAGIC.length && Arrays.equals(Arrays.copyOf(header, MAGIC.length), MAGIC);
+    }
+
+    /**
+     * Reads a binary snapshot into the data stores of the loader
+     *
+     * @param buffer the buffer positioned at the start of the snapshot
+     * @param loader the loader to fill
+     * @throws LoadingException thrown when the snapshot is malformed
+     */
+    public static void read(ByteBuffer buffer, Loader loader) throws LoadingException {
+        Tester.print("Loading binary snapshot into data stores");
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            if (!isSnapshot(magic)) {
+                throw new LoadingException("Binary snapshot is malformed. Missing magic bytes");
+            }
+            int version = buffer.getInt();
+            if (version < VERSION_EPOCH_MILLIS || version > VERSION) {
+                throw new LoadingException("Unsupported binary snapshot version " + version);
+            }
+
+            String[] strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            Tester.print("Loading books and people");
+            int bookCount = buffer.getInt();
+            int booksStart = buffer.position();
+            buffer.position(booksStart + bookCount * BOOK_RECORD_SIZE);
+            int personCount = buffer.getInt();
+            int peopleStart = buffer.position();
+            buffer.position(peopleStart + personCount * PERSON_RECORD_SIZE);
+
+            List<ForkJoinTask<?>> recordTasks = new ArrayList<>();
+            for (int first = 0; first < bookCount; first += BATCH_SIZE) {
+                ByteBuffer batch = slice(buffer, booksStart + first * BOOK_RECORD_SIZE);
+                int count = Math.min(BATCH_SIZE, bookCount - first);
+                recordTasks.add(Loader.submit(() -> readBooks(batch, count, strings, loader)));
+            }
+            for (int first = 0; first < personCount; first += BATCH_SIZE) {
+                ByteBuffer batch = slice(buffer, peopleStart + first * PERSON_RECORD_SIZE);
+                int count = Math.min(BATCH_SIZE, personCount - first);
+                recordTasks.add(Loader.submit(() -> readPeople(batch, count, strings, loader)));
+            }
+
+            List<Integer> libraryOffsets = new ArrayList<>();
+            for (int i = buffer.getInt(); i > 0; i--) {
+                libraryOffsets.add(buffer.position());
+                skipLibrary(buffer, version);
+            }
+            Loader.awaitAll(recordTasks);
+
+            Tester.print("Loading libraries");
+            List<ForkJoinTask<?>> libraryTasks = new ArrayList<>(libraryOffsets.size());
+            for (int offset : libraryOffsets) {
+                ByteBuffer library = slice(buffer, offset);
+                libraryTasks.add(Loader.submit(() -> readLibrary(library, strings, loader, version)));
+            }
+            Loader.awaitAll(libraryTasks);
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException | NegativeArraySizeException ex) {
+            throw new LoadingException("Binary snapshot is truncated or malformed");
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int position) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(position);
+        return slice;
+    }
+
+    private static Void readBooks(ByteBuffer buffer, int count, String[] strings, Loader loader) {
+        for (int i = 0; i < count; i++) {
+            UUID uuid = readUUID(buffer);
+            String title = strings[buffer.getInt()];
+            String authorName = strings[buffer.getInt()];
+            BookType type = EnumUtils.getEnum(BookType.class, strings[buffer.getInt()]);
+            if (type == null) {
+                type = BookType.GENERIC;
+            }
+            loader.storeBook(loader.createBook(title, authorName, type, uuid));
+        }
+        return null;
+    }
+
+    private static Void readPeople(ByteBuffer buffer, int count, String[] strings, Loader loader) {
+        for (int i = 0; i < count; i++) {
+            UUID uuid = readUUID(buffer);
+            String firstName = strings[buffer.getInt()];
+            String lastName = strings[buffer.getInt()];
+            boolean teacher = buffer.get() != 0;
+            loader.storePerson(new Person(firstName, lastName, teacher, uuid));
+        }
+        return null;
+    }
+
+    private static int getCheckoutRecordSize(int version) {
+        return version > VERSION_NO_CHECKOUT_DAY ? CHECKOUT_RECORD_SIZE : CHECKOUT_RECORD_SIZE - 8;
+    }
+
+    private static void skipLibrary(ByteBuffer buffer, int version) {
+        buffer.position(buffer.position() + UUID_SIZE + 4);
+        int bookCount = buffer.getInt();
+        buffer.position(buffer.position() + bookCount * UUID_SIZE);
+        int quantityCount = buffer.getInt();
+        buffer.position(buffer.position() + quantityCount * (UUID_SIZE + 4));
+        skipMembers(buffer, version);
+    }
+
+    private static void indexMembers(ByteBuffer buffer, ILibrary library, Loader loader, int version) {
+        for (int i = buffer.getInt(); i > 0; i--) {
+            loader.registerMember(readUUID(buffer), library);
+            loader.indexMembership(readUUID(buffer), library);
+            int checkoutCount = buffer.getInt();
+            buffer.position(buffer.position() + checkoutCount * getCheckoutRecordSize(version));
+        }
+    }
+
+    private static void skipMembers(ByteBuffer buffer, int version) {
+        for (int i = buffer.getInt(); i > 0; i--) {
+            buffer.position(buffer.position() + UUID_SIZE * 2);
+            int checkoutCount = buffer.getInt();
+            buffer.position(buffer.position() + checkoutCount * getCheckoutRecordSize(version));
+        }
+    }
+
+    private static ILibrary readLibrary(ByteBuffer buffer, String[] strings, Loader loader, int version) throws LoadingException {
+        UUID uuid = readUUID(buffer);
+        Library library = new Library(strings[buffer.getInt()], uuid);
+
+        List<IBook> bookList = new ArrayList<>();
+        for (int i = buffer.getInt(); i > 0; i--) {
+            IBook book = loader.getBookMap().get(readUUID(buffer));
+            if (book != null) {
+                bookList.add(book);
+            }
+        }
+        library.impl_setBookList(bookList);
+
+        for (int i = buffer.getInt(); i > 0; i--) {
+            long mostSignificantBits = buffer.getLong();
+            library.impl_setQuantity(mostSignificantBits, buffer.getLong(), buffer.getInt());
+        }
+
+        if (loader.isLazyLoading()) {
+            int membersStart = buffer.position();
+            indexMembers(buffer, library, loader, version);
+            byte[] rawMembers = new byte[buffer.position() - membersStart];
+            buffer.position(membersStart);
+            buffer.get(rawMembers);
+            library.impl_setHydrator(new BinaryMemberHydrator(rawMembers, version));
+        } else {
+            library.impl_setMembers(readMembers(buffer, library, loader, version));
+        }
+
+        loader.storeLibrary(library);
+        return library;
+    }
+
+    private static List<IMember> readMembers(ByteBuffer buffer, Library library, Loader loader, int version) throws LoadingException {
+        List<IMember> memberList = new ArrayList<>();
+        for (int i = buffer.getInt(); i > 0; i--) {
+            UUID memberID = readUUID(buffer);
+            IPerson person = loader.getPersonMap().get(readUUID(buffer));
+            Member member = new Member(person, library, memberID);
+
+            Map<IBook, List<ICheckout>> memberBooks = new HashMap<>();
+            for (int j = buffer.getInt(); j > 0; j--) {
+                UUID checkoutID = readUUID(buffer);
+                UUID bookID = readUUID(buffer);
+                long dueDay = buffer.getLong();
+                if (version == VERSION_EPOCH_MILLIS) {
+                    dueDay = DateUtils.toEpochDay(dueDay);
+                }
+                long checkoutDay = version > VERSION_NO_CHECKOUT_DAY ? buffer.getLong() : Checkout.UNKNOWN_DAY;
+                boolean returned = buffer.get() != 0;
+                IBook book = loader.getBookMap().get(bookID);
+                if (book == null) {
+                    throw new LoadingException("Checkout (" + checkoutID + ") refers to a book ID (" + bookID + ") that has not been loaded yet.");
+                }
+                if (returned) {
+                    continue;
+                }
+                memberBooks.computeIfAbsent(book, key -> new ArrayList<>()).add(new Checkout(member, book, checkoutID, dueDay, checkoutDay));
+            }
+            member.impl_setBooks(memberBooks);
+            memberList.add(member);
+        }
+        return memberList;
+    }
+
+    /**
+     * Writes every object in the data stores of the loader as a binary snapshot.
+     * Returned checkouts are left out, the same way they are left out of the JSON format.
+     * <p>
+     * Libraries are written from their snapshots, and the names of books and people are
+     * read once up front, so objects that change while the snapshot is being written
+     * never stall the writer or leave the file inconsistent.
+     *
+     * @param loader the loader to write
+     * @param out    the stream to write to
+     * @throws IOException thrown when the stream fails
+     */
+    public static void write(Loader loader, OutputStream out) throws IOException {
+        List<IBook> books = new ArrayList<>(loader.getBookMap().values());
+        List<IPerson> people = new ArrayList<>(loader.getPersonMap().values());
+        List<ILibrarySnapshot> libraries = new ArrayList<>();
+        loader.getLibraryMap().values().forEach(library -> libraries.add(snapshot(library)));
+
+        Map<String, Integer> stringTable = new LinkedHashMap<>();
+        String[] bookStrings = new String[books.size() * 3];
+        for (int i = 0; i < books.size(); i++) {
+            bookStrings[i * 3] = intern(stringTable, books.get(i).getName());
+            bookStrings[i * 3 + 1] = intern(stringTable, books.get(i).getAuthorName());
+            bookStrings[i * 3 + 2] = intern(stringTable, books.get(i).getType().name());
+        }
+        String[] personStrings = new String[people.size() * 2];
+        for (int i = 0; i < people.size(); i++) {
+            personStrings[i * 2] = intern(stringTable, people.get(i).getFirstName());
+            personStrings[i * 2 + 1] = intern(stringTable, people.get(i).getLastName());
+        }
+        libraries.forEach(library -> intern(stringTable, library.getName()));
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.write(MAGIC);
+        data.writeInt(VERSION);
+
+        data.writeInt(stringTable.size());
+        for (String string : stringTable.keySet()) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            data.writeInt(bytes.length);
+            data.write(bytes);
+        }
+
+        data.writeInt(books.size());
+        for (int i = 0; i < books.size(); i++) {
+            IBook book = books.get(i);
+            writeUUID(data, book.getID());
+            data.writeInt(stringTable.get(bookStrings[i * 3]));
+            data.writeInt(stringTable.get(bookStrings[i * 3 + 1]));
+            data.writeInt(stringTable.get(bookStrings[i * 3 + 2]));
+        }
+
+        data.writeInt(people.size());
+        for (int i = 0; i < people.size(); i++) {
+            IPerson person = people.get(i);
+            writeUUID(data, person.getID());
+            data.writeInt(stringTable.get(personStrings[i * 2]));
+            data.writeInt(stringTable.get(personStrings[i * 2 + 1]));
+            data.writeBoolean(person.isTeacher());
+        }
+
+        data.writeInt(libraries.size());
+        for (ILibrarySnapshot snapshot : libraries) {
+            writeUUID(data, snapshot.getID());
+            data.writeInt(stringTable.get(snapshot.getName()));
+
+            List<IBook> libraryBooks = snapshot.getBooks();
+            data.writeInt(libraryBooks.size());
+            for (IBook book : libraryBooks) {
+                writeUUID(data, book.getID());
+            }
+
+            Map<UUID, Integer> quantities = snapshot.getBookQuantity();
+            data.writeInt(quantities.size());
+            for (Map.Entry<UUID, Integer> quantity : quantities.entrySet()) {
+                writeUUID(data, quantity.getKey());
+                data.writeInt(quantity.getValue());
+            }
+
+            MemberHydrator hydrator = snapshot instanceof LibrarySnapshot ? ((LibrarySnapshot) snapshot).getHydrator() : null;
+            if (hydrator != null) {
+                data.write(((BinaryMemberHydrator) hydrator).rawMembers);
+                continue;
+            }
+            List<IMember> members = snapshot.getMembers();
+            data.writeInt(members.size());
+            for (IMember member : members) {
+                writeUUID(data, member.getID());
+                writeUUID(data, member.getPerson().getID());
+                List<ICheckout> checkouts = snapshot.getCheckouts(member);
+                data.writeInt(checkouts.size());
+                for (ICheckout checkout : checkouts) {
+                    writeUUID(data, checkout.getID());
+                    writeUUID(data, checkout.getBook().getID());
+                    data.writeLong(snapshot.getDueDay(checkout));
+                    data.writeLong(checkout.getCheckoutDay());
+                    data.writeBoolean(false);
+                }
+            }
+        }
+        data.flush();
+    }
+
+    private static String intern(Map<String, Integer> stringTable, String string) {
+        stringTable.putIfAbsent(string, stringTable.size());
+        return string;
+    }
+
+    /**
+     * Returns the snapshot of a library to write. Members that have not been built yet
+     * are left unbuilt if their raw section can be written back as-is.
+     */
+    private static ILibrarySnapshot snapshot(ILibrary library) {
+        if (library instanceof Library) {
+            ((Library) library).checkHydrated();
+            LibrarySnapshot snapshot = ((Library) library).impl_getSnapshot();
+            MemberHydrator hydrator = snapshot.getHydrator();
+            if (hydrator == null || hydrator instanceof BinaryMemberHydrator && ((BinaryMemberHydrator) hydrator).version == VERSION) {
+                return snapshot;
+            }
+        }
+        return library.snapshot();
+    }
+
+    private static UUID readUUID(ByteBuffer buffer) {
+        long mostSignificantBits = buffer.getLong();
+        return new UUID(mostSignificantBits, buffer.getLong());
+    }
+
+    private static void writeUUID(DataOutputStream data, UUID uuid) throws IOException {
+        data.writeLong(uuid.getMostSignificantBits());
+        data.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    /**
+     * Holds the raw member section of a lazily loaded library. Until the library is
+     * hydrated the section is written back out as-is when the library is saved,
+     * unless it was read from an older version of the format.
+     */
+    private static class BinaryMemberHydrator implements MemberHydrator {
+
+        private final byte[] rawMembers;
+        private final int version;
+
+        private BinaryMemberHydrator(byte[] rawMembers, int version) {
+            this.rawMembers = rawMembers;
+            this.version = version;
+        }
+
+        @Override
+        public List<IMember> hydrate(Library library) throws LoadingException {
+            try {
+                return readMembers(ByteBuffer.wrap(this.rawMembers), library, Loader.getLoader(), this.version);
+            } catch (BufferUnderflowException ex) {
+                throw new LoadingException("Binary snapshot is truncated or malformed");
+            }
+        }
+    }
+
+}
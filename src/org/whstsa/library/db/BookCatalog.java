@@ -0,0 +1,221 @@
+package org.whstsa.library.db;
+
+import org.whstsa.library.api.BookType;
+import org.whstsa.library.api.books.IBook;
+
+import java.util.*;
+
+/**
+ * A columnar store for the book catalog.
+ * <p>
+ * Every book loaded while the catalog is enabled becomes a row in a set of parallel
+ * arrays: one for titles, one for author names and one byte column for the ordinal of
+ * the book type. Titles and author names are interned, so books by the same author
+ * share one string. Books are handed out as {@link CatalogBook} flyweights that only
+ * hold their row, so scans over the whole catalog read the columns directly instead of
+ * visiting every book object.
+ * <p>
+ * Books created at runtime with {@link org.whstsa.library.api.impl.Book} are not rows
+ * of the catalog, but they are tracked here as loose books so catalog scans still
+ * include them.
+ * <p>
+ * Changes to the catalog are synchronized. The columns are published through a
+ * volatile holder that is written again after every change and replaced whole when
+ * the columns grow, so flyweights read their row without locking.
+ */
+public class BookCatalog {
+
+    private static final BookType[] BOOK_TYPES = BookType.values();
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Map<String, String> strings = new HashMap<>();
+    private final Set<IBook> looseBooks = Collections.newSetFromMap(new IdentityHashMap<>());
+    private volatile Columns columns = new Columns(INITIAL_CAPACITY);
+    private final BitSet removed = new BitSet();
+    private int rowCount;
+
+    BookCatalog() {
+    }
+
+    /**
+     * Adds a row to the catalog
+     *
+     * @param title      the title of the book
+     * @param authorName the author of the book
+     * @param type       the type of the book
+     * @param uuid       the ID of the book
+     * @return the flyweight for the new row
+     */
+    synchronized CatalogBook add(String title, String authorName, BookType type, UUID uuid) {
+        int row = this.rowCount++;
+        Columns columns = this.columns;
+        if (row == columns.types.length) {
+            columns = new Columns(columns, row * 2);
+        }
+        columns.titles[row] = this.intern(title);
+        columns.authors[row] = this.intern(authorName);
+        columns.types[row] = (byte) type.ordinal();
+        columns.books[row] = new CatalogBook(this, row, uuid);
+        this.columns = columns;
+        return columns.books[row];
+    }
+
+    /**
+     * Removes a book from the catalog scans. Rows are not reused, so flyweights that
+     * are still referenced keep their values.
+     *
+     * @param book the book
+     */
+    synchronized void remove(IBook book) {
+        if (book instanceof CatalogBook && ((CatalogBook) book).getCatalog() == this) {
+            this.removed.set(((CatalogBook) book).getRow());
+        } else {
+            this.looseBooks.remove(book);
+        }
+    }
+
+    /**
+     * Tracks a book that is not a row of the catalog so it is included in scans
+     *
+     * @param book the book
+     */
+    synchronized void addLoose(IBook book) {
+        this.looseBooks.add(book);
+    }
+
+    /**
+     * Returns the amount of books in the catalog, including loose books
+     *
+     * @return the amount of books
+     */
+    public synchronized int size() {
+        return this.rowCount - this.removed.cardinality() + this.looseBooks.size();
+    }
+
+    /**
+     * Counts the books of every book type
+     *
+     * @return the counts, indexed by the ordinal of the book type
+     */
+    public synchronized int[] countTypes() {
+        int[] counts = new int[BOOK_TYPES.length];
+        byte[] types = this.columns.types;
+        for (int row = 0; row < this.rowCount; row++) {
+            counts[types[row]]++;
+        }
+        for (int row = this.removed.nextSetBit(0); row >= 0; row = this.removed.nextSetBit(row + 1)) {
+            counts[types[row]]--;
+        }
+        this.looseBooks.forEach(book -> counts[book.getType().ordinal()]++);
+        return counts;
+    }
+
+    /**
+     * Returns the books by an author
+     *
+     * @param authorName the exact name of the author
+     * @return the books, in catalog order followed by loose books
+     */
+    public synchronized List<IBook> findByAuthor(String authorName) {
+        List<IBook> matches = new ArrayList<>();
+        String author = this.strings.get(authorName);
+        if (author != null) {
+            Columns columns = this.columns;
+            for (int row = 0; row < this.rowCount; row++) {
+                if (columns.authors[row] == author && !this.removed.get(row)) {
+                    matches.add(columns.books[row]);
+                }
+            }
+        }
+        this.looseBooks.forEach(book -> {
+            if (authorName.equals(book.getAuthorName())) {
+                matches.add(book);
+            }
+        });
+        return matches;
+    }
+
+    /**
+     * Returns the books of a book type
+     *
+     * @param type the book type
+     * @return the books, in catalog order followed by loose books
+     */
+    public synchronized List<IBook> findByType(BookType type) {
+        List<IBook> matches = new ArrayList<>();
+        byte ordinal = (byte) type.ordinal();
+        Columns columns = this.columns;
+        for (int row = 0; row < this.rowCount; row++) {
+            if (columns.types[row] == ordinal && !this.removed.get(row)) {
+                matches.add(columns.books[row]);
+            }
+        }
+        this.looseBooks.forEach(book -> {
+            if (book.getType() == type) {
+                matches.add(book);
+            }
+        });
+        return matches;
+    }
+
+    String getTitle(int row) {
+        return this.columns.titles[row];
+    }
+
+    String getAuthorName(int row) {
+        return this.columns.authors[row];
+    }
+
+    BookType getType(int row) {
+        return BOOK_TYPES[this.columns.types[row]];
+    }
+
+    synchronized void setTitle(int row, String title) {
+        Columns columns = this.columns;
+        columns.titles[row] = this.intern(title);
+        this.columns = columns;
+    }
+
+    synchronized void setAuthorName(int row, String authorName) {
+        Columns columns = this.columns;
+        columns.authors[row] = this.intern(authorName);
+        this.columns = columns;
+    }
+
+    synchronized void setType(int row, BookType type) {
+        Columns columns = this.columns;
+        columns.types[row] = (byte) type.ordinal();
+        this.columns = columns;
+    }
+
+    private String intern(String string) {
+        String interned = this.strings.putIfAbsent(string, string);
+        return interned == null ? string : interned;
+    }
+
+    /**
+     * The parallel columns of the catalog
+     */
+    private static final class Columns {
+
+        private final String[] titles;
+        private final String[] authors;
+        private final byte[] types;
+        private final CatalogBook[] books;
+
+        private Columns(int capacity) {
+            this.titles = new String[capacity];
+            this.authors = new String[capacity];
+            this.types = new byte[capacity];
+            this.books = new CatalogBook[capacity];
+        }
+
+        private Columns(Columns columns, int capacity) {
+            this.titles = Arrays.copyOf(columns.titles, capacity);
+            this.authors = Arrays.copyOf(columns.authors, capacity);
+            this.types = Arrays.copyOf(columns.types, capacity);
+            this.books = Arrays.copyOf(columns.books, capacity);
+        }
+    }
+
+}
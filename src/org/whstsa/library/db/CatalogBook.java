@@ -0,0 +1,96 @@
+package org.whstsa.library.db;
+
+import org.json.JSONObject;
+import org.whstsa.library.api.BookType;
+import org.whstsa.library.api.books.IBook;
+
+import java.util.UUID;
+
+/**
+ * A book that is a row of the {@link BookCatalog}. The flyweight only holds its row
+ * and ID; everything else is read from and written to the columns of the catalog.
+ */
+public class CatalogBook implements IBook {
+
+    private final BookCatalog catalog;
+    private final int row;
+    private final UUID uuid;
+
+    CatalogBook(BookCatalog catalog, int row, UUID uuid) {
+        this.catalog = catalog;
+        this.row = row;
+        this.uuid = uuid;
+    }
+
+    BookCatalog getCatalog() {
+        return this.catalog;
+    }
+
+    int getRow() {
+        return this.row;
+    }
+
+    @Override
+    public JSONObject toJSON() {
+        JSONObject object = new JSONObject();
+
+        object.put("title", this.getName());
+        object.put("authorName", this.getAuthorName());
+        object.put("bookType", this.getType().name());
+        object.put("uuid", this.uuid);
+
+        return object;
+    }
+
+    @Override
+    public UUID getID() {
+        return this.uuid;
+    }
+
+    @Override
+    public BookType getType() {
+        return this.catalog.getType(this.row);
+    }
+
+    @Override
+    public void setType(BookType type) {
+        this.catalog.setType(this.row, type);
+        ObjectDelegate.reindex(this);
+        Journal.getJournal().recordBook(this);
+    }
+
+    @Override
+    public String getName() {
+        return this.catalog.getTitle(this.row);
+    }
+
+    @Override
+    public String getAuthorName() {
+        return this.catalog.getAuthorName(this.row);
+    }
+
+    @Override
+    public void setTitle(String title) {
+        this.catalog.setTitle(this.row, title);
+        ObjectDelegate.reindex(this);
+        Journal.getJournal().recordBook(this);
+    }
+
+    @Override
+    public void setAuthor(String authorName) {
+        this.catalog.setAuthorName(this.row, authorName);
+        ObjectDelegate.reindex(this);
+        Journal.getJournal().recordBook(this);
+    }
+
+    @Override
+    public void load() {
+        Loader.getLoader().loadBook(this);
+    }
+
+    @Override
+    public String toString() {
+        return this.getName();
+    }
+
+}
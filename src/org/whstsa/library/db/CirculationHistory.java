@@ -0,0 +1,223 @@
+package org.whstsa.library.db;
+
+import org.whstsa.library.api.library.ICheckout;
+import org.whstsa.library.util.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * An append-only store of returned checkouts.
+ * <p>
+ * Every returned checkout is encoded as a fixed-size record holding the member ID,
+ * the book ID, the day the book was checked out and the day it was returned. The
+ * records are kept in memory in a single growing byte array, and the record numbers
+ * of every member and every book are indexed so both can be queried without a scan.
+ * <p>
+ * Once the history has been attached to a data file, its records are loaded from the
+ * history file and new records are appended to it whenever the {@link Journal} commits.
+ */
+public class CirculationHistory {
+
+    public static final String HISTORY_SUFFIX = ".history";
+
+    private static final CirculationHistory HISTORY = new CirculationHistory();
+    private static final int RECORD_SIZE = 16 + 16 + 4 + 4;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Logger logger = new Logger("History");
+
+    private ByteBuffer records = ByteBuffer.allocate(RECORD_SIZE * INITIAL_CAPACITY);
+    private int recordCount;
+    private int committedCount;
+    private Map<UUID, RecordList> memberIndex = new HashMap<>();
+    private Map<UUID, RecordList> bookIndex = new HashMap<>();
+    private FileChannel channel;
+
+    private CirculationHistory() {
+    }
+
+    /**
+     * Returns the CirculationHistory singleton
+     *
+     * @return the history instance
+     */
+    public static CirculationHistory getHistory() {
+        return HISTORY;
+    }
+
+    /**
+     * Returns the history file that belongs to a data file
+     *
+     * @param dataFile the data file
+     * @return the history file
+     */
+    public static File getHistoryFile(File dataFile) {
+        return new File(dataFile.getPath() + HISTORY_SUFFIX);
+    }
+
+    /**
+     * Replaces the records in memory with the records of the history file and starts
+     * appending new records to it. A partially written record at the end of the file
+     * is discarded. This must be called after the journal has been replayed, since the
+     * returns it replays are already in the history file.
+     *
+     * @param historyFile the history file
+     * @throws IOException thrown when the history file cannot be read or opened
+     */
+    public synchronized void attach(File historyFile) throws IOException {
+        FileChannel channel = FileChannel.open(historyFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IOException("History file is too large: " + historyFile.getPath());
+        }
+        int count = (int) (size / RECORD_SIZE);
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(count, INITIAL_CAPACITY) * RECORD_SIZE);
+        buffer.limit(count * RECORD_SIZE);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.limit(buffer.capacity());
+        channel.truncate(count * RECORD_SIZE);
+        channel.position(count * RECORD_SIZE);
+
+        this.records = buffer;
+        this.recordCount = count;
+        this.committedCount = count;
+        this.memberIndex = new HashMap<>();
+        this.bookIndex = new HashMap<>();
+        for (int record = 0; record < count; record++) {
+            this.index(record);
+        }
+        if (this.channel != null) {
+            this.channel.close();
+        }
+        this.channel = channel;
+        this.logger.debug("Loaded " + count + " history records from " + historyFile.getPath());
+    }
+
+    /**
+     * Creates the history record of a returned checkout, so it can be built while the
+     * checkout is locked and added with {@link #record(CirculationRecord)} afterwards
+     *
+     * @param checkout  the returned checkout
+     * @param returnDay the epoch day it was returned on
+     * @return the record
+     */
+    public static CirculationRecord createRecord(ICheckout checkout, long returnDay) {
+        return new CirculationRecord(checkout.getOwner().getID(), checkout.getBook().getID(), checkout.getCheckoutDay(), returnDay);
+    }
+
+    /**
+     * Adds a returned checkout to the history
+     *
+     * @param record the record of the returned checkout
+     */
+    public synchronized void record(CirculationRecord record) {
+        if (this.records.capacity() < (this.recordCount + 1) * RECORD_SIZE) {
+            ByteBuffer grown = ByteBuffer.allocate(this.records.capacity() * 2);
+            grown.put(this.records.array(), 0, this.recordCount * RECORD_SIZE);
+            this.records = grown;
+        }
+        int offset = this.recordCount * RECORD_SIZE;
+        UUID memberID = record.getMemberID();
+        UUID bookID = record.getBookID();
+        this.records.putLong(offset, memberID.getMostSignificantBits());
+        this.records.putLong(offset + 8, memberID.getLeastSignificantBits());
+        this.records.putLong(offset + 16, bookID.getMostSignificantBits());
+        this.records.putLong(offset + 24, bookID.getLeastSignificantBits());
+        this.records.putInt(offset + 32, (int) record.getCheckoutDay());
+        this.records.putInt(offset + 36, (int) record.getReturnDay());
+        this.index(this.recordCount++);
+    }
+
+    /**
+     * Appends every record added since the last commit to the history file and forces
+     * it to disk. Does nothing while the history is not attached.
+     *
+     * @throws IOException thrown when the history file cannot be written
+     */
+    public synchronized void commit() throws IOException {
+        if (this.channel == null || this.committedCount == this.recordCount) {
+            return;
+        }
+        ByteBuffer pending = ByteBuffer.wrap(this.records.array(), this.committedCount * RECORD_SIZE, (this.recordCount - this.committedCount) * RECORD_SIZE);
+        while (pending.hasRemaining()) {
+            this.channel.write(pending);
+        }
+        this.channel.force(false);
+        this.committedCount = this.recordCount;
+    }
+
+    /**
+     * Returns the returned checkouts of a member, oldest first
+     *
+     * @param memberID the member ID
+     * @return the records
+     */
+    public synchronized List<CirculationRecord> getMemberHistory(UUID memberID) {
+        return this.collect(this.memberIndex.get(memberID));
+    }
+
+    /**
+     * Returns the returned checkouts of a book across every library, oldest first
+     *
+     * @param bookID the book ID
+     * @return the records
+     */
+    public synchronized List<CirculationRecord> getBookHistory(UUID bookID) {
+        return this.collect(this.bookIndex.get(bookID));
+    }
+
+    /**
+     * Returns the amount of records in the history
+     *
+     * @return the record count
+     */
+    public synchronized int size() {
+        return this.recordCount;
+    }
+
+    private void index(int record) {
+        int offset = record * RECORD_SIZE;
+        this.memberIndex.computeIfAbsent(this.readUUID(offset), id -> new RecordList()).add(record);
+        this.bookIndex.computeIfAbsent(this.readUUID(offset + 16), id -> new RecordList()).add(record);
+    }
+
+    private List<CirculationRecord> collect(RecordList recordList) {
+        if (recordList == null) {
+            return Collections.emptyList();
+        }
+        List<CirculationRecord> result = new ArrayList<>(recordList.size);
+        for (int i = 0; i < recordList.size; i++) {
+            int offset = recordList.records[i] * RECORD_SIZE;
+            result.add(new CirculationRecord(this.readUUID(offset), this.readUUID(offset + 16), this.records.getInt(offset + 32), this.records.getInt(offset + 36)));
+        }
+        return result;
+    }
+
+    private UUID readUUID(int offset) {
+        return new UUID(this.records.getLong(offset), this.records.getLong(offset + 8));
+    }
+
+    private static class RecordList {
+
+        private int[] records = new int[4];
+        private int size;
+
+        private void add(int record) {
+            if (this.size == this.records.length) {
+                this.records = Arrays.copyOf(this.records, this.size * 2);
+            }
+            this.records[this.size++] = record;
+        }
+    }
+
+}
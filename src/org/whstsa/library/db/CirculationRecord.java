@@ -0,0 +1,48 @@
+package org.whstsa.library.db;
+
+import java.util.UUID;
+
+/**
+ * A returned checkout as it is kept in the {@link CirculationHistory}
+ */
+public class CirculationRecord {
+
+    private final UUID memberID;
+    private final UUID bookID;
+    private final long checkoutDay;
+    private final long returnDay;
+
+    CirculationRecord(UUID memberID, UUID bookID, long checkoutDay, long returnDay) {
+        this.memberID = memberID;
+        this.bookID = bookID;
+        this.checkoutDay = checkoutDay;
+        this.returnDay = returnDay;
+    }
+
+    public UUID getMemberID() {
+        return this.memberID;
+    }
+
+    public UUID getBookID() {
+        return this.bookID;
+    }
+
+    /**
+     * Returns the day the book was checked out as a number of days since 1970-01-01
+     *
+     * @return the checkout epoch day, or -1 if it is not known
+     */
+    public long getCheckoutDay() {
+        return this.checkoutDay;
+    }
+
+    /**
+     * Returns the day the book was returned as a number of days since 1970-01-01
+     *
+     * @return the return epoch day
+     */
+    public long getReturnDay() {
+        return this.returnDay;
+    }
+
+}
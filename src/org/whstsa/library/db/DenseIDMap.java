@@ -0,0 +1,47 @@
+package org.whstsa.library.db;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Maps UUIDs to small, dense int IDs. IDs are handed out in order starting at zero
+ * and are never reused, so internal structures can be backed by arrays and bitsets
+ * indexed by them. UUIDs stay the identity used in files and commands.
+ * <p>
+ * Lookups of IDs that have already been assigned never lock, since they are made on
+ * every checkout and circulation count. Only assigning a new ID locks, and then only
+ * the bin of the concurrent map the UUID falls in.
+ */
+public class DenseIDMap {
+
+    private final Map<UUID, Integer> ids = new ConcurrentHashMap<>();
+    private final AtomicInteger nextID = new AtomicInteger();
+
+    /**
+     * Returns the dense ID of a UUID, assigning the next free ID if it has none yet
+     *
+     * @param uuid the UUID
+     * @return the dense ID
+     */
+    public int intern(UUID uuid) {
+        Integer id = this.ids.get(uuid);
+        if (id == null) {
+            id = this.ids.computeIfAbsent(uuid, key -> this.nextID.getAndIncrement());
+        }
+        return id;
+    }
+
+    /**
+     * Returns the dense ID of a UUID
+     *
+     * @param uuid the UUID
+     * @return the dense ID, or -1 if the UUID has not been assigned one
+     */
+    public int get(UUID uuid) {
+        Integer id = this.ids.get(uuid);
+        return id == null ? -1 : id;
+    }
+
+}
@@ -0,0 +1,11 @@
+package org.whstsa.library.db;
+
+/**
+ * The kinds of entities that are registered in the identity registry of the {@link Loader}
+ */
+public enum EntityType {
+    BOOK,
+    PERSON,
+    LIBRARY,
+    MEMBER
+}
@@ -1,31 +1,44 @@
 package org.whstsa.library.db;
 
-import org.json.JSONException;
 import org.json.JSONObject;
+import org.whstsa.library.api.exceptions.HydrationException;
+import org.whstsa.library.api.exceptions.LoadingException;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Arrays;
-import java.util.stream.Stream;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 
 /**
  * Created by eric on 11/19/17.
  */
 public class IOFileDelegate {
 
+    public static final String BINARY_EXTENSION = ".ldb";
+
     private File file;
+    private Format format;
 
     public IOFileDelegate(File file) {
         this.file = file;
+        this.format = detectFormat(file);
     }
 
     public IOFileDelegate(String path, boolean relative) {
@@ -49,38 +62,146 @@ public class IOFileDelegate {
         }
     }
 
-    public JSONObject parse() throws IOException, JSONException {
-        return new JSONObject(this.getText());
+    /**
+     * Determines the format of a data file from its magic bytes, or from its
+     * extension if the file does not exist or is empty
+     *
+     * @param file the data file
+     * @return the format of the file
+     */
+    public static Format detectFormat(File file) {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            byte[] header = new byte[BinarySnapshot.MAGIC.length];
+            int read = in.read(header);
+            if (read > 0) {
+                return BinarySnapshot.isSnapshot(header) ? Format.BINARY : Format.JSON;
+            }
+        } catch (IOException ex) {
+            // Fall back to the extension
+        }
+        return file.getName().endsWith(BINARY_EXTENSION) ? Format.BINARY : Format.JSON;
+    }
+
+    /**
+     * Returns the format the data file is read and saved in
+     *
+     * @return the format
+     */
+    public Format getFormat() {
+        return this.format;
+    }
+
+    /**
+     * Sets the format the data file is written in on the next save
+     *
+     * @param format the format
+     */
+    public void setFormat(Format format) {
+        this.format = format;
     }
 
-    public String getText() throws IOException {
-        StringBuilder builder = new StringBuilder();
-        this.getLines().forEach(builder::append);
-        return builder.toString();
+    /**
+     * Loads the data file into the loader in whichever format it was written in.
+     * Binary snapshots are memory mapped and decoded straight from the mapping,
+     * JSON files are streamed with {@link Loader#load(Reader)}. A skeleton file is
+     * created if none exists.
+     *
+     * @param loader the loader to fill
+     * @throws IOException      thrown when the file cannot be read
+     * @throws LoadingException thrown when the contents cannot be loaded
+     */
+    public void load(Loader loader) throws IOException, LoadingException {
+        if (this.format == Format.JSON) {
+            try (Reader reader = this.getReader()) {
+                loader.load(reader);
+            }
+            return;
+        }
+        if (!this.file.exists() || this.file.length() == 0) {
+            this.save(loader);
+        }
+        try (FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            BinarySnapshot.read(buffer, loader);
+        }
     }
 
-    public Stream<String> getLines() throws IOException {
+    /**
+     * Opens a buffered reader over the data file so it can be streamed into the loader
+     * without reading the whole file into memory. A skeleton file is created if none exists.
+     *
+     * @return the reader
+     * @throws IOException thrown when the file cannot be opened
+     */
+    public Reader getReader() throws IOException {
         try {
-            return Files.lines(this.file.toPath());
+            return Files.newBufferedReader(this.file.toPath());
         } catch (NoSuchFileException ex) {
-            JSONObject skeleton = new JSONObject();
-            JSONObject childSkeleton = new JSONObject();
-            skeleton.put("books", childSkeleton);
-            skeleton.put("libraries", childSkeleton);
-            skeleton.put("people", childSkeleton);
-            this.save(skeleton);
-            return Arrays.asList(skeleton.toString(4).split("\n")).stream();
+            this.save(createSkeleton());
+            return Files.newBufferedReader(this.file.toPath());
         }
     }
 
+    private static JSONObject createSkeleton() {
+        JSONObject skeleton = new JSONObject();
+        JSONObject childSkeleton = new JSONObject();
+        skeleton.put("books", childSkeleton);
+        skeleton.put("libraries", childSkeleton);
+        skeleton.put("people", childSkeleton);
+        return skeleton;
+    }
+
     public void save(JSONObject object) throws IOException {
         this.save(object.toString(4));
     }
 
+    /**
+     * Streams the contents of the loader to the data file without building the
+     * whole document in memory first. The data is written to a sibling temporary
+     * file which then replaces the data file, so an interrupted save never leaves
+     * a half-written database behind. The file is written in the current
+     * {@link #getFormat() format}. If the members of a library failed to load,
+     * the save is refused and the data file is left as it was.
+     *
+     * @param loader the loader to save
+     * @throws IOException thrown when the file cannot be written
+     */
+    public void save(Loader loader) throws IOException {
+        Path target = this.file.toPath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            if (this.format == Format.BINARY) {
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                    BinarySnapshot.write(loader, out);
+                }
+            } else {
+                try (Writer writer = Files.newBufferedWriter(temp)) {
+                    loader.writeJSON(writer);
+                }
+            }
+        } catch (HydrationException ex) {
+            Files.deleteIfExists(temp);
+            throw new IOException("Refusing to save. " + ex.getMessage(), ex);
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
     public void save(String text) throws IOException {
         BufferedWriter writer = new BufferedWriter(new FileWriter(this.file, false));
         writer.write(text);
         writer.close();
     }
 
+    /**
+     * The formats a data file can be stored in
+     */
+    public enum Format {
+        JSON,
+        BINARY
+    }
+
 }
@@ -0,0 +1,54 @@
+package org.whstsa.library.db;
+
+import org.whstsa.library.api.library.ILibrary;
+
+/**
+ * An entry of the identity registry of the {@link Loader}. Every entry holds the
+ * registered entity; members also hold the library that owns them. Members of lazily
+ * loaded libraries are registered with their library before they have been built,
+ * and get their entity once the library is hydrated.
+ */
+public class Identity {
+
+    private final EntityType type;
+    private final Object entity;
+    private final ILibrary owner;
+
+    Identity(EntityType type, Object entity) {
+        this(type, entity, null);
+    }
+
+    Identity(EntityType type, Object entity, ILibrary owner) {
+        this.type = type;
+        this.entity = entity;
+        this.owner = owner;
+    }
+
+    /**
+     * Returns the type of the registered entity
+     *
+     * @return the entity type
+     */
+    public EntityType getType() {
+        return this.type;
+    }
+
+    /**
+     * Returns the registered entity
+     *
+     * @return the registered object, or null for a member that has not been built yet
+     */
+    public Object getEntity() {
+        return this.entity;
+    }
+
+    /**
+     * Returns the library that owns a member
+     *
+     * @return the owning library, or null if the entity is not a member
+     */
+    public ILibrary getOwner() {
+        return this.owner;
+    }
+
+}
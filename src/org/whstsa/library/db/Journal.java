@@ -0,0 +1,382 @@
+package org.whstsa.library.db;
+
+import org.json.JSONObject;
+import org.whstsa.library.api.DateUtils;
+import org.whstsa.library.api.IPerson;
+import org.whstsa.library.api.books.IBook;
+import org.whstsa.library.api.library.ICheckout;
+import org.whstsa.library.api.library.ILibrary;
+import org.whstsa.library.api.library.IMember;
+import org.whstsa.library.util.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * An append-only write-ahead journal of domain mutations.
+ * <p>
+ * Every mutation is recorded as a single line of JSON. Recorded entries are
+ * buffered in memory and group-committed to the journal file by a background
+ * thread, and once enough entries have accumulated the journal is folded into
+ * the snapshot file by writing a full save and truncating the journal. On
+ * startup the snapshot is loaded first and the journal tail is replayed on top
+ * of it with {@link Loader#replay(Reader)}.
+ * <p>
+ * Entries are only recorded once the journal has been attached to a data file,
+ * so loading and replaying never write back into the journal.
+ */
+public class Journal {
+
+    public static final String JOURNAL_SUFFIX = ".journal";
+
+    private static final Journal JOURNAL = new Journal();
+    private static final long COMMIT_INTERVAL = 500;
+    private static final int CHECKPOINT_ENTRIES = 10000;
+
+    private final Logger logger = new Logger("Journal");
+    private final Object pendingLock = new Object();
+    private final Object writeLock = new Object();
+    private List<String> pending = new ArrayList<>();
+
+    private IOFileDelegate fileDelegate;
+    private File journalFile;
+    private volatile FileChannel channel;
+    private int uncheckpointedEntries;
+    private volatile boolean checkpointRequested;
+
+    private Journal() {
+    }
+
+    /**
+     * Returns the Journal singleton
+     *
+     * @return the journal instance
+     */
+    public static Journal getJournal() {
+        return JOURNAL;
+    }
+
+    /**
+     * Returns the journal file that belongs to a data file
+     *
+     * @param dataFile the data file
+     * @return the journal file
+     */
+    public static File getJournalFile(File dataFile) {
+        return new File(dataFile.getPath() + JOURNAL_SUFFIX);
+    }
+
+    /**
+     * Starts recording mutations into the journal of the given data file. This must
+     * be called after the snapshot has been loaded and the journal has been replayed.
+     *
+     * @param fileDelegate  the delegate of the snapshot file
+     * @param journalFile   the journal file to append to
+     * @param replayedCount the amount of entries that were replayed from the journal
+     * @throws IOException thrown when the journal file cannot be opened
+     */
+    public void attach(IOFileDelegate fileDelegate, File journalFile, int replayedCount) throws IOException {
+        synchronized (this.writeLock) {
+            this.fileDelegate = fileDelegate;
+            this.journalFile = journalFile;
+            this.channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            this.uncheckpointedEntries = replayedCount;
+        }
+        Thread committer = new Thread(this::runCommitter, "Journal");
+        committer.setDaemon(true);
+        committer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                this.commit();
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        }));
+        this.logger.debug("Journaling to " + journalFile.getPath());
+    }
+
+    /**
+     * Returns whether mutations are currently being recorded
+     *
+     * @return whether the journal is attached
+     */
+    public boolean isAttached() {
+        return this.channel != null;
+    }
+
+    /**
+     * Makes every recorded mutation durable. While the journal is attached this
+     * only commits the buffered entries, otherwise the whole database is saved.
+     *
+     * @param fileDelegate the delegate to save through when the journal is not attached
+     * @throws IOException thrown when the journal or data file cannot be written
+     */
+    public void save(IOFileDelegate fileDelegate) throws IOException {
+        if (this.isAttached()) {
+            this.commit();
+        } else {
+            fileDelegate.save(Loader.getLoader());
+        }
+    }
+
+    /**
+     * Writes every buffered entry to the journal file and forces it to disk
+     *
+     * @throws IOException thrown when the journal file cannot be written
+     */
+    public void commit() throws IOException {
+        synchronized (this.writeLock) {
+            if (this.channel == null) {
+                return;
+            }
+            CirculationHistory.getHistory().commit();
+            List<String> entries;
+            synchronized (this.pendingLock) {
+                if (this.pending.isEmpty()) {
+                    return;
+                }
+                entries = this.pending;
+                this.pending = new ArrayList<>();
+            }
+            StringBuilder builder = new StringBuilder();
+            entries.forEach(entry -> builder.append(entry).append('\n'));
+            ByteBuffer buffer = ByteBuffer.wrap(builder.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                this.channel.write(buffer);
+            }
+            this.channel.force(false);
+            this.uncheckpointedEntries += entries.size();
+        }
+    }
+
+    /**
+     * Folds the journal into the snapshot file by saving the whole database and
+     * truncating the journal. Entries recorded while the snapshot is being written
+     * stay buffered and are committed into the fresh journal afterwards; replaying
+     * them on top of a snapshot that already contains them is harmless.
+     *
+     * @throws IOException thrown when the snapshot or journal cannot be written
+     */
+    public void checkpoint() throws IOException {
+        synchronized (this.writeLock) {
+            if (this.channel == null) {
+                return;
+            }
+            this.commit();
+            this.fileDelegate.save(Loader.getLoader());
+            this.channel.truncate(0);
+            this.channel.force(true);
+            this.uncheckpointedEntries = 0;
+            this.checkpointRequested = false;
+        }
+        this.logger.debug("Checkpointed journal into " + this.journalFile.getPath());
+    }
+
+    /**
+     * Asks the background thread to checkpoint the journal on its next pass
+     */
+    public void requestCheckpoint() {
+        this.checkpointRequested = true;
+    }
+
+    private void runCommitter() {
+        while (true) {
+            try {
+                Thread.sleep(COMMIT_INTERVAL);
+                this.commit();
+                if (this.checkpointRequested || this.uncheckpointedEntries >= CHECKPOINT_ENTRIES) {
+                    this.checkpoint();
+                }
+            } catch (InterruptedException ex) {
+                this.logger.warn("Journal committer has been stopped abruptly.");
+                return;
+            } catch (IOException ex) {
+                this.logger.error("Couldn't write the journal: " + ex.getMessage());
+            }
+        }
+    }
+
+    private void record(String operation, JSONObject entry) {
+        if (this.channel == null) {
+            return;
+        }
+        entry.put("op", operation);
+        String line = entry.toString();
+        synchronized (this.pendingLock) {
+            this.pending.add(line);
+        }
+    }
+
+    /**
+     * Records a book that was created or edited
+     *
+     * @param book the book
+     */
+    public void recordBook(IBook book) {
+        this.record("book", new JSONObject().put("book", book.toJSON()));
+    }
+
+    /**
+     * Records a book that was removed from the book store
+     *
+     * @param uuid the book ID
+     */
+    public void recordUnloadBook(UUID uuid) {
+        this.record("unloadBook", new JSONObject().put("uuid", uuid));
+    }
+
+    /**
+     * Records a person who was created or edited
+     *
+     * @param person the person
+     */
+    public void recordPerson(IPerson person) {
+        this.record("person", new JSONObject().put("person", person.toJSON()));
+    }
+
+    /**
+     * Records a person who was removed from the people store
+     *
+     * @param uuid the person ID
+     */
+    public void recordUnloadPerson(UUID uuid) {
+        this.record("unloadPerson", new JSONObject().put("uuid", uuid));
+    }
+
+    /**
+     * Records a library that was created or renamed
+     *
+     * @param library the library
+     */
+    public void recordLibrary(ILibrary library) {
+        this.record("library", new JSONObject().put("uuid", library.getID()).put("name", library.getName()));
+    }
+
+    /**
+     * Records a library that was removed from the library store
+     *
+     * @param uuid the library ID
+     */
+    public void recordUnloadLibrary(UUID uuid) {
+        this.record("unloadLibrary", new JSONObject().put("uuid", uuid));
+    }
+
+    /**
+     * Records a book that was registered with a library
+     *
+     * @param library the library
+     * @param book    the book
+     */
+    public void recordAddBook(ILibrary library, IBook book) {
+        this.record("addBook", new JSONObject().put("library", library.getID()).put("book", book.getID()));
+    }
+
+    /**
+     * Records a book that was deregistered from a library
+     *
+     * @param library the library
+     * @param book    the book
+     */
+    public void recordRemoveBook(ILibrary library, IBook book) {
+        this.record("removeBook", new JSONObject().put("library", library.getID()).put("book", book.getID()));
+    }
+
+    /**
+     * Records the stock of a book in a library
+     *
+     * @param library  the library
+     * @param bookID   the book ID
+     * @param quantity the new quantity
+     */
+    public void recordQuantity(ILibrary library, UUID bookID, int quantity) {
+        this.record("quantity", new JSONObject().put("library", library.getID()).put("book", bookID).put("quantity", quantity));
+    }
+
+    /**
+     * Records a member that joined their library
+     *
+     * @param member the member
+     */
+    public void recordAddMember(IMember member) {
+        this.record("addMember", new JSONObject().put("library", member.getLibrary().getID()).put("member", member.getID()).put("personID", member.getPerson().getID()));
+    }
+
+    /**
+     * Records a member that was removed from their library
+     *
+     * @param member the member
+     */
+    public void recordRemoveMember(IMember member) {
+        this.record("removeMember", new JSONObject().put("library", member.getLibrary().getID()).put("member", member.getID()));
+    }
+
+    /**
+     * Records a new checkout along with its full state
+     *
+     * @param checkout the checkout
+     */
+    public void recordCheckout(ICheckout checkout) {
+        this.record("checkout", createCheckoutEntry(checkout).put("checkout", checkout.toJSON()));
+    }
+
+    /**
+     * Creates the entry of a checkout that was returned, so it can be built while the
+     * checkout is locked and recorded with {@link #recordReturn(JSONObject)} afterwards
+     *
+     * @param checkout  the checkout
+     * @param returnDay the epoch day it was returned on
+     * @return the entry
+     */
+    public static JSONObject createReturnEntry(ICheckout checkout, long returnDay) {
+        return createCheckoutEntry(checkout).put("checkout", checkout.getID()).put("returnDate", DateUtils.toDayString(returnDay));
+    }
+
+    /**
+     * Records a checkout that was returned
+     *
+     * @param returnEntry the entry created by {@link #createReturnEntry(ICheckout, long)}
+     */
+    public void recordReturn(JSONObject returnEntry) {
+        this.record("return", returnEntry);
+    }
+
+    /**
+     * Records a checkout whose due date was reset
+     *
+     * @param checkout the checkout
+     */
+    public void recordDueDate(ICheckout checkout) {
+        this.record("dueDate", createCheckoutEntry(checkout).put("checkout", checkout.toJSON()));
+    }
+
+    private static JSONObject createCheckoutEntry(ICheckout checkout) {
+        IMember member = checkout.getOwner();
+        return new JSONObject().put("library", member.getLibrary().getID()).put("member", member.getID());
+    }
+
+    /**
+     * Opens a reader over an existing journal file
+     *
+     * @param journalFile the journal file
+     * @return the reader, or null if there is no journal
+     * @throws IOException thrown when the journal cannot be opened
+     */
+    public static Reader openReader(File journalFile) throws IOException {
+        try {
+            return Files.newBufferedReader(journalFile.toPath());
+        } catch (NoSuchFileException ex) {
+            return null;
+        }
+    }
+
+}
@@ -2,23 +2,41 @@ package org.whstsa.library.db;
 
 import org.apache.commons.lang3.EnumUtils;
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONString;
+import org.json.JSONTokener;
 import org.whstsa.library.Tester;
 import org.whstsa.library.api.BookType;
 import org.whstsa.library.api.DateUtils;
+import org.whstsa.library.api.Identifiable;
 import org.whstsa.library.api.IPerson;
+import org.whstsa.library.api.Serializable;
 import org.whstsa.library.api.books.IBook;
+import org.whstsa.library.api.exceptions.CheckedInException;
 import org.whstsa.library.api.exceptions.LoadingException;
 import org.whstsa.library.api.impl.Book;
 import org.whstsa.library.api.impl.Person;
 import org.whstsa.library.api.impl.library.Checkout;
 import org.whstsa.library.api.impl.library.Library;
 import org.whstsa.library.api.impl.library.Member;
+import org.whstsa.library.api.impl.library.MemberHydrator;
 import org.whstsa.library.api.library.ICheckout;
 import org.whstsa.library.api.library.ILibrary;
 import org.whstsa.library.api.library.IMember;
+import org.whstsa.library.util.NameIndex;
+import org.whstsa.library.util.TextIndex;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * Created by eric on 11/18/17.
@@ -26,9 +44,22 @@ import java.util.*;
 public class Loader {
 
     private static final Loader LOADER = new Loader();
-    private Map<UUID, IBook> bookMap = new HashMap<>();
-    private Map<UUID, IPerson> personMap = new HashMap<>();
-    private Map<UUID, ILibrary> libraryMap = new HashMap<>();
+    private static final String JSON_INDENT = "    ";
+    private static final ForkJoinPool LOAD_POOL = ForkJoinPool.commonPool();
+    private Map<UUID, IBook> bookMap = new ConcurrentHashMap<>();
+    private Map<UUID, IPerson> personMap = new ConcurrentHashMap<>();
+    private Map<UUID, ILibrary> libraryMap = new ConcurrentHashMap<>();
+    private Map<UUID, Set<ILibrary>> membershipIndex = new ConcurrentHashMap<>();
+    private Map<UUID, Identity> identityRegistry = new ConcurrentHashMap<>();
+    private final DenseIDMap denseIDs = new DenseIDMap();
+    private final NameIndex<IBook> bookNames = new NameIndex<>(IBook::getID);
+    private final NameIndex<IBook> bookAuthors = new NameIndex<>(IBook::getAuthorName, IBook::getID);
+    private final NameIndex<IPerson> personNames = new NameIndex<>(IPerson::getID);
+    private final NameIndex<ILibrary> libraryNames = new NameIndex<>(ILibrary::getID);
+    private final TextIndex<IBook> bookText = new TextIndex<>(book -> book.getName() + ' ' + book.getAuthorName(), IBook::getID);
+    private final TextIndex<IPerson> personText = new TextIndex<>(IPerson::getName, IPerson::getID);
+    private volatile boolean lazyLoading;
+    private volatile BookCatalog catalog;
 
     private Loader() {
     }
@@ -43,53 +74,520 @@ public class Loader {
     }
 
     /**
-     * Parses a fully serialized JSON object into the data stores
+     * Sets whether libraries are loaded lazily. Lazily loaded libraries only load
+     * their name, catalog and quantities up front, and build their members and
+     * checkouts the first time those are accessed.
      *
-     * @param object the json object to parse
+     * @param lazyLoading whether to load libraries lazily
      */
-    public void load(JSONObject object) {
-        Tester.print("Loading JSON into data stores");
+    public void setLazyLoading(boolean lazyLoading) {
+        this.lazyLoading = lazyLoading;
+    }
 
-        this.validateObject(object, "books");
-        this.validateObject(object, "libraries");
-        this.validateObject(object, "people");
+    /**
+     * Returns whether libraries are loaded lazily
+     *
+     * @return whether libraries are loaded lazily
+     */
+    public boolean isLazyLoading() {
+        return this.lazyLoading;
+    }
 
-        Object rawBooks = object.get("books");
-        Object rawLibraries = object.get("libraries");
-        Object rawPeople = object.get("people");
+    /**
+     * Sets whether loaded books are stored in a columnar {@link BookCatalog}. This
+     * must be called before anything is loaded.
+     *
+     * @param columnarCatalog whether to use the columnar catalog
+     */
+    public void setColumnarCatalog(boolean columnarCatalog) {
+        this.catalog = columnarCatalog ? new BookCatalog() : null;
+    }
 
-        if (!(rawBooks instanceof JSONArray) || !(rawLibraries instanceof JSONArray) || !(rawPeople instanceof JSONArray)) {
-            Tester.print("JSON is malformed. Not loading.");
-            return;
+    /**
+     * Returns the columnar book catalog
+     *
+     * @return the catalog, or null if the columnar catalog is disabled
+     */
+    public BookCatalog getCatalog() {
+        return this.catalog;
+    }
+
+    /**
+     * Creates a book for loading, as a row of the columnar catalog when it is enabled
+     *
+     * @param title      the title of the book
+     * @param authorName the author of the book
+     * @param type       the type of the book
+     * @param uuid       the ID of the book
+     * @return the book
+     */
+    IBook createBook(String title, String authorName, BookType type, UUID uuid) {
+        BookCatalog catalog = this.catalog;
+        return catalog == null ? new Book(title, authorName, type, uuid) : catalog.add(title, authorName, type, uuid);
+    }
+
+    /**
+     * Streams a serialized JSON database into the data stores one record at a time.
+     * <p>
+     * Records are tokenized on the calling thread and handed to the load pool as soon
+     * as they have been parsed, so books and people are built on every core while the
+     * rest of the stream is still being read. Libraries depend on the books and people
+     * they reference, so library records wait until those have all been loaded, and any
+     * that come before those sections are held back until the end of the stream.
+     *
+     * @param reader the reader to stream the JSON from
+     * @throws LoadingException thrown when an error occurs during loading
+     */
+    public void load(Reader reader) throws LoadingException {
+        Tester.print("Streaming JSON into data stores");
+
+        JSONTokener tokener = new JSONTokener(reader);
+        List<ForkJoinTask<?>> recordTasks = new ArrayList<>();
+        List<ForkJoinTask<?>> libraryTasks = new ArrayList<>();
+        List<Object> pendingLibraries = new ArrayList<>();
+        Set<String> loadedSections = new HashSet<>();
+
+        if (tokener.nextClean() != '{') {
+            throw new LoadingException("JSON is malformed. A JSON database must begin with '{'");
+        }
+        char next = tokener.nextClean();
+        while (next != '}') {
+            tokener.back();
+            String key = String.valueOf(tokener.nextValue());
+            if (tokener.nextClean() != ':') {
+                throw new LoadingException("JSON is malformed. Expected ':' after key " + key);
+            }
+            switch (key) {
+                case "books":
+                    Tester.print("Loading books");
+                    this.streamArray(tokener, rawBook -> recordTasks.add(LOAD_POOL.submit(() -> this.loadBook(rawBook))));
+                    break;
+                case "people":
+                    Tester.print("Loading people");
+                    this.streamArray(tokener, rawPerson -> recordTasks.add(LOAD_POOL.submit(() -> this.loadPerson(rawPerson))));
+                    break;
+                case "libraries":
+                    Tester.print("Loading libraries");
+                    boolean dependenciesLoaded = loadedSections.contains("books") && loadedSections.contains("people");
+                    if (dependenciesLoaded) {
+                        awaitAll(recordTasks);
+                    }
+                    this.streamArray(tokener, this::readLibraryRecord, rawLibrary -> {
+                        if (dependenciesLoaded) {
+                            libraryTasks.add(LOAD_POOL.submit(() -> this.loadLibrary(rawLibrary)));
+                        } else {
+                            pendingLibraries.add(rawLibrary);
+                        }
+                    });
+                    break;
+                default:
+                    tokener.nextValue();
+                    break;
+            }
+            loadedSections.add(key);
+            next = tokener.nextClean();
+            if (next == ',') {
+                next = tokener.nextClean();
+            } else if (next != '}') {
+                throw new LoadingException("JSON is malformed. Expected ',' or '}' after " + key);
+            }
+        }
+
+        awaitAll(recordTasks);
+        for (Object rawLibrary : pendingLibraries) {
+            libraryTasks.add(LOAD_POOL.submit(() -> this.loadLibrary(rawLibrary)));
         }
+        awaitAll(libraryTasks);
+    }
 
-        JSONArray booksArray = (JSONArray) rawBooks;
-        JSONArray librariesArray = (JSONArray) rawLibraries;
-        JSONArray peopleArray = (JSONArray) rawPeople;
+    /**
+     * Submits a single task to the load pool
+     *
+     * @param task the task to run
+     * @param <T>  the result type
+     * @return the submitted task
+     */
+    static <T> ForkJoinTask<T> submit(Callable<T> task) {
+        return LOAD_POOL.submit(task);
+    }
 
-        Tester.print("Loading books");
-        try {
-            this.loadBooks(booksArray);
-        } catch (LoadingException ex) {
-            ex.printStackTrace();
+    /**
+     * Waits for every task to finish. If any of them failed, the failure of the
+     * first failed task in the list is rethrown.
+     *
+     * @param tasks the tasks to wait for
+     * @throws LoadingException thrown when a task failed
+     */
+    static void awaitAll(List<? extends ForkJoinTask<?>> tasks) throws LoadingException {
+        LoadingException failure = null;
+        for (ForkJoinTask<?> task : tasks) {
+            try {
+                task.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new LoadingException(ex);
+            } catch (ExecutionException ex) {
+                if (failure == null) {
+                    failure = unwrapLoadingException(ex);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static LoadingException unwrapLoadingException(ExecutionException ex) {
+        for (Throwable cause = ex.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof LoadingException) {
+                return (LoadingException) cause;
+            }
+        }
+        return new LoadingException(ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex);
+    }
+
+    /**
+     * Reads a JSON array from the tokener and hands each element to the consumer as
+     * soon as it has been parsed. Values that are not arrays are skipped, so a missing
+     * or malformed section is treated as empty.
+     *
+     * @param tokener  the tokener positioned before the array
+     * @param consumer the record consumer
+     * @throws LoadingException thrown when the consumer fails to load a record
+     */
+    private void streamArray(JSONTokener tokener, RecordConsumer consumer) throws LoadingException {
+        this.streamArray(tokener, JSONTokener::nextValue, consumer);
+    }
+
+    /**
+     * Reads a JSON array from the tokener, reading each element with the record reader
+     * and handing it to the consumer as soon as it has been read
+     *
+     * @param tokener  the tokener positioned before the array
+     * @param reader   reads one element from the tokener
+     * @param consumer the record consumer
+     * @throws LoadingException thrown when the consumer fails to load a record
+     */
+    private void streamArray(JSONTokener tokener, RecordReader reader, RecordConsumer consumer) throws LoadingException {
+        if (tokener.nextClean() != '[') {
+            tokener.back();
+            tokener.nextValue();
             return;
         }
+        char next = tokener.nextClean();
+        while (next != ']') {
+            tokener.back();
+            consumer.accept(reader.read(tokener));
+            next = tokener.nextClean();
+            if (next == ',') {
+                next = tokener.nextClean();
+            } else if (next != ']') {
+                throw new LoadingException("JSON is malformed. Expected ',' or ']' in array");
+            }
+        }
+    }
+
+    /**
+     * Reads a library record from the tokener. When lazy loading is on, the members of
+     * the library are not parsed: their raw text is kept as it was read from the stream,
+     * and only the IDs needed to register the members are picked out of it.
+     *
+     * @param tokener the tokener positioned before the record
+     * @return the raw library
+     * @throws LoadingException thrown when the record is malformed
+     */
+    private Object readLibraryRecord(JSONTokener tokener) throws LoadingException {
+        if (!this.lazyLoading || tokener.nextClean() != '{') {
+            if (this.lazyLoading) {
+                tokener.back();
+            }
+            return tokener.nextValue();
+        }
+        JSONObject libraryObject = new JSONObject();
+        char next = tokener.nextClean();
+        while (next != '}') {
+            tokener.back();
+            String key = String.valueOf(tokener.nextValue());
+            if (tokener.nextClean() != ':') {
+                throw new LoadingException("JSON is malformed. Expected ':' after key " + key);
+            }
+            Object value = "members".equals(key) ? readRawMembers(tokener) : null;
+            libraryObject.put(key, value != null ? value : tokener.nextValue());
+            next = tokener.nextClean();
+            if (next == ',') {
+                next = tokener.nextClean();
+            } else if (next != '}') {
+                throw new LoadingException("JSON is malformed. Expected ',' or '}' after " + key);
+            }
+        }
+        return libraryObject;
+    }
 
-        Tester.print("Loading people");
+    /**
+     * Copies the text of a members array from the tokener without building it. The
+     * member and person IDs of the members are collected while the text is scanned.
+     *
+     * @param tokener the tokener positioned before the array
+     * @return the raw members, or null if the next value is not an array, in which case
+     * the tokener is left where it was
+     * @throws LoadingException thrown when the array is not terminated
+     */
+    static RawMembers readRawMembers(JSONTokener tokener) throws LoadingException {
+        if (tokener.nextClean() != '[') {
+            tokener.back();
+            return null;
+        }
+        StringBuilder text = new StringBuilder("[");
+        List<String[]> ids = new ArrayList<>();
+        String[] memberIDs = null;
+        StringBuilder string = null;
+        String key = null;
+        boolean inString = false;
+        boolean escaped = false;
+        boolean inValue = false;
+        int depth = 1;
+        while (depth > 0) {
+            char c = tokener.next();
+            if (c == 0) {
+                throw new LoadingException("JSON is malformed. Unterminated members array");
+            }
+            text.append(c);
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                    continue;
+                } else if (c == '"') {
+                    inString = false;
+                    if (string != null) {
+                        // only strings directly inside a member object are keys or IDs
+                        if (!inValue) {
+                            key = string.toString();
+                        } else if ("uuid".equals(key)) {
+                            memberIDs[0] = string.toString();
+                        } else if ("personID".equals(key)) {
+                            memberIDs[1] = string.toString();
+                        }
+                        string = null;
+                    }
+                    continue;
+                }
+                if (string != null) {
+                    string.append(c);
+                }
+                continue;
+            }
+            switch (c) {
+                case '"':
+                    inString = true;
+                    string = depth == 2 ? new StringBuilder() : null;
+                    break;
+                case ':':
+                    inValue = depth == 2;
+                    break;
+                case ',':
+                    if (depth == 2) {
+                        inValue = false;
+                    }
+                    break;
+                case '{':
+                case '[':
+                    depth++;
+                    if (depth == 2) {
+                        memberIDs = new String[2];
+                        inValue = false;
+                    }
+                    break;
+                case '}':
+                case ']':
+                    depth--;
+                    if (depth == 1 && memberIDs != null) {
+                        ids.add(memberIDs);
+                        memberIDs = null;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return new RawMembers(text.toString(), ids);
+    }
+
+    /**
+     * Replays journal entries written by {@link Journal} on top of the loaded snapshot.
+     * <p>
+     * Every entry is applied idempotently, so entries that are already part of the
+     * snapshot leave it unchanged. Replay stops at the first torn entry, which can
+     * only be the last line of a journal that was being written during a crash.
+     *
+     * @param reader the reader over the journal
+     * @return the amount of entries that were replayed
+     * @throws LoadingException thrown when the journal cannot be read
+     */
+    public int replay(Reader reader) throws LoadingException {
+        Tester.print("Replaying journal");
+        BufferedReader lineReader = new BufferedReader(reader);
+        int replayed = 0;
         try {
-            this.loadPeople(peopleArray);
-        } catch (LoadingException ex) {
-            ex.printStackTrace();
+            String line;
+            while ((line = lineReader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                JSONObject entry;
+                try {
+                    entry = new JSONObject(line);
+                } catch (JSONException ex) {
+                    Tester.print("Ignoring torn journal entry");
+                    break;
+                }
+                try {
+                    this.replayEntry(entry);
+                } catch (RuntimeException ex) {
+                    ex.printStackTrace();
+                }
+                replayed++;
+            }
+        } catch (IOException ex) {
+            throw new LoadingException(ex);
+        }
+        return replayed;
+    }
+
+    private void replayEntry(JSONObject entry) throws LoadingException {
+        String operation = entry.getString("op");
+        switch (operation) {
+            case "book": {
+                JSONObject bookObject = entry.getJSONObject("book");
+                IBook book = this.bookMap.get(UUID.fromString(bookObject.getString("uuid")));
+                if (book == null) {
+                    this.loadBook(bookObject);
+                } else {
+                    BookType type = EnumUtils.getEnum(BookType.class, bookObject.getString("bookType"));
+                    book.setTitle(bookObject.getString("title"));
+                    book.setAuthor(bookObject.getString("authorName"));
+                    book.setType(type == null ? BookType.GENERIC : type);
+                }
+                return;
+            }
+            case "person": {
+                JSONObject personObject = entry.getJSONObject("person");
+                IPerson person = this.personMap.get(UUID.fromString(personObject.getString("uuid")));
+                if (person == null) {
+                    this.loadPerson(personObject);
+                } else {
+                    person.setFirstName(personObject.getString("firstName"));
+                    person.setLastName(personObject.getString("lastName"));
+                    person.setTeacher(personObject.getBoolean("teacher"));
+                }
+                return;
+            }
+            case "library": {
+                UUID uuid = UUID.fromString(entry.getString("uuid"));
+                ILibrary library = this.libraryMap.get(uuid);
+                if (library == null) {
+                    this.storeLibrary(new Library(entry.getString("name"), uuid));
+                } else {
+                    library.setName(entry.getString("name"));
+                }
+                return;
+            }
+            case "unloadBook":
+                this.removeBook(UUID.fromString(entry.getString("uuid")));
+                return;
+            case "unloadPerson":
+                this.removePerson(UUID.fromString(entry.getString("uuid")));
+                return;
+            case "unloadLibrary":
+                this.removeLibrary(UUID.fromString(entry.getString("uuid")));
+                return;
+            default:
+                break;
+        }
+
+        ILibrary library = this.libraryMap.get(UUID.fromString(entry.getString("library")));
+        if (library == null) {
             return;
         }
+        switch (operation) {
+            case "addBook": {
+                IBook book = this.bookMap.get(UUID.fromString(entry.getString("book")));
+                if (book != null && !library.hasBook(book)) {
+                    library.addBook(book, 0);
+                }
+                return;
+            }
+            case "removeBook": {
+                IBook book = library.getBookMap().get(UUID.fromString(entry.getString("book")));
+                if (book != null) {
+                    library.removeBook(book);
+                }
+                return;
+            }
+            case "quantity":
+                library.setQuantity(UUID.fromString(entry.getString("book")), entry.getInt("quantity"));
+                return;
+            case "addMember": {
+                UUID memberID = UUID.fromString(entry.getString("member"));
+                IPerson person = this.personMap.get(UUID.fromString(entry.getString("personID")));
+                if (person != null && !library.getMemberMap().containsKey(memberID)) {
+                    Member member = new Member(person, library);
+                    member.impl_setID(memberID);
+                    library.addMember(member);
+                }
+                return;
+            }
+            default:
+                break;
+        }
 
-        Tester.print("Loading libraries");
-        try {
-            this.loadLibraries(librariesArray);
-        } catch (LoadingException ex) {
-            ex.printStackTrace();
+        IMember member = library.getMemberMap().get(UUID.fromString(entry.getString("member")));
+        if (member == null) {
             return;
         }
+        switch (operation) {
+            case "removeMember":
+                ((Library) library).impl_removeMember(member);
+                return;
+            case "checkout": {
+                ICheckout checkout = this.loadCheckout(entry.getJSONObject("checkout"), member);
+                if (this.findCheckout(member, checkout.getID()) == null) {
+                    member.checkout(checkout);
+                }
+                return;
+            }
+            case "return": {
+                ICheckout checkout = this.findCheckout(member, UUID.fromString(entry.getString("checkout")));
+                if (checkout instanceof Checkout && !checkout.isReturned()) {
+                    try {
+                        ((Checkout) checkout).impl_replayReturn();
+                    } catch (CheckedInException ex) {
+                        // Already returned, nothing left to replay
+                    }
+                }
+                return;
+            }
+            case "dueDate": {
+                JSONObject checkoutObject = entry.getJSONObject("checkout");
+                ICheckout checkout = this.findCheckout(member, UUID.fromString(checkoutObject.getString("uuid")));
+                if (checkout != null) {
+                    ((Checkout) checkout).impl_setDueDay(DateUtils.fromDayString(checkoutObject.getString("dueDate")));
+                }
+                return;
+            }
+            default:
+                Tester.print("Skipping unknown journal entry " + operation);
+        }
+    }
+
+    private ICheckout findCheckout(IMember member, UUID checkoutID) {
+        for (ICheckout checkout : member.getCheckouts()) {
+            if (checkout.getID().equals(checkoutID)) {
+                return checkout;
+            }
+        }
+        return null;
     }
 
     /**
@@ -119,13 +617,12 @@ public class Loader {
                 type = BookType.GENERIC;
             }
 
-            Book book = new Book(title, authorName, type);
-            book.impl_setID(uuid);
+            IBook book = this.createBook(title, authorName, type, uuid);
 
             Tester.print("Loaded book object");
             Tester.print(book);
 
-            this.bookMap.put(book.getID(), book);
+            this.storeBook(book);
             return book;
         }
         throw new LoadingException("Raw book was not of JSONObject type");
@@ -140,7 +637,8 @@ public class Loader {
      * @param uuid the book uuid
      */
     public void unloadBook(UUID uuid) {
-        this.bookMap.remove(uuid);
+        this.removeBook(uuid);
+        Journal.getJournal().recordUnloadBook(uuid);
     }
 
     /**
@@ -152,7 +650,8 @@ public class Loader {
      * @param uuid the person uuid
      */
     public void unloadPerson(UUID uuid) {
-        this.personMap.remove(uuid);
+        this.removePerson(uuid);
+        Journal.getJournal().recordUnloadPerson(uuid);
     }
 
     /**
@@ -161,36 +660,8 @@ public class Loader {
      * @param uuid the library uuid
      */
     public void unloadLibrary(UUID uuid) {
-        this.libraryMap.remove(uuid);
-    }
-
-    /**
-     * Loads a series of books into the book store
-     *
-     * @param books the books to load
-     * @return the loaded books
-     * @throws LoadingException thrown when an error occurs during loading
-     */
-    public List<IBook> loadBooks(JSONArray books) throws LoadingException {
-        List<IBook> loadedBooks = new ArrayList<>();
-        final JSONObject stats = new JSONObject();
-        stats.put("halted", false);
-        books.forEach(rawBook -> {
-            if (stats.getBoolean("halted")) {
-                return;
-            }
-            try {
-                IBook book = this.loadBook(rawBook);
-                loadedBooks.add(book);
-            } catch (LoadingException ex) {
-                stats.put("halted", true);
-                stats.put("cause", ex);
-            }
-        });
-        if (stats.getBoolean("halted")) {
-            throw (LoadingException) stats.get("cause");
-        }
-        return loadedBooks;
+        this.removeLibrary(uuid);
+        Journal.getJournal().recordUnloadLibrary(uuid);
     }
 
     /**
@@ -215,47 +686,17 @@ public class Loader {
                 throw new LoadingException(ex);
             }
 
-            Person person = new Person(firstName, lastName, teacher);
-            person.impl_setID(uuid);
+            Person person = new Person(firstName, lastName, teacher, uuid);
 
             Tester.print("Loaded person object");
             Tester.print(person);
 
-            this.personMap.put(person.getID(), person);
+            this.storePerson(person);
             return person;
         }
         throw new LoadingException("Raw person was not of JSONObject type");
     }
 
-    /**
-     * Load a series of people into the people store
-     *
-     * @param people the people to load
-     * @return the loaded people
-     * @throws LoadingException thrown when an error occurs during loading
-     */
-    public List<IPerson> loadPeople(JSONArray people) throws LoadingException {
-        List<IPerson> loadedPeople = new ArrayList<>();
-        final JSONObject stats = new JSONObject();
-        stats.put("halted", false);
-        people.forEach(rawPerson -> {
-            if (stats.getBoolean("halted")) {
-                return;
-            }
-            try {
-                IPerson person = this.loadPerson(rawPerson);
-                loadedPeople.add(person);
-            } catch (LoadingException ex) {
-                stats.put("halted", true);
-                stats.put("cause", ex);
-            }
-        });
-        if (stats.getBoolean("halted")) {
-            throw (LoadingException) stats.get("cause");
-        }
-        return loadedPeople;
-    }
-
     /**
      * Load a raw library object into the library store
      *
@@ -268,7 +709,6 @@ public class Loader {
             JSONObject libraryObject = (JSONObject) rawLibrary;
 
             List<IBook> bookList = new ArrayList<>();
-            List<IMember> memberList = new ArrayList<>();
             String libraryName = libraryObject.getString("name");
             String rawUUID = String.valueOf(libraryObject.get("uuid"));
 
@@ -287,24 +727,36 @@ public class Loader {
                 } catch (IllegalArgumentException ex) {
                 }
             });
-            bookIDList.forEach(bookID -> bookList.add(this.bookMap.get(bookID)));
+            bookIDList.forEach(bookID -> {
+                IBook book = this.bookMap.get(bookID);
+                if (book != null) {
+                    bookList.add(book);
+                }
+            });
 
-            Library library = new Library(libraryName);
+            Library library = new Library(libraryName, uuid);
             library.impl_setBookList(bookList);
-            library.impl_setID(uuid);
-
-            this.libraryMap.put(library.getID(), library);
 
-            libraryObject.getJSONArray("members").forEach(memberObject -> {
-                try {
-                    IMember member = this.loadMember(memberObject, library);
-                    memberList.add(member);
-                } catch (LoadingException ex) {
-                    ex.printStackTrace();
-                }
-            });
+            this.storeLibrary(library);
 
-            library.impl_setMembers(memberList);
+            Object rawMembers = libraryObject.get("members");
+            if (this.lazyLoading && rawMembers instanceof JSONString && !(rawMembers instanceof RawMembers)) {
+                rawMembers = readRawMembers(new JSONTokener(((JSONString) rawMembers).toJSONString()));
+            }
+            if (this.lazyLoading && rawMembers instanceof RawMembers && !((RawMembers) rawMembers).ids.isEmpty()) {
+                ((RawMembers) rawMembers).ids.forEach(ids -> this.registerMembership(ids[0], ids[1], library));
+                library.impl_setHydrator(new JSONMemberHydrator(((RawMembers) rawMembers).text));
+            } else if (this.lazyLoading && rawMembers instanceof JSONArray && ((JSONArray) rawMembers).length() > 0) {
+                JSONArray membersArray = (JSONArray) rawMembers;
+                membersArray.forEach(memberObject -> {
+                    if (memberObject instanceof JSONObject) {
+                        this.registerMembership(String.valueOf(((JSONObject) memberObject).opt("uuid")), String.valueOf(((JSONObject) memberObject).opt("personID")), library);
+                    }
+                });
+                library.impl_setHydrator(new JSONMemberHydrator(membersArray));
+            } else {
+                library.impl_setMembers(this.loadMembers(getMembersArray(libraryObject), library));
+            }
 
             JSONObject quantities = libraryObject.getJSONObject("quantities");
 
@@ -324,32 +776,51 @@ public class Loader {
     }
 
     /**
-     * Load a series of library objects into the library store
+     * Loads every raw member object of a library. Members that fail to load are skipped.
      *
-     * @param libraries the libraries to load
-     * @return the loaded libraries
-     * @throws LoadingException thrown when an error occurs during loading
+     * @param membersArray the raw member objects
+     * @param library      the library they belong to
+     * @return the loaded members
      */
-    public List<ILibrary> loadLibraries(JSONArray libraries) throws LoadingException {
-        List<ILibrary> loadedLibraries = new ArrayList<>();
-        final JSONObject stats = new JSONObject();
-        stats.put("halted", false);
-        libraries.forEach(rawLibrary -> {
-            if (stats.getBoolean("halted")) {
-                return;
-            }
+    private List<IMember> loadMembers(JSONArray membersArray, ILibrary library) {
+        List<IMember> memberList = new ArrayList<>(membersArray.length());
+        membersArray.forEach(memberObject -> {
             try {
-                ILibrary library = this.loadLibrary(rawLibrary);
-                loadedLibraries.add(library);
+                IMember member = this.loadMember(memberObject, library);
+                memberList.add(member);
             } catch (LoadingException ex) {
-                stats.put("halted", true);
-                stats.put("cause", ex);
+                ex.printStackTrace();
             }
         });
-        if (stats.getBoolean("halted")) {
-            throw (LoadingException) stats.get("cause");
+        return memberList;
+    }
+
+    /**
+     * Registers a member of a library that is loaded lazily, so the member and the
+     * membership of its person can be found before the library is hydrated
+     */
+    private void registerMembership(String memberID, String personID, Library library) {
+        try {
+            this.registerMember(UUID.fromString(memberID), library);
+            this.indexMembership(UUID.fromString(personID), library);
+        } catch (IllegalArgumentException | NullPointerException ex) {
+            // The member will fail to load on hydration as well
         }
-        return loadedLibraries;
+    }
+
+    /**
+     * Returns the members of a serialized library. The members of a library that has not
+     * been hydrated yet are serialized as raw JSON text, which is parsed back here.
+     *
+     * @param libraryObject the serialized library
+     * @return the raw member objects
+     */
+    private static JSONArray getMembersArray(JSONObject libraryObject) {
+        Object rawMembers = libraryObject.get("members");
+        if (rawMembers instanceof JSONString) {
+            return new JSONArray(((JSONString) rawMembers).toJSONString());
+        }
+        return libraryObject.getJSONArray("members");
     }
 
     /**
@@ -379,8 +850,7 @@ public class Loader {
 
             IPerson person = this.personMap.get(personUUID);
 
-            Member member = new Member(person, library);
-            member.impl_setID(uuid);
+            Member member = new Member(person, library, uuid);
 
             Map<IBook, List<ICheckout>> bookList = new HashMap<>();
 
@@ -390,6 +860,9 @@ public class Loader {
                 checkoutJSONArray.forEach(rawCheckout -> {
                     try {
                         ICheckout checkout = this.loadCheckout(rawCheckout, member);
+                        if (checkout.isReturned()) {
+                            return;
+                        }
                         if (!bookList.containsKey(checkout.getBook())) {
                             bookList.put(checkout.getBook(), new ArrayList<>());
                         }
@@ -429,11 +902,13 @@ public class Loader {
 
             UUID checkoutUUID;
             UUID bookUUID;
-            Date dueDate;
+            long dueDay;
+            long checkoutDay;
             try {
                 checkoutUUID = UUID.fromString(rawUUID);
                 bookUUID = UUID.fromString(rawBookUUID);
-                dueDate = DateUtils.fromDateString(rawDueDate);
+                dueDay = DateUtils.fromDayString(rawDueDate);
+                checkoutDay = checkoutObject.has("checkoutDate") ? DateUtils.fromDayString(checkoutObject.getString("checkoutDate")) : Checkout.UNKNOWN_DAY;
             } catch (IllegalArgumentException ex) {
                 throw new LoadingException(ex);
             }
@@ -443,9 +918,7 @@ public class Loader {
                 throw new LoadingException("Checkout (" + checkoutUUID + ") refers to a book ID (" + bookUUID + ") that has not been loaded yet.");
             }
 
-            Checkout checkout = new Checkout(member, book);
-            checkout.impl_setDueDate(dueDate);
-            checkout.impl_setID(checkoutUUID);
+            Checkout checkout = new Checkout(member, book, checkoutUUID, dueDay, checkoutDay);
             checkout.impl_setReturned(isReturned);
 
             Tester.print("Loaded checkout object");
@@ -483,13 +956,298 @@ public class Loader {
         return this.libraryMap;
     }
 
+    /**
+     * Records that a person is a member of a library. Libraries call this whenever
+     * a member is added, and lazily loaded libraries call it for every member they
+     * have not built yet.
+     *
+     * @param personID the person ID
+     * @param library  the library the person is a member of
+     */
+    public void indexMembership(UUID personID, ILibrary library) {
+        this.membershipIndex.computeIfAbsent(personID, id -> ConcurrentHashMap.newKeySet()).add(library);
+    }
+
+    /**
+     * Records that a person is no longer a member of a library
+     *
+     * @param personID the person ID
+     * @param library  the library the person is no longer a member of
+     */
+    public void unindexMembership(UUID personID, ILibrary library) {
+        Set<ILibrary> libraries = this.membershipIndex.get(personID);
+        if (libraries != null) {
+            libraries.remove(library);
+        }
+    }
+
+    void storeBook(IBook book) {
+        this.bookMap.put(book.getID(), book);
+        this.register(book.getID(), EntityType.BOOK, book);
+        this.bookNames.add(book);
+        this.bookAuthors.add(book);
+        this.bookText.add(book);
+        BookCatalog catalog = this.catalog;
+        if (catalog != null && !(book instanceof CatalogBook)) {
+            catalog.addLoose(book);
+        }
+    }
+
+    void storePerson(IPerson person) {
+        this.personMap.put(person.getID(), person);
+        this.register(person.getID(), EntityType.PERSON, person);
+        this.personNames.add(person);
+        this.personText.add(person);
+    }
+
+    void storeLibrary(ILibrary library) {
+        this.libraryMap.put(library.getID(), library);
+        this.register(library.getID(), EntityType.LIBRARY, library);
+        this.libraryNames.add(library);
+    }
+
+    private void removeBook(UUID uuid) {
+        IBook book = this.bookMap.remove(uuid);
+        if (book != null) {
+            this.unregister(uuid, book);
+            this.bookNames.remove(book);
+            this.bookAuthors.remove(book);
+            this.bookText.remove(book);
+            BookCatalog catalog = this.catalog;
+            if (catalog != null) {
+                catalog.remove(book);
+            }
+        }
+    }
+
+    private void removePerson(UUID uuid) {
+        IPerson person = this.personMap.remove(uuid);
+        if (person != null) {
+            this.unregister(uuid, person);
+            this.personNames.remove(person);
+            this.personText.remove(person);
+        }
+    }
+
+    private void removeLibrary(UUID uuid) {
+        ILibrary library = this.libraryMap.remove(uuid);
+        if (library != null) {
+            this.unregister(uuid, library);
+            this.libraryNames.remove(library);
+        }
+    }
+
+    /**
+     * Re-indexes a loaded book, person or library after its name, or the author or
+     * type of a book, has changed. Objects that are not loaded are ignored.
+     *
+     * @param object the changed object
+     */
+    public void reindex(Identifiable object) {
+        if (object instanceof IBook) {
+            this.bookNames.update((IBook) object);
+            this.bookAuthors.update((IBook) object);
+            this.bookText.update((IBook) object);
+            this.libraryMap.values().forEach(library -> {
+                if (library instanceof Library) {
+                    ((Library) library).impl_updateBookType((IBook) object);
+                }
+            });
+        } else if (object instanceof IPerson) {
+            this.personNames.update((IPerson) object);
+            this.personText.update((IPerson) object);
+        } else if (object instanceof ILibrary) {
+            this.libraryNames.update((ILibrary) object);
+        }
+    }
+
+    protected NameIndex<IBook> getBookNames() {
+        return this.bookNames;
+    }
+
+    protected NameIndex<IPerson> getPersonNames() {
+        return this.personNames;
+    }
+
+    protected NameIndex<IBook> getBookAuthors() {
+        return this.bookAuthors;
+    }
+
+    protected NameIndex<ILibrary> getLibraryNames() {
+        return this.libraryNames;
+    }
+
+    protected TextIndex<IBook> getBookText() {
+        return this.bookText;
+    }
+
+    protected TextIndex<IPerson> getPersonText() {
+        return this.personText;
+    }
+
+    private void register(UUID uuid, EntityType type, Object entity) {
+        this.identityRegistry.put(uuid, new Identity(type, entity));
+        this.denseIDs.intern(uuid);
+    }
+
+    /**
+     * Returns the dense int ID of a UUID, assigning one if it has none yet. Books,
+     * people, libraries and members are assigned an ID when they are stored; other
+     * objects such as checkouts are assigned one the first time it is requested. IDs
+     * are not released when an object is unloaded.
+     *
+     * @param uuid the UUID
+     * @return the dense ID
+     */
+    public int internID(UUID uuid) {
+        return this.denseIDs.intern(uuid);
+    }
+
+    /**
+     * Returns the dense int ID of a UUID without assigning one
+     *
+     * @param uuid the UUID
+     * @return the dense ID, or -1 if the UUID has not been assigned one
+     */
+    public int getDenseID(UUID uuid) {
+        return this.denseIDs.get(uuid);
+    }
+
+    private void unregister(UUID uuid, Object entity) {
+        this.identityRegistry.computeIfPresent(uuid, (id, identity) -> identity.getEntity() == entity ? null : identity);
+    }
+
+    /**
+     * Registers a member with the library that owns it. Libraries call this
+     * whenever a member is added or built.
+     *
+     * @param member  the member
+     * @param library the library that owns the member
+     */
+    public void registerMember(IMember member, ILibrary library) {
+        this.identityRegistry.put(member.getID(), new Identity(EntityType.MEMBER, member, library));
+        this.denseIDs.intern(member.getID());
+    }
+
+    /**
+     * Registers a member that has not been built yet. Lazily loaded libraries
+     * call this for every member they defer, and the entry is replaced by the
+     * member itself once the library is hydrated.
+     *
+     * @param memberID the member ID
+     * @param library  the library that owns the member
+     */
+    public void registerMember(UUID memberID, ILibrary library) {
+        this.identityRegistry.put(memberID, new Identity(EntityType.MEMBER, null, library));
+        this.denseIDs.intern(memberID);
+    }
+
+    /**
+     * Removes a member from the identity registry if it is still owned by the library
+     *
+     * @param memberID the member ID
+     * @param library  the library that owned the member
+     */
+    public void unregisterMember(UUID memberID, ILibrary library) {
+        this.identityRegistry.computeIfPresent(memberID, (id, identity) -> identity.getOwner() == library ? null : identity);
+    }
+
+    /**
+     * Returns the identity registered under an ID. Members of libraries that
+     * have been unloaded are not returned, and members that have not been built
+     * yet are built by hydrating their library.
+     *
+     * @param uuid the ID
+     * @return the identity, or null if nothing is registered under the ID
+     */
+    protected Identity getIdentity(UUID uuid) {
+        Identity identity = this.getLoadedIdentity(uuid);
+        if (identity != null && identity.getType() == EntityType.MEMBER && identity.getEntity() == null) {
+            identity.getOwner().getMemberMap();
+            identity = this.getLoadedIdentity(uuid);
+            if (identity != null && identity.getEntity() == null) {
+                return null;
+            }
+        }
+        return identity;
+    }
+
+    /**
+     * Returns the type of the entity registered under an ID, without building
+     * deferred members
+     *
+     * @param uuid the ID
+     * @return the entity type, or null if nothing is registered under the ID
+     */
+    protected EntityType getEntityType(UUID uuid) {
+        Identity identity = this.getLoadedIdentity(uuid);
+        return identity == null ? null : identity.getType();
+    }
+
+    private Identity getLoadedIdentity(UUID uuid) {
+        Identity identity = this.identityRegistry.get(uuid);
+        if (identity != null && identity.getOwner() != null && this.libraryMap.get(identity.getOwner().getID()) != identity.getOwner()) {
+            return null;
+        }
+        return identity;
+    }
+
+    /**
+     * Returns the loaded member registered under an ID
+     *
+     * @param memberID the member ID
+     * @return the member, or null if no loaded library owns the member
+     */
+    protected IMember getMember(UUID memberID) {
+        Identity identity = this.getIdentity(memberID);
+        if (identity == null || identity.getType() != EntityType.MEMBER) {
+            return null;
+        }
+        return (IMember) identity.getEntity();
+    }
+
+    /**
+     * Returns the loaded library that owns a member, without building the member
+     *
+     * @param memberID the member ID
+     * @return the library, or null if no loaded library owns the member
+     */
+    protected ILibrary getMemberLibrary(UUID memberID) {
+        Identity identity = this.getLoadedIdentity(memberID);
+        if (identity == null || identity.getType() != EntityType.MEMBER) {
+            return null;
+        }
+        return identity.getOwner();
+    }
+
+    /**
+     * Returns the loaded libraries a person is a member of
+     *
+     * @param personID the person ID
+     * @return the libraries
+     */
+    protected List<ILibrary> getMembershipLibraries(UUID personID) {
+        Set<ILibrary> libraries = this.membershipIndex.get(personID);
+        if (libraries == null || libraries.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<ILibrary> loadedLibraries = new ArrayList<>(libraries.size());
+        for (ILibrary library : libraries) {
+            if (this.libraryMap.get(library.getID()) == library) {
+                loadedLibraries.add(library);
+            }
+        }
+        return loadedLibraries;
+    }
+
     /**
      * Loads a newly constructed book into the book store
      *
      * @param book the book to load
      */
     public void loadBook(IBook book) {
-        this.bookMap.put(book.getID(), book);
+        this.storeBook(book);
+        Journal.getJournal().recordBook(book);
     }
 
     /**
@@ -498,7 +1256,8 @@ public class Loader {
      * @param person the person to load
      */
     public void loadPerson(IPerson person) {
-        this.personMap.put(person.getID(), person);
+        this.storePerson(person);
+        Journal.getJournal().recordPerson(person);
     }
 
     /**
@@ -507,7 +1266,8 @@ public class Loader {
      * @param library the library to load
      */
     public void loadLibrary(ILibrary library) {
-        this.libraryMap.put(library.getID(), library);
+        this.storeLibrary(library);
+        Journal.getJournal().recordLibrary(library);
     }
 
     /**
@@ -516,7 +1276,7 @@ public class Loader {
      * @param books the books to load
      */
     public void loadAllBooks(List<IBook> books) {
-        books.forEach(book -> this.bookMap.put(book.getID(), book));
+        books.forEach(this::loadBook);
     }
 
     /**
@@ -525,7 +1285,7 @@ public class Loader {
      * @param people the people to load
      */
     public void loadAllPeople(List<IPerson> people) {
-        people.forEach(person -> this.personMap.put(person.getID(), person));
+        people.forEach(this::loadPerson);
     }
 
     /**
@@ -534,42 +1294,108 @@ public class Loader {
      * @param libraries the libraries to load
      */
     public void loadAllLibraries(List<ILibrary> libraries) {
-        libraries.forEach(library -> this.libraryMap.put(library.getID(), library));
+        libraries.forEach(this::loadLibrary);
     }
 
     /**
-     * Computes a JSONObject containing serialized objects for all obejects
-     * in the loader stores
+     * Streams every object in the loader stores to the writer as JSON.
+     * <p>
+     * Only one entity is serialized at a time, so memory use stays proportional
+     * to a single entity instead of the whole database. Books and people are written before libraries so the file can
+     * be streamed back in by {@link #load(Reader)} without holding anything back.
      *
-     * @return the computed JSONObject
+     * @param writer the writer to stream to
+     * @throws IOException thrown when the writer fails
      */
-    public JSONObject computeJSON() {
-        JSONObject object = new JSONObject();
+    public void writeJSON(Writer writer) throws IOException {
+        writer.write("{\n");
+        this.writeArray(writer, "books", this.bookMap.values());
+        writer.write(",\n");
+        this.writeArray(writer, "people", this.personMap.values());
+        writer.write(",\n");
+        this.writeArray(writer, "libraries", this.libraryMap.values());
+        writer.write("\n}");
+    }
 
-        JSONArray libraries = new JSONArray();
-        for (ILibrary library : this.libraryMap.values()) {
-            libraries.put(library.toJSON());
+    private void writeArray(Writer writer, String key, Collection<? extends Serializable> values) throws IOException {
+        writer.write(JSON_INDENT);
+        writer.write(JSONObject.quote(key));
+        writer.write(": [");
+        boolean first = true;
+        for (Serializable value : values) {
+            writer.write(first ? "\n" : ",\n");
+            writer.write(JSON_INDENT);
+            writer.write(JSON_INDENT);
+            value.toJSON().write(writer, JSON_INDENT.length(), JSON_INDENT.length() * 2);
+            first = false;
         }
-        object.put("libraries", libraries);
-
-        JSONArray people = new JSONArray();
-        for (IPerson person : this.personMap.values()) {
-            people.put(person.toJSON());
+        if (!first) {
+            writer.write('\n');
+            writer.write(JSON_INDENT);
         }
-        object.put("people", people);
+        writer.write(']');
+    }
 
-        JSONArray books = new JSONArray();
-        for (IBook book : this.bookMap.values()) {
-            books.put(book.toJSON());
+    private interface RecordConsumer {
+        void accept(Object rawRecord) throws LoadingException;
+    }
+
+    private interface RecordReader {
+        Object read(JSONTokener tokener) throws LoadingException;
+    }
+
+    /**
+     * The unparsed members array of a streamed library record, along with the member
+     * and person ID of every member in it
+     */
+    static class RawMembers implements JSONString {
+
+        final String text;
+        final List<String[]> ids;
+
+        private RawMembers(String text, List<String[]> ids) {
+            this.text = text;
+            this.ids = ids;
         }
-        object.put("books", books);
 
-        return object;
+        @Override
+        public String toJSONString() {
+            return this.text;
+        }
     }
 
-    private void validateObject(JSONObject object, String key) {
-        if (!object.has(key) || !(object.get(key) instanceof JSONArray)) {
-            object.put(key, new JSONArray());
+    /**
+     * Holds the members of a lazily loaded library, either as the raw JSON text they
+     * were streamed from or as the array they were already parsed into. Until the library
+     * is hydrated they are written back out as-is when the library is saved, and they
+     * are only parsed on hydration if they were never parsed before.
+     */
+    private static class JSONMemberHydrator implements MemberHydrator, JSONString {
+
+        private final Object rawMembers;
+
+        private JSONMemberHydrator(String rawMembers) {
+            this.rawMembers = rawMembers;
+        }
+
+        private JSONMemberHydrator(JSONArray rawMembers) {
+            this.rawMembers = rawMembers;
+        }
+
+        @Override
+        public List<IMember> hydrate(Library library) throws LoadingException {
+            JSONArray members;
+            try {
+                members = this.rawMembers instanceof JSONArray ? (JSONArray) this.rawMembers : new JSONArray((String) this.rawMembers);
+            } catch (JSONException ex) {
+                throw new LoadingException(ex);
+            }
+            return Loader.getLoader().loadMembers(members, library);
+        }
+
+        @Override
+        public String toJSONString() {
+            return this.rawMembers.toString();
         }
     }
 
@@ -1,10 +1,13 @@
 package org.whstsa.library.db;
 
+import org.whstsa.library.api.BookType;
 import org.whstsa.library.api.IPerson;
+import org.whstsa.library.api.Identifiable;
 import org.whstsa.library.api.Serializable;
 import org.whstsa.library.api.books.IBook;
 import org.whstsa.library.api.library.ILibrary;
 import org.whstsa.library.api.library.IMember;
+import org.whstsa.library.util.NameIndex;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -18,21 +21,89 @@ public class ObjectDelegate {
     }
 
     public static IBook getBook(UUID uuid) {
-        return getBookMap().get(uuid);
+        return uuid == null ? null : getBookMap().get(uuid);
     }
 
     public static IPerson getPerson(UUID uuid) {
-        return getPersonMap().get(uuid);
+        return uuid == null ? null : getPersonMap().get(uuid);
     }
 
     public static ILibrary getLibrary(UUID uuid) {
-        return getLibraryMap().get(uuid);
+        return uuid == null ? null : getLibraryMap().get(uuid);
     }
 
     public static Map<UUID, IBook> getBookMap() {
         return getLoader().getBookMap();
     }
 
+    public static int[] countBookTypes() {
+        BookCatalog catalog = getLoader().getCatalog();
+        if (catalog != null) {
+            return catalog.countTypes();
+        }
+        int[] counts = new int[BookType.values().length];
+        getLoader().getBookMap().values().forEach(book -> counts[book.getType().ordinal()]++);
+        return counts;
+    }
+
+    public static List<IBook> getBooksByAuthor(String authorName) {
+        BookCatalog catalog = getLoader().getCatalog();
+        if (catalog != null) {
+            return catalog.findByAuthor(authorName);
+        }
+        return getLoader().getBookMap().values().stream().filter(book -> authorName.equals(book.getAuthorName())).collect(Collectors.toList());
+    }
+
+    public static List<IBook> getBooksByType(BookType type) {
+        BookCatalog catalog = getLoader().getCatalog();
+        if (catalog != null) {
+            return catalog.findByType(type);
+        }
+        return getLoader().getBookMap().values().stream().filter(book -> book.getType() == type).collect(Collectors.toList());
+    }
+
+    public static List<IBook> findBooksByTitle(String title) {
+        return getLoader().getBookNames().find(title);
+    }
+
+    public static IBook findBookByTitle(String title) {
+        return getLoader().getBookNames().findFirst(title);
+    }
+
+    public static List<IPerson> findPeopleByName(String name) {
+        return getLoader().getPersonNames().find(name);
+    }
+
+    public static IPerson findPersonByName(String name) {
+        return getLoader().getPersonNames().findFirst(name);
+    }
+
+    public static ILibrary findLibraryByName(String name) {
+        return getLoader().getLibraryNames().findFirst(name);
+    }
+
+    public static List<IBook> searchBooks(String query) {
+        return getLoader().getBookText().search(query);
+    }
+
+    public static List<IPerson> searchPeople(String query) {
+        return getLoader().getPersonText().search(query);
+    }
+
+    public static List<IBook> findSimilarBooks(String query, int limit) {
+        Map<IBook, Double> similarities = getLoader().getBookNames().getSimilarities(query, NameIndex.DEFAULT_SIMILARITY);
+        getLoader().getBookAuthors().getSimilarities(query, NameIndex.DEFAULT_SIMILARITY).forEach((book, similarity) -> similarities.merge(book, similarity, Math::max));
+        return getLoader().getBookNames().rankSimilar(similarities, limit);
+    }
+
+    public static List<IPerson> findSimilarPeople(String query, int limit) {
+        return getLoader().getPersonNames().findSimilar(query, NameIndex.DEFAULT_SIMILARITY, limit);
+    }
+
+    public static void reindex(Identifiable object) {
+        getLoader().reindex(object);
+    }
+
     public static List<IBook> getBooks() {
         return new ArrayList<>(getBookMap().values());
     }
@@ -65,42 +136,50 @@ public class ObjectDelegate {
         return new ArrayList<>(getLibraryMap().keySet());
     }
 
+    public static IMember getMember(UUID uuid) {
+        return uuid == null ? null : getLoader().getMember(uuid);
+    }
+
+    public static ILibrary getMemberLibrary(UUID memberID) {
+        return memberID == null ? null : getLoader().getMemberLibrary(memberID);
+    }
+
     public static List<IMember> getAllMembers() {
         List<IMember> members = new ArrayList<>();
         getLibraries().stream().map(library -> library.getMembers()).forEach(members::addAll);
         return members;
     }
 
-    public static Map<UUID, Serializable> getCombinedMap() {
-        Map<UUID, IBook> bookMap = getBookMap();
-        Map<UUID, IPerson> personMap = getPersonMap();
-        Map<UUID, ILibrary> libraryMap = getLibraryMap();
-        Map<UUID, IMember> memberMap = new HashMap<>();
-        libraryMap.forEach((id, library) -> memberMap.putAll(library.getMemberMap()));
-
-        Map<UUID, Serializable> serializableMap = new HashMap<>();
-        serializableMap.putAll(bookMap);
-        serializableMap.putAll(personMap);
-        serializableMap.putAll(libraryMap);
-        serializableMap.putAll(memberMap);
+    public static EntityType getEntityType(UUID uuid) {
+        return uuid == null ? null : getLoader().getEntityType(uuid);
+    }
 
-        return serializableMap;
+    public static Serializable getSerializable(UUID uuid) {
+        Identity identity = uuid == null ? null : getLoader().getIdentity(uuid);
+        return identity == null ? null : (Serializable) identity.getEntity();
     }
 
-    public static List<Serializable> getCombined() {
-        return new ArrayList<>(getCombinedMap().values());
+    private static Loader getLoader() {
+        return Loader.getLoader();
     }
 
-    public static List<UUID> getCombinedIDs() {
-        return new ArrayList<>(getCombinedMap().keySet());
+    public static List<IMember> getMemberships(IPerson person) {
+        List<IMember> memberships = new ArrayList<>();
+        for (ILibrary library : getLoader().getMembershipLibraries(person.getID())) {
+            IMember member = library.getMember(person);
+            if (member != null) {
+                memberships.add(member);
+            }
+        }
+        return memberships;
     }
 
-    private static Loader getLoader() {
-        return Loader.getLoader();
+    public static List<ILibrary> getMembershipLibraries(IPerson person) {
+        return getLoader().getMembershipLibraries(person.getID());
     }
 
     public static List<IPerson> getActivePeople() {
-        return getPeople().stream().filter(person -> person.getMemberships().size() > 0).collect(Collectors.toList());
+        return getPeople().stream().filter(person -> !getLoader().getMembershipLibraries(person.getID()).isEmpty()).collect(Collectors.toList());
     }
 
 
@@ -28,6 +28,8 @@ public class Config {
             this.setProperty("tooltips", "true");
             this.setProperty("autosave", "true");
             this.setProperty("autosaveInterval", "10");
+            this.setProperty("lazyLoading", "false");
+            this.setProperty("columnarCatalog", "false");
             LibraryDB.LOGGER.debug("Couldn't load config.");
             ex.printStackTrace();
         }
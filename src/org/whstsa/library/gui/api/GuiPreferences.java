@@ -43,6 +43,8 @@ public class GuiPreferences implements Gui {
         prefs.add(new PreferenceFieldElement("Use tooltips:", FieldProperty.BOOLEAN, "tooltips", config));
         prefs.add(new PreferenceFieldElement("Use autosave:", FieldProperty.BOOLEAN, "autosave", config));
         prefs.add(new PreferenceFieldElement("Autosave interval (minutes):", FieldProperty.INT, "autosaveInterval", config, 1, 60 * 5));
+        prefs.add(new PreferenceFieldElement("Load library members on demand:", FieldProperty.BOOLEAN, "lazyLoading", config));
+        prefs.add(new PreferenceFieldElement("Store the book catalog in columns:", FieldProperty.BOOLEAN, "columnarCatalog", config));
 
         VBox settingsPane = GuiUtils.createVBox(title, assemblePreferenceFields());
         settingsPane.setSpacing(10);
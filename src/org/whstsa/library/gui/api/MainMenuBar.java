@@ -11,7 +11,7 @@ import org.whstsa.library.api.ObservableReference;
 import org.whstsa.library.api.books.IBook;
 import org.whstsa.library.api.library.ILibrary;
 import org.whstsa.library.api.library.IMember;
-import org.whstsa.library.db.Loader;
+import org.whstsa.library.db.Journal;
 import org.whstsa.library.db.ObjectDelegate;
 import org.whstsa.library.gui.Config;
 import org.whstsa.library.gui.components.MenuBarElement;
@@ -153,7 +153,7 @@ public class MainMenuBar {
 
     private void save(GuiStatusBar statusBar) {
         try {
-            LibraryDB.getFileDelegate().save(Loader.getLoader().computeJSON());
+            Journal.getJournal().save(LibraryDB.getFileDelegate());
             if (statusBar != null) {
                 statusBar.setSaved(true);
             }
@@ -13,12 +13,23 @@ import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import org.whstsa.library.gui.factories.GuiUtils;
 
+import java.util.List;
+import java.util.function.Function;
+
 public class SearchBarElement<T> extends ToolBar implements Element {
 
     private LabelElement labelElement;
     private String id;
 
     public SearchBarElement(String id, String label, ObservableList<String> items, BorderPane mainContainer, Table<T> table) {
+        this(id, label, items, mainContainer, table, null);
+    }
+
+    /**
+     * @param searcher returns the items matching a query, best match first, or null to
+     *                 filter the table by the text of its cells instead
+     */
+    public SearchBarElement(String id, String label, ObservableList<String> items, BorderPane mainContainer, Table<T> table, Function<String, List<T>> searcher) {
         super();
         this.id = id;
         this.labelElement = GuiUtils.createLabel(label, 12);
@@ -33,6 +44,16 @@ public class SearchBarElement<T> extends ToolBar implements Element {
         ObservableList<T> originalData = table.getTable().getItems();
 
         searchField.textProperty().addListener((ObservableValue<? extends String> observable, String oldValue, String newValue) -> {
+            if (searcher != null) {
+                if (newValue.trim().isEmpty()) {
+                    table.getTable().setItems(originalData);
+                    filteredLabel.setText("");
+                } else {
+                    table.getTable().setItems(FXCollections.observableArrayList(searcher.apply(newValue)));
+                    filteredLabel.setText("Results have been filtered.");
+                }
+                return;
+            }
             if (oldValue != null && (newValue.length() < oldValue.length())) {
                 table.getTable().setItems(originalData);
             }
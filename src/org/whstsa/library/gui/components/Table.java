@@ -80,7 +80,7 @@ public class Table<T> {
         if (this.observableReference == null) {
             return FXCollections.observableArrayList();
         }
-        return FXCollections.observableList(observableReference.poll());
+        return FXCollections.observableArrayList(observableReference.poll());
     }
 
     private void pollItems() {
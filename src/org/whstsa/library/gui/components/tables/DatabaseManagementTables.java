@@ -8,12 +8,14 @@ import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
 import org.whstsa.library.LibraryDB;
+import org.whstsa.library.World;
 import org.whstsa.library.api.BackgroundWorker;
+import org.whstsa.library.api.DateUtils;
 import org.whstsa.library.api.IPerson;
 import org.whstsa.library.api.ObservableReference;
 import org.whstsa.library.api.books.IBook;
-import org.whstsa.library.api.library.ICheckout;
 import org.whstsa.library.api.library.ILibrary;
+import org.whstsa.library.api.library.ILibrarySnapshot;
 import org.whstsa.library.api.library.IMember;
 import org.whstsa.library.db.Loader;
 import org.whstsa.library.db.ObjectDelegate;
@@ -28,10 +30,9 @@ import org.whstsa.library.gui.factories.LibraryManagerUtils;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class DatabaseManagementTables {
 
@@ -421,9 +422,15 @@ public class DatabaseManagementTables {
         mainTable.addColumn("First Name", (cellData) -> new ReadOnlyStringWrapper(cellData.getValue().getPerson().getFirstName()), true, TableColumn.SortType.DESCENDING, 100);
         mainTable.addColumn("Last Name", (cellData) -> new ReadOnlyStringWrapper(cellData.getValue().getPerson().getLastName()), true, TableColumn.SortType.DESCENDING, 100);
         mainTable.addColumn("Role", (cellData) -> new ReadOnlyStringWrapper(cellData.getValue().getPerson().isTeacher() ? "Teacher" : "Student"), true, TableColumn.SortType.DESCENDING, 50);
-        mainTable.addColumn("Fines", (cellData) -> new ReadOnlyStringWrapper("$" + cellData.getValue().getFine() + "0"), true, TableColumn.SortType.DESCENDING, 25);
-        mainTable.addColumn("Books", (cellData) -> new ReadOnlyStringWrapper(cellData.getValue().getCheckouts().size() + ""), true, TableColumn.SortType.DESCENDING, 25);
-        ObservableReference<List<IMember>> observableReference = () -> libraryReference.poll().getMembers();
+        // every refresh reads one snapshot of the library, so the cells agree with the rows
+        AtomicReference<ILibrarySnapshot> snapshotReference = new AtomicReference<>(libraryReference.poll().snapshot());
+        mainTable.addColumn("Fines", (cellData) -> new ReadOnlyStringWrapper("$" + snapshotReference.get().getFine(cellData.getValue()) + "0"), true, TableColumn.SortType.DESCENDING, 25);
+        mainTable.addColumn("Books", (cellData) -> new ReadOnlyStringWrapper(snapshotReference.get().getCheckouts(cellData.getValue()).size() + ""), true, TableColumn.SortType.DESCENDING, 25);
+        ObservableReference<List<IMember>> observableReference = () -> {
+            ILibrarySnapshot snapshot = libraryReference.poll().snapshot();
+            snapshotReference.set(snapshot);
+            return snapshot.getMembers();
+        };
         mainTable.setReference(observableReference);
         mainTable.getTable().setOnMouseClicked(event -> {
             if (event.getClickCount() == 2 && mainTable.getSelected() != null) {
@@ -437,30 +444,24 @@ public class DatabaseManagementTables {
         mainTable.addColumn("Title", (cellData) -> new ReadOnlyStringWrapper(cellData.getValue().getName()), true, TableColumn.SortType.DESCENDING, 200);
         mainTable.addColumn("Author", (cellData) -> new ReadOnlyStringWrapper(cellData.getValue().getAuthorName()), true, TableColumn.SortType.DESCENDING, 100);
         mainTable.addColumn("Genre", (cellData) -> new ReadOnlyStringWrapper(cellData.getValue().getType().getGenre()), true, TableColumn.SortType.DESCENDING, 50);
-        mainTable.addColumn("Copies", (cellData) -> new ReadOnlyStringWrapper(libraryReference.poll().getQuantity(cellData.getValue().getID()) + ""), true, TableColumn.SortType.DESCENDING, 25);
+        // every refresh reads one snapshot of the library, so the cells agree with the rows
+        AtomicReference<ILibrarySnapshot> snapshotReference = new AtomicReference<>(libraryReference.poll().snapshot());
+        mainTable.addColumn("Copies", (cellData) -> new ReadOnlyStringWrapper(snapshotReference.get().getQuantity(cellData.getValue().getID()) + ""), true, TableColumn.SortType.DESCENDING, 25);
         mainTable.addColumn("Checked out", (cellData) -> {
-            ILibrary library = libraryReference.poll();
-            List<ICheckout> checkouts = library.getCheckouts().get(cellData.getValue());
-            boolean isCheckedOut = checkouts != null && checkouts.size() == library.getQuantity(cellData.getValue().getID());
+            ILibrarySnapshot snapshot = snapshotReference.get();
+            int checkedOut = snapshot.getCheckedOutCount(cellData.getValue().getID());
+            boolean isCheckedOut = checkedOut > 0 && checkedOut == snapshot.getQuantity(cellData.getValue().getID());
             return new ReadOnlyStringWrapper(isCheckedOut ? "True" : "False");
         }, true, TableColumn.SortType.DESCENDING, 30);
         mainTable.addColumn("Due Date", (cellData) -> {
-            ILibrary library = libraryReference.poll();
-            List<ICheckout> checkouts = library.getCheckouts().get(cellData.getValue());
-            boolean hasBeenCheckedOut = checkouts != null;
-            if (hasBeenCheckedOut) {
+            ILibrarySnapshot snapshot = snapshotReference.get();
+            // the nearest due date of the checked out copies
+            long nearestDueDay = snapshot.getNextDueDay(cellData.getValue().getID());
+            if (nearestDueDay >= 0) {
                 DateFormat formattedDate = new SimpleDateFormat("MM/dd/yyyy");
-                // Sorts the checkouts by date to get the nearest due date
-                List<ICheckout> sortedCheckouts = checkouts.stream()
-                        .sorted(Comparator.comparing(ICheckout::getDueDate))
-                        .collect(Collectors.toList());
-                // Display N/A if there are no checkouts
-                if (sortedCheckouts.size() == 0 || sortedCheckouts.get(0) == null) {
-                    return new ReadOnlyStringWrapper("N/A");
-                }
-                ICheckout checkout = sortedCheckouts.get(0);
-                Date nearestDate = checkout.getDueDate();
-                return new ReadOnlyStringWrapper((formattedDate.format(nearestDate) + (checkouts.size() > 1 ? "..." : "") + (checkout.isOverdue() ? "o" : "")));
+                Date nearestDate = DateUtils.toDate(nearestDueDay);
+                int checkedOut = snapshot.getCheckedOutCount(cellData.getValue().getID());
+                return new ReadOnlyStringWrapper((formattedDate.format(nearestDate) + (checkedOut > 1 ? "..." : "") + (nearestDueDay < World.getEpochDay() ? "o" : "")));
                 //Return date and add "..." if more than one book is checked out
                 //the "o" addition indicates to the cellFactory that the book is overdue, and that the date should be displayed in red. The "o" is removed by cell factory
             }
@@ -486,7 +487,11 @@ public class DatabaseManagementTables {
             }
         });
 
-        ObservableReference<List<IBook>> observableReference = () -> libraryReference.poll().getBooks();
+        ObservableReference<List<IBook>> observableReference = () -> {
+            ILibrarySnapshot snapshot = libraryReference.poll().snapshot();
+            snapshotReference.set(snapshot);
+            return snapshot.getBooks();
+        };
         mainTable.setReference(observableReference);
         mainTable.getTable().setOnMouseClicked(event -> {
             if (event.getClickCount() == 2 && mainTable.getSelected() != null) {
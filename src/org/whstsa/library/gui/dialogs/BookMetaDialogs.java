@@ -26,7 +26,6 @@ import org.whstsa.library.util.BookStatus;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -61,9 +60,10 @@ public class BookMetaDialogs {
             book.setTitle(title);
             book.setAuthor(author);
             book.setType(type);
-            if (libraryReference.poll().getCheckouts().get(book) != null && quantity < libraryReference.poll().getCheckouts().get(book).size()) {
-                DialogUtils.createDialog("Couldn't Edit Book.", String.format("You cannot change the copies to %s while there are still %s books checked out.", quantity, libraryReference.poll().getCheckouts().get(book).size()), null, Alert.AlertType.ERROR).show();
-                quantity = libraryReference.poll().getCheckouts().get(book).size();
+            int checkedOut = libraryReference.poll().getCheckedOutCount(book.getID());
+            if (quantity < checkedOut) {
+                DialogUtils.createDialog("Couldn't Edit Book.", String.format("You cannot change the copies to %s while there are still %s books checked out.", quantity, checkedOut), null, Alert.AlertType.ERROR).show();
+                quantity = checkedOut;
             }
             libraryReference.poll().setQuantity(book.getID(), quantity);
             callback.callback(book);
@@ -103,7 +103,7 @@ public class BookMetaDialogs {
     }
 
     public static void listCopies(IBook book, ObservableReference<ILibrary> libraryReference) {
-        int availableCopies = libraryReference.poll().getCheckouts().get(book) != null ? libraryReference.poll().getQuantity(book.getID()) - libraryReference.poll().getCheckouts().get(book).size() : libraryReference.poll().getQuantity(book.getID());
+        int availableCopies = libraryReference.poll().getQuantity(book.getID()) - libraryReference.poll().getCheckedOutCount(book.getID());
         Dialog<Map<String, Element>> dialog = new DialogBuilder()
                 .setTitle("Copies")
                 .addLabel(availableCopies > 1 ? "There are " + (availableCopies > 0 ? availableCopies : 0) + " available copies of \"" + book.getName() + ".\"" :
@@ -128,10 +128,7 @@ public class BookMetaDialogs {
         mainTable.addColumn("Status", (cellData) -> new ReadOnlyStringWrapper(cellData.getValue().getStatus().getString()), true, TableColumn.SortType.DESCENDING, 55);
 
         List<BookStatusRow> tableItems = FXCollections.observableArrayList();
-        List<ICheckout> library = libraryReference.poll().getCheckouts().get(book);
-        if (library == null) {
-            library = new ArrayList<>();
-        }
+        List<ICheckout> library = libraryReference.poll().getActiveCheckouts(book);
         for (int counter = 1; counter <= library.size(); counter++) {
             if (library.get(counter - 1).isOverdue()) {
                 tableItems.add(new BookStatusRow(counter, BookStatus.OVERDUE, library.get(counter - 1).getOwner().getName(), library.get(counter - 1).getDueDate()));
@@ -139,7 +136,7 @@ public class BookMetaDialogs {
                 tableItems.add(new BookStatusRow(counter, BookStatus.CHECKED_OUT, library.get(counter - 1).getOwner().getName(), library.get(counter - 1).getDueDate()));//This is where the data for the table is created
             }
         }
-        for (int counter = library.size() + 1; counter <= libraryReference.poll().getBookQuantity().get(book.getID()); counter++) {
+        for (int counter = library.size() + 1; counter <= libraryReference.poll().getQuantity(book.getID()); counter++) {
             tableItems.add(new BookStatusRow(counter, BookStatus.AVAILABLE, "Nobody", null));
         }
         ObservableReference<List<BookStatusRow>> observableReference = () -> tableItems;
@@ -141,9 +141,8 @@ public class CheckoutMetaDialogs {
                     // TODO: Outstanding fines
                     return;
                 }
-                member.getCheckouts().stream()
+                member.getCheckouts(true).stream()
                         .filter(ICheckout::isOverdue)
-                        .filter(checkout -> !checkout.isReturned())
                         .forEach(ICheckout::payFine);
             }
 
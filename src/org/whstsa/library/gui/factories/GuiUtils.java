@@ -131,11 +131,11 @@ public class GuiUtils {
     }
 
     public static void createBookSearchBar(String id, String label, ObservableList<String> items, BorderPane container, ObservableReference<ILibrary> libraryReference, Table<IBook> table) {
-        ((VBox) container.getTop()).getChildren().set(2, new SearchBarElement<>(id, label, items, container, table));
+        ((VBox) container.getTop()).getChildren().set(2, new SearchBarElement<>(id, label, items, container, table, query -> LibraryManagerUtils.searchBooks(query, libraryReference.poll())));
     }
 
     public static void createMemberSearchBar(String id, String label, ObservableList<String> items, BorderPane container, ObservableReference<ILibrary> libraryReference, Table<IMember> table) {
-        ((VBox) container.getTop()).getChildren().set(2, new SearchBarElement<>(id, label, items, container, table));
+        ((VBox) container.getTop()).getChildren().set(2, new SearchBarElement<>(id, label, items, container, table, query -> LibraryManagerUtils.searchMembers(query, libraryReference.poll())));
     }
 
     public static Separator createSeparator() {
@@ -13,13 +13,14 @@ import org.whstsa.library.api.books.IBookContainerReadonly;
 import org.whstsa.library.api.library.ILibrary;
 import org.whstsa.library.api.library.IMember;
 import org.whstsa.library.db.ObjectDelegate;
-import org.whstsa.library.util.ListUtils;
 
 import java.util.*;
 import java.util.stream.Collectors;
 
 public class LibraryManagerUtils {
 
+    private static final int SIMILAR_LIMIT = 50;
+
     public static HBox createTitleBar(String title, String id) {
         HBox box = new HBox();
         box.getChildren().add(GuiUtils.createLabel(title, 20));
@@ -64,7 +65,7 @@ public class LibraryManagerUtils {
     }
 
     public static IPerson getPersonFromName(String name) {
-        return ListUtils.findIdentifiable(ObjectDelegate.getPeople(), name);
+        return ObjectDelegate.findPersonByName(name);
     }
 
     public static List<IPerson> getPeopleWithoutLibrary(ILibrary library) {
@@ -81,7 +82,42 @@ public class LibraryManagerUtils {
     }
 
     public static IBook getBookFromTitle(String title, ILibrary library) {
-        return ListUtils.findIdentifiable(library.getBooks(), title);
+        for (IBook book : ObjectDelegate.findBooksByTitle(title)) {
+            if (library.hasBook(book)) {
+                return book;
+            }
+        }
+        return null;
+    }
+
+    public static List<IBook> searchBooks(String query, ILibrary library) {
+        List<IBook> books = ObjectDelegate.searchBooks(query).stream().filter(library::hasBook).collect(Collectors.toList());
+        if (books.isEmpty()) {
+            books = ObjectDelegate.findSimilarBooks(query, Integer.MAX_VALUE).stream().filter(library::hasBook).limit(SIMILAR_LIMIT).collect(Collectors.toList());
+        }
+        return books;
+    }
+
+    public static List<IMember> searchMembers(String query, ILibrary library) {
+        List<IMember> members = getMembers(ObjectDelegate.searchPeople(query), library, Integer.MAX_VALUE);
+        if (members.isEmpty()) {
+            members = getMembers(ObjectDelegate.findSimilarPeople(query, Integer.MAX_VALUE), library, SIMILAR_LIMIT);
+        }
+        return members;
+    }
+
+    private static List<IMember> getMembers(List<IPerson> people, ILibrary library, int limit) {
+        List<IMember> members = new ArrayList<>();
+        for (IPerson person : people) {
+            if (members.size() == limit) {
+                break;
+            }
+            IMember member = library.getMember(person);
+            if (member != null) {
+                members.add(member);
+            }
+        }
+        return members;
     }
 
     public static ObservableList<String> getBookTitles(IBookContainerReadonly bookContainer) {
@@ -89,7 +125,7 @@ public class LibraryManagerUtils {
     }
 
     public static ILibrary getLibraryFromName(String name) {
-        return ObjectDelegate.getLibraries().stream().filter(library -> library.getName().equals(name)).collect(Collectors.toList()).get(0);
+        return ObjectDelegate.findLibraryByName(name);
     }
 
     public static ObservableList<String> toObservableList(Collection<String> list) {
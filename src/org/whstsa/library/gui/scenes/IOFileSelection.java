@@ -2,6 +2,7 @@ package org.whstsa.library.gui.scenes;
 
 import javafx.stage.FileChooser;
 import org.whstsa.library.LibraryDB;
+import org.whstsa.library.db.IOFileDelegate;
 
 import javax.swing.plaf.FileChooserUI;
 import java.io.File;
@@ -17,8 +18,9 @@ public class IOFileSelection {
         this.libraryDB = libraryDB;
         filter = new FileChooser.ExtensionFilter("JSON file", "*.json");
         dialog.getExtensionFilters().add(filter);
+        dialog.getExtensionFilters().add(new FileChooser.ExtensionFilter("Binary snapshot", "*" + IOFileDelegate.BINARY_EXTENSION));
         dialog.setSelectedExtensionFilter(filter);
-        this.dialog.setTitle("Open a JSON data file");
+        this.dialog.setTitle("Open a data file");
         File configFile = new File(libraryDB.getConfig().getProperty("initialDirectory") == null ? System.getProperty("user.home") : libraryDB.getConfig().getProperty("initialDirectory"));
         if (configFile.exists()) {
             this.dialog.setInitialDirectory(configFile);
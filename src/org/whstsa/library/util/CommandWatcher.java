@@ -84,6 +84,8 @@ public class CommandWatcher implements InputListener {
         commands.add(new GetLibraryCommand());
         commands.add(new NewLibraryCommand());
         commands.add(new ListLibrariesCommand());
+        commands.add(new GetFinesCommand());
+        commands.add(new GetGenresCommand());
         commands.add(new AddToLibraryCommand());
         commands.add(new AddBookToLibraryCommand());
 
@@ -93,9 +95,14 @@ public class CommandWatcher implements InputListener {
         commands.add(new GetPersonCommand());
         commands.add(new NewPersonCommand());
         commands.add(new ListPeopleCommand());
+        commands.add(new FindPeopleCommand());
 
         commands.add(new GetBookCommand());
         commands.add(new ListBooksCommand());
+        commands.add(new FindBooksCommand());
+        commands.add(new ListBooksByAuthorCommand());
+        commands.add(new ListBooksByGenreCommand());
+        commands.add(new GetHistoryCommand());
         commands.add(new NewBookCommand());
 
         commands.add(new GetCommand());
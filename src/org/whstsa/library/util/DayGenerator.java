@@ -1,5 +1,6 @@
 package org.whstsa.library.util;
 
+import org.whstsa.library.World;
 import org.whstsa.library.api.BookType;
 import org.whstsa.library.api.IPerson;
 import org.whstsa.library.api.books.IBook;
@@ -14,6 +15,7 @@ import org.whstsa.library.gui.factories.LibraryManagerUtils;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Random;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -21,6 +23,7 @@ import java.util.stream.Collectors;
 public class DayGenerator {
 
     private static final Random RANDOM = new Random();
+    private static final int REMINDERS_PER_LIBRARY = 10;
 
 
     /* List of things needed to randomize
@@ -36,7 +39,7 @@ public class DayGenerator {
 
     public static List<String> simulateDay() {
         actions = new ArrayList<>();
-        ObjectDelegate.getAllMembers().stream().filter(member -> deregisterPendingPeople.contains(member.getID())).collect(Collectors.toList()).forEach(member -> {
+        deregisterPendingPeople.stream().map(ObjectDelegate::getMember).filter(Objects::nonNull).collect(Collectors.toList()).forEach(member -> {
             try {
                 member.getLibrary().removeMember(member);
                 actions.add(String.format("%s has finally been deregistered ", member.getName()));
@@ -60,7 +63,7 @@ public class DayGenerator {
             }
         });
         ObjectDelegate.getLibraries().forEach(library -> {
-            library.getBooks().stream().filter(book -> library.getCheckouts().get(book) == null).collect(Collectors.toList()).forEach(book -> {
+            library.getBooks().stream().filter(book -> library.getCheckedOutCount(book.getID()) == 0).collect(Collectors.toList()).forEach(book -> {
                 if (chance(50)) {
                     try {
                         library.removeBook(book);
@@ -100,7 +103,7 @@ public class DayGenerator {
                     if (book != null) {
                         try {
                             library.reserveBook(member, book, RANDOM.nextInt(10));
-                            actions.add(member.getName() + " took " + book.getName() + " (" + (library.getQuantity(book.getID()) - (library.getCheckouts() != null ? library.getCheckouts().get(book).size() : 0)) + " books remaining )");
+                            actions.add(member.getName() + " took " + book.getName() + " (" + (library.getQuantity(book.getID()) - library.getCheckedOutCount(book.getID())) + " books remaining )");
                         } catch (OutOfStockException | MaximumCheckoutsException e) {
                             actions.add(e.getMessage());
                         }
@@ -110,7 +113,7 @@ public class DayGenerator {
                 }
             }
         });
-        ObjectDelegate.getAllMembers().stream().filter(member -> chance(5) && member.getFine() != 0.0).collect(Collectors.toList()).forEach(member -> {
+        ObjectDelegate.getLibraries().stream().flatMap(library -> library.getOverdueCheckouts().stream()).map(ICheckout::getOwner).distinct().filter(member -> chance(5)).collect(Collectors.toList()).forEach(member -> {
             List<ICheckout> checkoutList = member.getCheckouts();
             for (ICheckout checkout : checkoutList) {
                 double fine = checkout.getFine();
@@ -120,6 +123,10 @@ public class DayGenerator {
                 }
             }
         });
+        long today = World.getEpochDay();
+        ObjectDelegate.getLibraries().forEach(library -> library.getUpcomingCheckouts(REMINDERS_PER_LIBRARY).stream().filter(checkout -> checkout.getDueDay() == today).forEach(checkout -> {
+            actions.add(String.format("Reminded %s that %s is due back at %s today", checkout.getOwner().getName(), checkout.getBook().getName(), library.getName()));
+        }));
         return actions;
     }
 
@@ -5,33 +5,31 @@ import org.whstsa.library.api.Identifiable;
 import java.util.*;
 
 public class ListUtils {
+
+    /**
+     * Returns the item whose name best matches a name, ranked like a {@link NameIndex}.
+     * Ties go to the item that comes first in the list. Prefer an index lookup through
+     * {@link org.whstsa.library.db.ObjectDelegate} for loaded books, people and libraries.
+     *
+     * @param identifiableList the items
+     * @param name             the name to look up
+     * @param <T>              the type of the items
+     * @return the best match, or null if nothing matches
+     */
     public static <T extends Identifiable> T findIdentifiable(List<T> identifiableList, String name) {
-        Map<Integer, T> scores = new HashMap<>();
-        identifiableList.forEach(item -> {
-            int score = 0;
+        T bestItem = null;
+        int bestScore = NameIndex.NO_MATCH;
+        int bestLength = Integer.MAX_VALUE;
+        for (T item : identifiableList) {
             String comparingName = item.getName();
-            if (name.equals(comparingName)) {
-                score += 10;
-            } else if (name.equalsIgnoreCase(comparingName)) {
-                score += 8;
-            }
-
-            if (name.contains(comparingName)) {
-                score += 3;
-            } else if (name.toLowerCase().contains(comparingName.toLowerCase())) {
-                score += 2;
+            int score = NameIndex.score(comparingName, name);
+            if (score > bestScore || (score == bestScore && score != NameIndex.NO_MATCH && comparingName.length() < bestLength)) {
+                bestItem = item;
+                bestScore = score;
+                bestLength = comparingName.length();
             }
-
-            if (score > 0) {
-                scores.put(score, item);
-            }
-        });
-        Optional<Map.Entry<Integer, T>> itemEntry = scores.entrySet().stream().sorted(Comparator.comparingInt(Map.Entry::getKey)).findFirst();
-        if (itemEntry.isPresent()) {
-            return itemEntry.get().getValue();
         }
-
-        return null;
+        return bestItem;
     }
 
 }
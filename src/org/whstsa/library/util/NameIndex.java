@@ -0,0 +1,430 @@
+package org.whstsa.library.util;
+
+import org.whstsa.library.api.Identifiable;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * A maintained index over the names of a set of items.
+ * <p>
+ * Every name is normalized into a key by lowercasing it and collapsing its whitespace.
+ * Keys are indexed directly, so exact and case-insensitive matches are a single lookup,
+ * and by the trigrams of the padded key, so items whose name contains a query are found
+ * by scanning the shortest posting list of the query trigrams instead of every item.
+ * <p>
+ * Results are ranked by {@link #EXACT}, {@link #CASE_INSENSITIVE} and {@link #SUBSTRING}
+ * tiers. Within a tier shorter names come first, and remaining ties are broken by name
+ * and then by ID so the order never depends on the order items were added in.
+ * <p>
+ * The same posting lists answer typo-tolerant lookups: {@link #findSimilar} counts the
+ * trigrams every name shares with the query and ranks names by the Jaccard similarity
+ * of the two trigram sets, so only names sharing at least one trigram are visited.
+ *
+ * @param <T> the type of the indexed items
+ */
+public class NameIndex<T extends Identifiable> {
+
+    public static final int EXACT = 3;
+    public static final int CASE_INSENSITIVE = 2;
+    public static final int SUBSTRING = 1;
+    public static final int NO_MATCH = 0;
+    public static final double DEFAULT_SIMILARITY = 0.3;
+
+    private static final int MIN_COMPACT_SLOTS = 1024;
+
+    private final Function<? super T, String> nameFunction;
+    private final Function<? super T, UUID> idFunction;
+    private final Map<T, Entry<T>> entries = new IdentityHashMap<>();
+    private final Map<String, List<Entry<T>>> keys = new HashMap<>();
+    private Map<String, IntList> trigrams = new HashMap<>();
+    private Entry<T>[] slots = newSlots(64);
+    private int slotCount;
+    private int[] hits = new int[0];
+
+    /**
+     * @param idFunction returns the ID of an item, used to order items with equal names
+     */
+    public NameIndex(Function<? super T, UUID> idFunction) {
+        this(Identifiable::getName, idFunction);
+    }
+
+    /**
+     * @param nameFunction returns the name to index an item under
+     * @param idFunction   returns the ID of an item, used to order items with equal names
+     */
+    public NameIndex(Function<? super T, String> nameFunction, Function<? super T, UUID> idFunction) {
+        this.nameFunction = nameFunction;
+        this.idFunction = idFunction;
+    }
+
+    /**
+     * Adds an item under its current name, or re-indexes it if it is already indexed
+     *
+     * @param item the item
+     */
+    public synchronized void add(T item) {
+        this.remove(item);
+        String name = this.nameFunction.apply(item);
+        if (name == null) {
+            return;
+        }
+        Entry<T> entry = new Entry<>(item, name, normalize(name), this.idFunction.apply(item), this.slotCount);
+        if (this.slotCount == this.slots.length) {
+            this.slots = Arrays.copyOf(this.slots, this.slotCount * 2);
+        }
+        this.slots[this.slotCount++] = entry;
+        this.entries.put(item, entry);
+        this.keys.computeIfAbsent(entry.key, key -> new ArrayList<>(1)).add(entry);
+        this.post(entry);
+    }
+
+    /**
+     * Re-indexes an item after its name has changed. Items that are not indexed are
+     * left alone.
+     *
+     * @param item the item
+     */
+    public synchronized void update(T item) {
+        Entry<T> entry = this.entries.get(item);
+        if (entry != null && !entry.name.equals(this.nameFunction.apply(item))) {
+            this.add(item);
+        }
+    }
+
+    /**
+     * Removes an item from the index
+     *
+     * @param item the item
+     */
+    public synchronized void remove(T item) {
+        Entry<T> entry = this.entries.remove(item);
+        if (entry == null) {
+            return;
+        }
+        List<Entry<T>> keyEntries = this.keys.get(entry.key);
+        keyEntries.remove(entry);
+        if (keyEntries.isEmpty()) {
+            this.keys.remove(entry.key);
+        }
+        this.slots[entry.slot] = null;
+        if (this.slotCount > MIN_COMPACT_SLOTS && this.slotCount > this.entries.size() * 2) {
+            this.compact();
+        }
+    }
+
+    /**
+     * Returns the indexed items matching a name, best match first
+     *
+     * @param name the name to look up
+     * @return the matching items
+     */
+    public synchronized List<T> find(String name) {
+        List<Match<T>> matches = this.match(name);
+        matches.sort(null);
+        List<T> items = new ArrayList<>(matches.size());
+        matches.forEach(match -> items.add(match.entry.item));
+        return items;
+    }
+
+    /**
+     * Returns the best indexed match for a name
+     *
+     * @param name the name to look up
+     * @return the best match, or null if nothing matches
+     */
+    public synchronized T findFirst(String name) {
+        List<Match<T>> matches = this.match(name);
+        return matches.isEmpty() ? null : Collections.min(matches).entry.item;
+    }
+
+    /**
+     * Returns the indexed items whose names are similar to a name, most similar first
+     *
+     * @param name          the name to look up
+     * @param minSimilarity the lowest trigram similarity to return, between 0 and 1
+     * @param limit         the most items to return
+     * @return the similar items
+     */
+    public synchronized List<T> findSimilar(String name, double minSimilarity, int limit) {
+        return this.rankSimilar(this.getSimilarities(name, minSimilarity), limit);
+    }
+
+    /**
+     * Returns the trigram similarity of every indexed item whose name is similar to a name
+     *
+     * @param name          the name to look up
+     * @param minSimilarity the lowest trigram similarity to return, between 0 and 1
+     * @return the similarity of every similar item
+     */
+    public synchronized Map<T, Double> getSimilarities(String name, double minSimilarity) {
+        Map<T, Double> similarities = new IdentityHashMap<>();
+        String query = name == null ? "" : normalize(name);
+        if (query.isEmpty()) {
+            return similarities;
+        }
+        Set<String> queryTrigrams = trigrams(query);
+        if (this.hits.length < this.slots.length) {
+            this.hits = new int[this.slots.length];
+        }
+        IntList touched = new IntList();
+        for (String trigram : queryTrigrams) {
+            IntList postings = this.trigrams.get(trigram);
+            if (postings != null) {
+                for (int i = 0; i < postings.size; i++) {
+                    int slot = postings.values[i];
+                    if (this.hits[slot]++ == 0) {
+                        touched.add(slot);
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < touched.size; i++) {
+            int slot = touched.values[i];
+            int shared = this.hits[slot];
+            this.hits[slot] = 0;
+            Entry<T> entry = this.slots[slot];
+            if (entry != null) {
+                double similarity = shared / (double) (queryTrigrams.size() + entry.trigramCount - shared);
+                if (similarity >= minSimilarity) {
+                    similarities.put(entry.item, similarity);
+                }
+            }
+        }
+        return similarities;
+    }
+
+    /**
+     * Ranks items by similarity, most similar first. Ties are broken by the indexed
+     * name and then by ID.
+     *
+     * @param similarities the similarity of every item
+     * @param limit        the most items to return
+     * @return the ranked items
+     */
+    public List<T> rankSimilar(Map<T, Double> similarities, int limit) {
+        List<Map.Entry<T, Double>> ranked = new ArrayList<>(similarities.entrySet());
+        ranked.sort(Comparator.<Map.Entry<T, Double>>comparingDouble(Map.Entry::getValue).reversed()
+                .thenComparing(entry -> String.valueOf(this.nameFunction.apply(entry.getKey())))
+                .thenComparing(entry -> this.idFunction.apply(entry.getKey())));
+        List<T> items = new ArrayList<>(Math.min(limit, ranked.size()));
+        for (int i = 0; i < ranked.size() && i < limit; i++) {
+            items.add(ranked.get(i).getKey());
+        }
+        return items;
+    }
+
+    /**
+     * Returns the amount of indexed items
+     *
+     * @return the item count
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Returns how well a name matches a query
+     *
+     * @param name  the name
+     * @param query the query
+     * @return {@link #EXACT}, {@link #CASE_INSENSITIVE}, {@link #SUBSTRING} or {@link #NO_MATCH}
+     */
+    public static int score(String name, String query) {
+        if (name == null || query == null) {
+            return NO_MATCH;
+        }
+        if (name.equals(query)) {
+            return EXACT;
+        }
+        String key = normalize(name);
+        String normalizedQuery = normalize(query);
+        if (normalizedQuery.isEmpty()) {
+            return NO_MATCH;
+        }
+        if (key.equals(normalizedQuery)) {
+            return CASE_INSENSITIVE;
+        }
+        return key.contains(normalizedQuery) ? SUBSTRING : NO_MATCH;
+    }
+
+    /**
+     * Normalizes a name into an index key by lowercasing it, trimming it and collapsing
+     * runs of whitespace into single spaces
+     *
+     * @param name the name
+     * @return the key
+     */
+    public static String normalize(String name) {
+        StringBuilder key = new StringBuilder(name.length());
+        boolean space = false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = key.length() > 0;
+            } else {
+                if (space) {
+                    key.append(' ');
+                    space = false;
+                }
+                key.append(Character.toLowerCase(c));
+            }
+        }
+        return key.toString();
+    }
+
+    private List<Match<T>> match(String name) {
+        if (name == null) {
+            return Collections.emptyList();
+        }
+        String query = normalize(name);
+        if (query.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Match<T>> matches = new ArrayList<>();
+        List<Entry<T>> keyEntries = this.keys.get(query);
+        if (keyEntries != null) {
+            keyEntries.forEach(entry -> matches.add(new Match<>(entry, entry.name.equals(name) ? EXACT : CASE_INSENSITIVE)));
+        }
+        IntList candidates = this.candidates(query);
+        if (candidates == null) {
+            for (int slot = 0; slot < this.slotCount; slot++) {
+                this.matchSubstring(this.slots[slot], query, matches);
+            }
+        } else {
+            for (int i = 0; i < candidates.size; i++) {
+                this.matchSubstring(this.slots[candidates.values[i]], query, matches);
+            }
+        }
+        return matches;
+    }
+
+    private void matchSubstring(Entry<T> entry, String query, List<Match<T>> matches) {
+        if (entry != null && entry.key.length() > query.length() && entry.key.contains(query)) {
+            matches.add(new Match<>(entry, SUBSTRING));
+        }
+    }
+
+    /**
+     * Returns the shortest posting list of the trigrams of a query, or null if the
+     * query is too short to have trigrams and every item has to be checked
+     */
+    private IntList candidates(String query) {
+        if (query.length() < 3) {
+            return null;
+        }
+        IntList shortest = null;
+        for (int i = 0; i + 3 <= query.length(); i++) {
+            IntList postings = this.trigrams.get(query.substring(i, i + 3));
+            if (postings == null) {
+                return new IntList();
+            }
+            if (shortest == null || postings.size < shortest.size) {
+                shortest = postings;
+            }
+        }
+        return shortest;
+    }
+
+    private void post(Entry<T> entry) {
+        Set<String> keyTrigrams = trigrams(entry.key);
+        for (String trigram : keyTrigrams) {
+            this.trigrams.computeIfAbsent(trigram, key -> new IntList()).add(entry.slot);
+        }
+        entry.trigramCount = keyTrigrams.size();
+    }
+
+    /**
+     * Returns the distinct trigrams of a key padded with a space on both sides, so the
+     * first and last letters of a name count as much as the ones in between
+     */
+    private static Set<String> trigrams(String key) {
+        String padded = ' ' + key + ' ';
+        Set<String> trigrams = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+    /**
+     * Drops the slots of removed items and rebuilds the posting lists
+     */
+    private void compact() {
+        Entry<T>[] live = newSlots(Math.max(64, this.entries.size() * 2));
+        int count = 0;
+        for (int slot = 0; slot < this.slotCount; slot++) {
+            Entry<T> entry = this.slots[slot];
+            if (entry != null) {
+                entry.slot = count;
+                live[count++] = entry;
+            }
+        }
+        this.slots = live;
+        this.slotCount = count;
+        this.trigrams = new HashMap<>();
+        for (int slot = 0; slot < count; slot++) {
+            this.post(live[slot]);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Identifiable> Entry<T>[] newSlots(int capacity) {
+        return (Entry<T>[]) new Entry<?>[capacity];
+    }
+
+    private static class Entry<T> {
+
+        private final T item;
+        private final String name;
+        private final String key;
+        private final UUID id;
+        private int slot;
+        private int trigramCount;
+
+        private Entry(T item, String name, String key, UUID id, int slot) {
+            this.item = item;
+            this.name = name;
+            this.key = key;
+            this.id = id;
+            this.slot = slot;
+        }
+    }
+
+    private static class Match<T> implements Comparable<Match<T>> {
+
+        private final Entry<T> entry;
+        private final int tier;
+
+        private Match(Entry<T> entry, int tier) {
+            this.entry = entry;
+            this.tier = tier;
+        }
+
+        @Override
+        public int compareTo(Match<T> other) {
+            if (this.tier != other.tier) {
+                return Integer.compare(other.tier, this.tier);
+            }
+            if (this.entry.key.length() != other.entry.key.length()) {
+                return Integer.compare(this.entry.key.length(), other.entry.key.length());
+            }
+            int byName = this.entry.name.compareTo(other.entry.name);
+            return byName != 0 ? byName : this.entry.id.compareTo(other.entry.id);
+        }
+    }
+
+    private static class IntList {
+
+        private int[] values = new int[2];
+        private int size;
+
+        private void add(int value) {
+            if (this.size == this.values.length) {
+                this.values = Arrays.copyOf(this.values, this.size * 2);
+            }
+            this.values[this.size++] = value;
+        }
+    }
+
+}
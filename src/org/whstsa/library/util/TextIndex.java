@@ -0,0 +1,185 @@
+package org.whstsa.library.util;
+
+import org.whstsa.library.api.Identifiable;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * A maintained inverted index over the words of a set of items.
+ * <p>
+ * The searchable text of every item is split into lowercase tokens at every character
+ * that is not a letter or a digit, and every token maps to the items containing it. The
+ * tokens are kept sorted, so a query token matches every indexed token it is a prefix
+ * of by walking a single range of the index.
+ * <p>
+ * An item matches a query when every query token matches one of its tokens. Matches
+ * are ranked by how many query tokens matched a whole token rather than only a prefix,
+ * and ties are broken by name and then by ID.
+ *
+ * @param <T> the type of the indexed items
+ */
+public class TextIndex<T extends Identifiable> {
+
+    private final Function<? super T, String> textFunction;
+    private final Function<? super T, UUID> idFunction;
+    private final Map<T, String[]> itemTokens = new IdentityHashMap<>();
+    private final NavigableMap<String, Set<T>> postings = new TreeMap<>();
+
+    /**
+     * @param textFunction returns the searchable text of an item
+     * @param idFunction   returns the ID of an item, used to order equally ranked items
+     */
+    public TextIndex(Function<? super T, String> textFunction, Function<? super T, UUID> idFunction) {
+        this.textFunction = textFunction;
+        this.idFunction = idFunction;
+    }
+
+    /**
+     * Adds an item under its current text, or re-indexes it if it is already indexed
+     *
+     * @param item the item
+     */
+    public synchronized void add(T item) {
+        this.remove(item);
+        String[] tokens = tokenize(this.textFunction.apply(item));
+        this.itemTokens.put(item, tokens);
+        for (String token : tokens) {
+            this.postings.computeIfAbsent(token, key -> Collections.newSetFromMap(new IdentityHashMap<>())).add(item);
+        }
+    }
+
+    /**
+     * Re-indexes an item after its text has changed. Items that are not indexed are
+     * left alone.
+     *
+     * @param item the item
+     */
+    public synchronized void update(T item) {
+        String[] tokens = this.itemTokens.get(item);
+        if (tokens != null && !Arrays.equals(tokens, tokenize(this.textFunction.apply(item)))) {
+            this.add(item);
+        }
+    }
+
+    /**
+     * Removes an item from the index
+     *
+     * @param item the item
+     */
+    public synchronized void remove(T item) {
+        String[] tokens = this.itemTokens.remove(item);
+        if (tokens == null) {
+            return;
+        }
+        for (String token : tokens) {
+            Set<T> items = this.postings.get(token);
+            items.remove(item);
+            if (items.isEmpty()) {
+                this.postings.remove(token);
+            }
+        }
+    }
+
+    /**
+     * Returns the indexed items matching a query, best match first. Every word of
+     * the query has to be a word, or the start of a word, of a matching item.
+     *
+     * @param query the query
+     * @return the matching items, or an empty list if the query has no words
+     */
+    public synchronized List<T> search(String query) {
+        String[] queryTokens = tokenize(query);
+        if (queryTokens.length == 0) {
+            return new ArrayList<>();
+        }
+        // longer prefixes match fewer items, so they narrow the candidates soonest
+        Arrays.sort(queryTokens, Comparator.comparingInt(String::length).reversed());
+        Map<T, Integer> scores = null;
+        for (String queryToken : queryTokens) {
+            Map<T, Integer> tokenScores = new IdentityHashMap<>();
+            for (Map.Entry<String, Set<T>> posting : this.postings.subMap(queryToken, true, queryToken + Character.MAX_VALUE, false).entrySet()) {
+                int score = posting.getKey().length() == queryToken.length() ? 2 : 1;
+                for (T item : posting.getValue()) {
+                    if (scores == null || scores.containsKey(item)) {
+                        tokenScores.merge(item, score, Math::max);
+                    }
+                }
+            }
+            if (scores != null) {
+                for (Map.Entry<T, Integer> tokenScore : tokenScores.entrySet()) {
+                    tokenScore.setValue(tokenScore.getValue() + scores.get(tokenScore.getKey()));
+                }
+            }
+            scores = tokenScores;
+            if (scores.isEmpty()) {
+                break;
+            }
+        }
+        List<Ranked<T>> ranked = new ArrayList<>(scores.size());
+        scores.forEach((item, score) -> ranked.add(new Ranked<>(item, score, item.getName(), this.idFunction.apply(item))));
+        ranked.sort(null);
+        List<T> results = new ArrayList<>(ranked.size());
+        ranked.forEach(match -> results.add(match.item));
+        return results;
+    }
+
+    /**
+     * Returns the amount of indexed items
+     *
+     * @return the item count
+     */
+    public synchronized int size() {
+        return this.itemTokens.size();
+    }
+
+    /**
+     * Splits text into lowercase tokens at every character that is not a letter or a
+     * digit. Repeated tokens are only returned once.
+     *
+     * @param text the text
+     * @return the tokens, in order of first appearance
+     */
+    public static String[] tokenize(String text) {
+        if (text == null) {
+            return new String[0];
+        }
+        Set<String> tokens = new LinkedHashSet<>();
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                token.append(Character.toLowerCase(c));
+            } else if (token.length() > 0) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        return tokens.toArray(new String[0]);
+    }
+
+    private static class Ranked<T> implements Comparable<Ranked<T>> {
+
+        private final T item;
+        private final int score;
+        private final String name;
+        private final UUID id;
+
+        private Ranked(T item, int score, String name, UUID id) {
+            this.item = item;
+            this.score = score;
+            this.name = name == null ? "" : name;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Ranked<T> other) {
+            if (this.score != other.score) {
+                return Integer.compare(other.score, this.score);
+            }
+            int byName = this.name.compareTo(other.name);
+            return byName != 0 ? byName : this.id.compareTo(other.id);
+        }
+    }
+
+}
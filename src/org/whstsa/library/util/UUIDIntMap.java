@@ -0,0 +1,331 @@
+package org.whstsa.library.util;
+
+import java.util.*;
+
+/**
+ * A map from UUIDs to ints that stores both halves of every key and every value in
+ * primitive arrays. Keys are located with linear probing and removed with backward
+ * shifting, so the table never holds tombstones.
+ * <p>
+ * The {@link Map} methods box like any other map and are there for callers that
+ * expect one. Hot paths should use the primitive methods, which never allocate.
+ * Entries cannot be removed through the iterators of the collection views.
+ */
+public class UUIDIntMap extends AbstractMap<UUID, Integer> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] mostSignificantBits;
+    private long[] leastSignificantBits;
+    private int[] values;
+    private boolean[] used;
+    private int size;
+    private int threshold;
+    private Set<Entry<UUID, Integer>> entrySet;
+
+    public UUIDIntMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public UUIDIntMap(int expectedSize) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        this.allocate(capacity);
+    }
+
+    /**
+     * Returns the value of a key without boxing it
+     *
+     * @param key          the key
+     * @param defaultValue the value to return if the key is absent
+     * @return the value, or the default value
+     */
+    public int getInt(UUID key, int defaultValue) {
+        return this.getInt(key.getMostSignificantBits(), key.getLeastSignificantBits(), defaultValue);
+    }
+
+    /**
+     * Returns the value of a key given as its two halves without boxing it
+     *
+     * @param mostSignificantBits  the most significant bits of the key
+     * @param leastSignificantBits the least significant bits of the key
+     * @param defaultValue         the value to return if the key is absent
+     * @return the value, or the default value
+     */
+    public int getInt(long mostSignificantBits, long leastSignificantBits, int defaultValue) {
+        int slot = this.find(mostSignificantBits, leastSignificantBits);
+        return slot < 0 ? defaultValue : this.values[slot];
+    }
+
+    /**
+     * Sets the value of a key without boxing it
+     *
+     * @param key   the key
+     * @param value the value
+     */
+    public void putInt(UUID key, int value) {
+        this.putInt(key.getMostSignificantBits(), key.getLeastSignificantBits(), value);
+    }
+
+    /**
+     * Sets the value of a key given as its two halves without boxing it
+     *
+     * @param mostSignificantBits  the most significant bits of the key
+     * @param leastSignificantBits the least significant bits of the key
+     * @param value                the value
+     */
+    public void putInt(long mostSignificantBits, long leastSignificantBits, int value) {
+        int slot = this.slotFor(mostSignificantBits, leastSignificantBits);
+        if (!this.used[slot]) {
+            if (this.size >= this.threshold) {
+                this.resize();
+                slot = this.slotFor(mostSignificantBits, leastSignificantBits);
+            }
+            this.used[slot] = true;
+            this.mostSignificantBits[slot] = mostSignificantBits;
+            this.leastSignificantBits[slot] = leastSignificantBits;
+            this.size++;
+        }
+        this.values[slot] = value;
+    }
+
+    /**
+     * Adds to the value of a key, treating an absent key as zero
+     *
+     * @param key   the key
+     * @param delta the amount to add
+     * @return the new value
+     */
+    public int addInt(UUID key, int delta) {
+        int value = this.getInt(key, 0) + delta;
+        this.putInt(key, value);
+        return value;
+    }
+
+    /**
+     * Returns whether a key given as its two halves is present
+     *
+     * @param mostSignificantBits  the most significant bits of the key
+     * @param leastSignificantBits the least significant bits of the key
+     * @return whether the key is present
+     */
+    public boolean containsKey(long mostSignificantBits, long leastSignificantBits) {
+        return this.find(mostSignificantBits, leastSignificantBits) >= 0;
+    }
+
+    /**
+     * Removes a key
+     *
+     * @param key the key
+     * @return whether the key was present
+     */
+    public boolean removeKey(UUID key) {
+        int slot = this.find(key.getMostSignificantBits(), key.getLeastSignificantBits());
+        if (slot < 0) {
+            return false;
+        }
+        this.removeSlot(slot);
+        return true;
+    }
+
+    /**
+     * Calls the consumer for every entry without boxing the values
+     *
+     * @param consumer the consumer
+     */
+    public void forEachInt(EntryConsumer consumer) {
+        for (int slot = 0; slot < this.used.length; slot++) {
+            if (this.used[slot]) {
+                consumer.accept(new UUID(this.mostSignificantBits[slot], this.leastSignificantBits[slot]), this.values[slot]);
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (!(key instanceof UUID)) {
+            return false;
+        }
+        UUID uuid = (UUID) key;
+        return this.containsKey(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    @Override
+    public Integer get(Object key) {
+        if (!(key instanceof UUID)) {
+            return null;
+        }
+        UUID uuid = (UUID) key;
+        int slot = this.find(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        return slot < 0 ? null : this.values[slot];
+    }
+
+    @Override
+    public Integer put(UUID key, Integer value) {
+        Integer previous = this.get(key);
+        this.putInt(key, value);
+        return previous;
+    }
+
+    @Override
+    public Integer remove(Object key) {
+        if (!(key instanceof UUID)) {
+            return null;
+        }
+        UUID uuid = (UUID) key;
+        int slot = this.find(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        if (slot < 0) {
+            return null;
+        }
+        int previous = this.values[slot];
+        this.removeSlot(slot);
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(this.used, false);
+        this.size = 0;
+    }
+
+    @Override
+    public Set<Entry<UUID, Integer>> entrySet() {
+        if (this.entrySet == null) {
+            this.entrySet = new AbstractSet<Entry<UUID, Integer>>() {
+                @Override
+                public Iterator<Entry<UUID, Integer>> iterator() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size() {
+                    return UUIDIntMap.this.size;
+                }
+            };
+        }
+        return this.entrySet;
+    }
+
+    private void allocate(int capacity) {
+        this.mostSignificantBits = new long[capacity];
+        this.leastSignificantBits = new long[capacity];
+        this.values = new int[capacity];
+        this.used = new boolean[capacity];
+        this.threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void resize() {
+        long[] oldMostSignificantBits = this.mostSignificantBits;
+        long[] oldLeastSignificantBits = this.leastSignificantBits;
+        int[] oldValues = this.values;
+        boolean[] oldUsed = this.used;
+        this.allocate(oldUsed.length << 1);
+        for (int slot = 0; slot < oldUsed.length; slot++) {
+            if (oldUsed[slot]) {
+                int newSlot = this.slotFor(oldMostSignificantBits[slot], oldLeastSignificantBits[slot]);
+                this.used[newSlot] = true;
+                this.mostSignificantBits[newSlot] = oldMostSignificantBits[slot];
+                this.leastSignificantBits[newSlot] = oldLeastSignificantBits[slot];
+                this.values[newSlot] = oldValues[slot];
+            }
+        }
+    }
+
+    private int find(long mostSignificantBits, long leastSignificantBits) {
+        int slot = this.slotFor(mostSignificantBits, leastSignificantBits);
+        return this.used[slot] ? slot : -1;
+    }
+
+    /**
+     * Returns the slot that holds the key, or the empty slot the key would be inserted into
+     */
+    private int slotFor(long mostSignificantBits, long leastSignificantBits) {
+        int mask = this.used.length - 1;
+        int slot = hash(mostSignificantBits, leastSignificantBits) & mask;
+        while (this.used[slot] && (this.mostSignificantBits[slot] != mostSignificantBits || this.leastSignificantBits[slot] != leastSignificantBits)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void removeSlot(int slot) {
+        int mask = this.used.length - 1;
+        int gap = slot;
+        int next = (slot + 1) & mask;
+        while (this.used[next]) {
+            int home = hash(this.mostSignificantBits[next], this.leastSignificantBits[next]) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                this.mostSignificantBits[gap] = this.mostSignificantBits[next];
+                this.leastSignificantBits[gap] = this.leastSignificantBits[next];
+                this.values[gap] = this.values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        this.used[gap] = false;
+        this.size--;
+    }
+
+    private static int hash(long mostSignificantBits, long leastSignificantBits) {
+        long hash = mostSignificantBits ^ leastSignificantBits;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return (int) hash;
+    }
+
+    /**
+     * Receives the entries of a {@link UUIDIntMap} without boxing
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+
+        void accept(UUID key, int value);
+
+    }
+
+    private class EntryIterator implements Iterator<Entry<UUID, Integer>> {
+
+        private int slot = -1;
+        private int next = this.advance(0);
+
+        private int advance(int from) {
+            while (from < UUIDIntMap.this.used.length && !UUIDIntMap.this.used[from]) {
+                from++;
+            }
+            return from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next < UUIDIntMap.this.used.length;
+        }
+
+        @Override
+        public Entry<UUID, Integer> next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            this.slot = this.next;
+            this.next = this.advance(this.slot + 1);
+            final int entrySlot = this.slot;
+            UUID key = new UUID(UUIDIntMap.this.mostSignificantBits[entrySlot], UUIDIntMap.this.leastSignificantBits[entrySlot]);
+            return new SimpleEntry<UUID, Integer>(key, UUIDIntMap.this.values[entrySlot]) {
+                @Override
+                public Integer setValue(Integer value) {
+                    UUIDIntMap.this.values[entrySlot] = value;
+                    return super.setValue(value);
+                }
+            };
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+package org.whstsa.library.api.impl.library;
+
+import org.junit.After;
+import org.junit.Test;
+import org.whstsa.library.World;
+import org.whstsa.library.api.BookType;
+import org.whstsa.library.api.DateUtils;
+import org.whstsa.library.api.books.IBook;
+import org.whstsa.library.api.impl.Book;
+import org.whstsa.library.api.impl.Person;
+import org.whstsa.library.api.library.ICheckout;
+import org.whstsa.library.api.library.IMember;
+
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class CheckoutTest {
+
+    private static final long DUE_DAY = 17532;
+    private static final double DELTA = 1e-9;
+
+    @After
+    public void resetDate() {
+        World.setDate(null);
+    }
+
+    @Test
+    public void noFineUpToTheDueDay() {
+        IMember student = newMember(false);
+        assertEquals(0, Checkout.computeFine(student, DUE_DAY, DUE_DAY), DELTA);
+        assertEquals(0, Checkout.computeFine(student, DUE_DAY, DUE_DAY - 1), DELTA);
+        assertEquals(0, Checkout.computeFine(student, DUE_DAY, DUE_DAY - 30), DELTA);
+    }
+
+    @Test
+    public void dayAfterTheDueDayIsChargedAsOneDay() {
+        assertEquals(Checkout.LATE_FEE, Checkout.computeFine(newMember(false), DUE_DAY, DUE_DAY + 1), DELTA);
+    }
+
+    @Test
+    public void finesGrowByOneFeePerDay() {
+        IMember student = newMember(false);
+        for (int days = 1; days <= 40; days++) {
+            assertEquals(days * Checkout.LATE_FEE, Checkout.computeFine(student, DUE_DAY, DUE_DAY + days), DELTA);
+        }
+    }
+
+    @Test
+    public void teachersPayTheTeacherFee() {
+        assertEquals(10 * Checkout.LATE_FEE_TEACHER, Checkout.computeFine(newMember(true), DUE_DAY, DUE_DAY + 10), DELTA);
+    }
+
+    @Test
+    public void fineFollowsTheWorldDate() {
+        IMember student = newMember(false);
+        Checkout checkout = new Checkout(student, newBook(), UUID.randomUUID(), DUE_DAY);
+
+        setDay(DUE_DAY);
+        assertEquals(0, checkout.getDaysPast());
+        assertFalse(checkout.isOverdue());
+        assertEquals(0, checkout.getFine(), DELTA);
+
+        setDay(DUE_DAY + 3);
+        assertEquals(3, checkout.getDaysPast());
+        assertTrue(checkout.isOverdue());
+        assertEquals(3 * Checkout.LATE_FEE, checkout.getFine(), DELTA);
+    }
+
+    @Test
+    public void worldDateMapsToTheLocalDay() {
+        // any time of the day belongs to that day
+        World.setDate(new Date(DateUtils.toEpochMillis(DUE_DAY)));
+        assertEquals(DUE_DAY, World.getEpochDay());
+        World.setDate(new Date(DateUtils.toEpochMillis(DUE_DAY + 1) - 1));
+        assertEquals(DUE_DAY, World.getEpochDay());
+        World.setDate(new Date(DateUtils.toEpochMillis(DUE_DAY + 1)));
+        assertEquals(DUE_DAY + 1, World.getEpochDay());
+    }
+
+    @Test
+    public void dayStringsRoundTrip() {
+        assertEquals("2018-01-01", DateUtils.toDayString(DUE_DAY));
+        assertEquals(DUE_DAY, DateUtils.fromDayString("2018-01-01"));
+        // timestamps written by older versions are read as the local day they fall on
+        String timestamp = DateUtils.toDateString(new Date(DateUtils.toEpochMillis(DUE_DAY) + 15 * 60 * 60 * 1000));
+        assertEquals(DUE_DAY, DateUtils.fromDayString(timestamp));
+    }
+
+    @Test
+    public void libraryFinesMatchCheckoutFines() throws Exception {
+        setDay(DUE_DAY - 7);
+        Library library = new Library("Fine Library");
+        IBook book = newBook();
+        library.addBook(book, 2);
+        IMember student = library.addMember(new Person("Fine", "Student", false));
+        IMember teacher = library.addMember(new Person("Fine", "Teacher", true));
+        ICheckout studentCheckout = library.reserveBook(student, book, 1);
+        ICheckout teacherCheckout = library.reserveBook(teacher, book, 1);
+        assertEquals(DUE_DAY, studentCheckout.getDueDay());
+        assertEquals(0, library.getFines().getOrDefault(student, 0.0), DELTA);
+
+        for (long day = DUE_DAY - 1; day <= DUE_DAY + 5; day++) {
+            setDay(day);
+            assertEquals(studentCheckout.getFine(), library.getFines().getOrDefault(student, 0.0), DELTA);
+            assertEquals(teacherCheckout.getFine(), library.getFines().getOrDefault(teacher, 0.0), DELTA);
+        }
+
+        // paying a fine moves the due date, which has to clear the balance of the member
+        studentCheckout.payFine();
+        assertEquals(0, library.getFines().getOrDefault(student, 0.0), DELTA);
+        assertEquals(5 * Checkout.LATE_FEE_TEACHER, library.getFines().get(teacher), DELTA);
+    }
+
+    private static void setDay(long day) {
+        World.setDate(DateUtils.toDate(day));
+    }
+
+    private static IMember newMember(boolean teacher) {
+        return new Member(new Person("Fine", "Payer", teacher), new Library("Fine Library"));
+    }
+
+    private static IBook newBook() {
+        return new Book("Overdue", "Late Author", BookType.GENERIC);
+    }
+
+}
@@ -0,0 +1,172 @@
+package org.whstsa.library.api.impl.library;
+
+import org.junit.Test;
+import org.whstsa.library.api.BookType;
+import org.whstsa.library.api.exceptions.CheckedInException;
+import org.whstsa.library.api.impl.Book;
+import org.whstsa.library.api.impl.Person;
+import org.whstsa.library.api.library.ICheckout;
+import org.whstsa.library.api.library.IMember;
+import org.whstsa.library.db.CirculationHistory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class LibraryLockTest {
+
+    private static final int THREADS = 8;
+
+    @Test
+    public void checkoutsAreReturnedOnce() throws Exception {
+        Library library = new Library("Returned Once");
+        Book book = new Book("Returned Once", "Author", BookType.GENERIC);
+        library.addBook(book, 1);
+        IMember member = library.addMember(new Person("Returned", "Once", false));
+        ICheckout checkout = library.reserveBook(member, book, 1);
+        AtomicInteger returns = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        runConcurrently(thread -> {
+            try {
+                checkout.checkIn();
+                returns.incrementAndGet();
+            } catch (CheckedInException ex) {
+                rejected.incrementAndGet();
+            }
+        });
+
+        assertEquals(1, returns.get());
+        assertEquals(THREADS - 1, rejected.get());
+        assertEquals(0, library.getCheckedOutCount(book.getID()));
+        assertTrue(member.getCheckouts(true).isEmpty());
+        assertEquals(1, CirculationHistory.getHistory().getMemberHistory(member.getID()).size());
+    }
+
+    @Test
+    public void hydrationRunsOnceUnderConcurrentReaders() throws Exception {
+        Library library = new Library("Hydrated Once");
+        Book book = new Book("Hydrated Once", "Author", BookType.HORROR);
+        library.addBook(book, 2);
+        Person person = new Person("Hydrated", "Once", false);
+        AtomicInteger hydrations = new AtomicInteger();
+        library.impl_setHydrator(hydrated -> {
+            hydrations.incrementAndGet();
+            return Collections.singletonList(new Member(person, hydrated));
+        });
+        List<Integer> memberCounts = Collections.synchronizedList(new ArrayList<>());
+
+        runConcurrently(thread -> {
+            switch (thread % 4) {
+                case 0:
+                    memberCounts.add(library.getMembers().size());
+                    break;
+                case 1:
+                    memberCounts.add(library.getFines().size() + 1);
+                    break;
+                case 2:
+                    memberCounts.add(library.getTitleCount(BookType.HORROR));
+                    break;
+                default:
+                    memberCounts.add(library.getMemberMap().size());
+            }
+        });
+
+        assertEquals(1, hydrations.get());
+        assertNull(library.getHydrator());
+        assertEquals(Collections.nCopies(THREADS, 1), memberCounts);
+        assertTrue(library.hasMember(person));
+    }
+
+    @Test
+    public void hydrationDoesNotHoldTheLibraryLock() throws Exception {
+        Library library = new Library("Hydrating");
+        Book book = new Book("Hydrating", "Author", BookType.GENERIC);
+        library.addBook(book, 3);
+        Person person = new Person("Hydrating", "Reader", false);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            library.impl_setHydrator(hydrated -> {
+                // another thread reads the quantities while the members are being built
+                Future<Integer> quantity = executor.submit(() -> hydrated.getQuantity(book.getID()));
+                try {
+                    assertEquals(3, (int) quantity.get(5, TimeUnit.SECONDS));
+                } catch (InterruptedException | ExecutionException | TimeoutException ex) {
+                    throw new AssertionError("the quantity could not be read while hydrating", ex);
+                }
+                return Collections.singletonList(new Member(person, hydrated));
+            });
+
+            assertEquals(1, library.getMembers().size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void concurrentCheckoutsAndReturnsKeepTheCountersConsistent() throws Exception {
+        Library library = new Library("Busy");
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Book book = new Book("Busy " + i, "Author", BookType.MYSTERY);
+            library.addBook(book, THREADS);
+            books.add(book);
+        }
+        List<IMember> members = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            members.add(library.addMember(new Person("Busy", "Reader " + i, false)));
+        }
+
+        runConcurrently(thread -> {
+            IMember member = members.get(thread);
+            for (int i = 0; i < 200; i++) {
+                Book book = books.get((thread + i) % books.size());
+                ICheckout checkout = library.reserveBook(member, book, 1);
+                assertTrue(library.getCheckedOutCount(book.getID()) >= 1);
+                assertTrue(library.getCheckedOutCopyCount(BookType.MYSTERY) >= 1);
+                member.checkIn(checkout);
+            }
+        });
+
+        for (Book book : books) {
+            assertEquals(0, library.getCheckedOutCount(book.getID()));
+            assertTrue(library.getActiveCheckouts(book).isEmpty());
+        }
+        assertEquals(0, library.getCheckedOutCopyCount(BookType.MYSTERY));
+        assertEquals(4 * THREADS, library.getCopyCount(BookType.MYSTERY));
+        assertTrue(library.getUpcomingCheckouts(10).isEmpty());
+        assertEquals(0, library.getOutstandingFines(), 0);
+    }
+
+    private static void runConcurrently(Task task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                int index = thread;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run(index);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private interface Task {
+
+        void run(int thread) throws Exception;
+    }
+
+}
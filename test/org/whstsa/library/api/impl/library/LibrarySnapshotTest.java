@@ -0,0 +1,184 @@
+package org.whstsa.library.api.impl.library;
+
+import org.junit.Test;
+import org.whstsa.library.World;
+import org.whstsa.library.api.BookType;
+import org.whstsa.library.api.impl.Book;
+import org.whstsa.library.api.impl.Person;
+import org.whstsa.library.api.library.ICheckout;
+import org.whstsa.library.api.library.ILibrarySnapshot;
+import org.whstsa.library.api.library.IMember;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LibrarySnapshotTest {
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private static final long START = 1522512000000L;
+
+    @Test
+    public void snapshotsStayTheSameWhileTheLibraryChanges() throws Exception {
+        Library library = new Library("Before");
+        Book book = new Book("Isolated", "Author", BookType.GENERIC);
+        library.addBook(book, 2);
+        IMember reader = library.addMember(new Person("Isolated", "Reader", false));
+        IMember leaver = library.addMember(new Person("Isolated", "Leaver", false));
+        try {
+            World.setDate(new Date(START));
+            ICheckout checkout = library.reserveBook(reader, book, 1);
+            ILibrarySnapshot before = library.snapshot();
+            long dueDay = checkout.getDueDay();
+
+            World.setDate(new Date(START + 3 * DAY));
+            checkout.resetDueDate();
+            library.reserveBook(reader, book, 1);
+            library.setQuantity(book.getID(), 4);
+            library.setName("After");
+            library.removeMember(leaver);
+            ILibrarySnapshot after = library.snapshot();
+
+            assertEquals("Before", before.getName());
+            assertEquals(2, before.getQuantity(book.getID()));
+            assertEquals(1, before.getCheckedOutCount(book.getID()));
+            assertEquals(Arrays.asList(reader, leaver), before.getMembers());
+            assertEquals(Collections.singletonList(checkout), before.getCheckouts(reader));
+            assertEquals(dueDay, before.getDueDay(checkout));
+
+            assertEquals("After", after.getName());
+            assertEquals(4, after.getQuantity(book.getID()));
+            assertEquals(2, after.getCheckedOutCount(book.getID()));
+            assertEquals(Collections.singletonList(reader), after.getMembers());
+            assertEquals(checkout.getDueDay(), after.getDueDay(checkout));
+            assertTrue(after.getVersion() > before.getVersion());
+        } finally {
+            World.setDate(null);
+        }
+    }
+
+    @Test
+    public void snapshotsArePublishedOnceForEveryChangeThatIsRead() throws Exception {
+        Library library = new Library("Lazy");
+        Book book = new Book("Lazy", "Author", BookType.GENERIC);
+        library.addBook(book, 10);
+        IMember member = library.addMember(new Person("Lazy", "Reader", true));
+
+        ILibrarySnapshot first = library.snapshot();
+        assertSame(first, library.snapshot());
+
+        // changes between two reads are published as a single version
+        for (int i = 0; i < 5; i++) {
+            library.reserveBook(member, book, 1);
+        }
+        library.setQuantity(book.getID(), 8);
+        ILibrarySnapshot second = library.snapshot();
+        assertEquals(first.getVersion() + 1, second.getVersion());
+        assertSame(second, library.snapshot());
+        assertEquals(5, second.getCheckouts(member).size());
+        assertEquals(8, second.getQuantity(book.getID()));
+    }
+
+    @Test
+    public void untouchedMemberChunksAreShared() throws Exception {
+        Library library = new Library("Shared");
+        Book book = new Book("Shared", "Author", BookType.GENERIC);
+        library.addBook(book, 1);
+        List<IMember> members = addMembers(library, 200);
+        LibrarySnapshot first = library.impl_getSnapshot();
+
+        library.reserveBook(members.get(150), book, 1);
+        LibrarySnapshot second = library.impl_getSnapshot();
+
+        assertTrue(second.sharesMemberChunk(first, 0));
+        assertTrue(second.sharesMemberChunk(first, 70));
+        assertFalse(second.sharesMemberChunk(first, 150));
+        assertSame(first.getBooks(), second.getBooks());
+        assertEquals(1, second.getCheckouts(members.get(150)).size());
+        assertTrue(first.getCheckouts(members.get(150)).isEmpty());
+
+        library.setQuantity(book.getID(), 3);
+        LibrarySnapshot third = library.impl_getSnapshot();
+        assertTrue(third.sharesMemberChunk(second, 150));
+        assertEquals(3, third.getQuantity(book.getID()));
+        assertEquals(1, second.getQuantity(book.getID()));
+    }
+
+    @Test
+    public void removedMemberSlotsAreCompacted() throws Exception {
+        Library library = new Library("Compacted");
+        List<IMember> members = addMembers(library, 200);
+        LibrarySnapshot first = library.impl_getSnapshot();
+        assertEquals(256, first.getMemberSlotCount());
+
+        // a few removed members only clear their slots
+        for (IMember member : members.subList(0, 50)) {
+            library.removeMember(member);
+        }
+        LibrarySnapshot second = library.impl_getSnapshot();
+        assertEquals(256, second.getMemberSlotCount());
+        assertEquals(members.subList(50, 200), second.getMembers());
+        assertTrue(second.sharesMemberChunk(first, 199));
+
+        // once most slots are cleared the next version is built from scratch
+        for (IMember member : members.subList(50, 160)) {
+            library.removeMember(member);
+        }
+        LibrarySnapshot third = library.impl_getSnapshot();
+        assertEquals(64, third.getMemberSlotCount());
+        assertEquals(members.subList(160, 200), third.getMembers());
+        assertEquals(150, second.getMembers().size());
+
+        // members added after compacting get the slots after the remaining ones
+        IMember added = library.addMember(new Person("Member", "Added", false));
+        LibrarySnapshot fourth = library.impl_getSnapshot();
+        assertEquals(41, fourth.getMembers().size());
+        assertTrue(fourth.getMembers().contains(added));
+        assertFalse(fourth.sharesMemberChunk(third, 0));
+    }
+
+    @Test
+    public void finesAreReadFromTheSnapshot() throws Exception {
+        Library library = new Library("Fined Snapshot");
+        Book book = new Book("Fined Snapshot", "Author", BookType.GENERIC);
+        library.addBook(book, 2);
+        IMember late = library.addMember(new Person("Late", "Reader", false));
+        IMember punctual = library.addMember(new Person("Punctual", "Reader", false));
+        try {
+            World.setDate(new Date(START));
+            ICheckout checkout = library.reserveBook(late, book, 1);
+            World.setDate(new Date(START + 10 * DAY));
+            library.reserveBook(punctual, book, 1);
+            ILibrarySnapshot before = library.snapshot();
+
+            assertEquals(late.getFine(), before.getFine(late), 0);
+            assertEquals(0, before.getFine(punctual), 0);
+            assertEquals(library.getFines(), before.getFines());
+
+            checkout.payFine();
+            ILibrarySnapshot after = library.snapshot();
+            assertEquals(1.5, before.getFine(late), 0);
+            assertEquals(0, after.getFine(late), 0);
+            assertTrue(after.getFines().isEmpty());
+
+            // the fines of a snapshot accrue with the date it is read on
+            World.setDate(new Date(START + 11 * DAY));
+            assertEquals(2.0, before.getFine(late), 0);
+        } finally {
+            World.setDate(null);
+        }
+    }
+
+    private static List<IMember> addMembers(Library library, int count) {
+        List<IMember> members = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            members.add(library.addMember(new Person("Member", String.valueOf(i), false)));
+        }
+        return members;
+    }
+
+}
@@ -0,0 +1,531 @@
+package org.whstsa.library.api.impl.library;
+
+import org.junit.Test;
+import org.whstsa.library.World;
+import org.whstsa.library.api.BookType;
+import org.whstsa.library.api.books.IBook;
+import org.whstsa.library.api.exceptions.InCirculationException;
+import org.whstsa.library.api.exceptions.MaximumCheckoutsException;
+import org.whstsa.library.api.exceptions.OutOfStockException;
+import org.whstsa.library.api.impl.Book;
+import org.whstsa.library.api.impl.Person;
+import org.whstsa.library.api.library.ICheckout;
+import org.whstsa.library.api.library.IMember;
+import org.whstsa.library.db.Loader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class LibraryTest {
+
+    @Test
+    public void bookIndexFollowsAddsAndRemoves() {
+        Library library = new Library("Indexed Books");
+        IBook first = new Book("First", "Author", BookType.GENERIC);
+        IBook second = new Book("Second", "Author", BookType.GENERIC);
+        library.addBook(first, 1);
+        library.addBook(second, 1);
+        library.addBook(first, 3);
+
+        assertEquals(Arrays.asList(first, second), library.getBooks());
+        assertSame(first, library.getBookMap().get(first.getID()));
+        assertTrue(library.hasBook(second));
+        assertEquals(1, library.getQuantity(first.getID()));
+
+        library.removeBook(first);
+        assertFalse(library.hasBook(first));
+        assertNull(library.getBookMap().get(first.getID()));
+        assertEquals(Arrays.asList(second), library.getBooks());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void bookViewIsReadOnly() {
+        new Library("Read Only").getBooks().add(new Book("Sneaky", "Author", BookType.GENERIC));
+    }
+
+    @Test
+    public void memberIndexesFollowAddsAndRemoves() {
+        Library library = new Library("Indexed Members");
+        Person person = new Person("Indexed", "Member", false);
+        IMember member = library.addMember(person);
+
+        assertSame(member, library.addMember(person));
+        assertEquals(1, library.getMembers().size());
+        assertSame(member, library.getMember(person));
+        assertSame(member, library.getMemberMap().get(member.getID()));
+        assertTrue(library.hasMember(person));
+
+        library.removeMember(member);
+        assertFalse(library.hasMember(person));
+        assertNull(library.getMember(person));
+        assertNull(library.getMemberMap().get(member.getID()));
+        assertTrue(library.getMembers().isEmpty());
+    }
+
+    @Test
+    public void replacingMembersRebuildsTheIndexes() {
+        Library library = new Library("Replaced Members");
+        Person before = new Person("Before", "Replace", false);
+        IMember replaced = library.addMember(before);
+        Person after = new Person("After", "Replace", true);
+        Member member = new Member(after, library);
+
+        List<IMember> members = new ArrayList<>();
+        members.add(member);
+        library.impl_setMembers(members);
+
+        assertNull(library.getMemberMap().get(replaced.getID()));
+        assertNull(library.getMember(before));
+        assertSame(member, library.getMember(after));
+        assertSame(member, library.getMemberMap().get(member.getID()));
+    }
+
+    @Test(expected = InCirculationException.class)
+    public void booksInCirculationCannotBeRemoved() throws Exception {
+        Library library = new Library("Circulating");
+        IBook book = new Book("Circulating", "Author", BookType.GENERIC);
+        library.addBook(book, 2);
+        IMember member = library.addMember(new Person("Holding", "Reader", false));
+        library.reserveBook(member, book, 1);
+        library.removeBook(book);
+    }
+
+    @Test
+    public void circulationCountsFollowCheckoutsAndReturns() throws Exception {
+        Library library = new Library("Circulation");
+        IBook book = new Book("Counted", "Author", BookType.GENERIC);
+        library.addBook(book, 2);
+        IMember first = library.addMember(new Person("First", "Reader", false));
+        IMember second = library.addMember(new Person("Second", "Reader", false));
+
+        ICheckout firstCheckout = library.reserveBook(first, book, 1);
+        assertEquals(1, library.getCheckedOutCount(book.getID()));
+        assertFalse(library.checkOutOfStock(book));
+        ICheckout secondCheckout = library.reserveBook(second, book, 1);
+        assertEquals(2, library.getCheckedOutCount(book.getID()));
+        assertTrue(library.checkOutOfStock(book));
+        assertEquals(Arrays.asList(firstCheckout, secondCheckout), library.getActiveCheckouts(book));
+        try {
+            library.reserveBook(first, book, 1);
+            fail("the last copy is already checked out");
+        } catch (OutOfStockException ex) {
+            // expected
+        }
+
+        first.checkIn(firstCheckout);
+        assertEquals(1, library.getCheckedOutCount(book.getID()));
+        assertFalse(library.checkOutOfStock(book));
+        assertEquals(Arrays.asList(secondCheckout), library.getActiveCheckouts(book));
+        assertEquals(Arrays.asList(secondCheckout), library.getCheckouts().get(book));
+        assertEquals(1, library.getCheckouts().size());
+
+        second.checkIn(secondCheckout);
+        assertEquals(0, library.getCheckedOutCount(book.getID()));
+        assertTrue(library.getActiveCheckouts(book).isEmpty());
+        assertTrue(library.getCheckouts().isEmpty());
+    }
+
+    @Test
+    public void genreCountersFollowBooksQuantitiesAndCheckouts() throws Exception {
+        Loader loader = Loader.getLoader();
+        Library library = new Library("Genre Counters");
+        Book horror = new Book("Counted Horror", "Author", BookType.HORROR);
+        Book mystery = new Book("Counted Mystery", "Author", BookType.MYSTERY);
+        Person person = new Person("Genre", "Reader", false);
+        loader.loadBook(horror);
+        loader.loadBook(mystery);
+        loader.loadPerson(person);
+        loader.loadLibrary(library);
+        library.addBook(horror, 3);
+        IMember member = library.addMember(person);
+
+        assertEquals(1, library.getTitleCount(BookType.HORROR));
+        assertEquals(3, library.getCopyCount(BookType.HORROR));
+        assertEquals(0, library.getTitleCount(BookType.MYSTERY));
+
+        library.addBook(mystery, 2);
+        library.setQuantity(horror.getID(), 4);
+        ICheckout checkout = library.reserveBook(member, horror, 1);
+        assertEquals(1, library.getTitleCount(BookType.MYSTERY));
+        assertEquals(2, library.getCopyCount(BookType.MYSTERY));
+        assertEquals(4, library.getCopyCount(BookType.HORROR));
+        assertEquals(1, library.getCheckedOutCopyCount(BookType.HORROR));
+
+        // a type change moves the title, its copies and its checkouts
+        horror.setType(BookType.FANTASY);
+        assertEquals(0, library.getTitleCount(BookType.HORROR));
+        assertEquals(0, library.getCopyCount(BookType.HORROR));
+        assertEquals(1, library.getTitleCount(BookType.FANTASY));
+        assertEquals(4, library.getCopyCount(BookType.FANTASY));
+        assertEquals(1, library.getCheckedOutCopyCount(BookType.FANTASY));
+
+        member.checkIn(checkout);
+        assertEquals(0, library.getCheckedOutCopyCount(BookType.FANTASY));
+        library.removeBook(mystery);
+        assertEquals(0, library.getTitleCount(BookType.MYSTERY));
+        assertEquals(0, library.getCopyCount(BookType.MYSTERY));
+    }
+
+    @Test
+    public void replacedBookListsAreCountedWithoutMissingBooks() {
+        Library library = new Library("Missing Books");
+        IBook book = new Book("Present", "Author", BookType.BIOGRAPHY);
+        library.addBook(book, 2);
+        assertEquals(1, library.getTitleCount(BookType.BIOGRAPHY));
+
+        library.impl_setBookList(new ArrayList<>(Arrays.asList(book, null)));
+        assertEquals(1, library.getTitleCount(BookType.BIOGRAPHY));
+        assertEquals(2, library.getCopyCount(BookType.BIOGRAPHY));
+    }
+
+    @Test
+    public void replacedMembersBringTheirCheckoutsIntoCirculation() {
+        Library library = new Library("Restored Circulation");
+        IBook book = new Book("Restored", "Author", BookType.GENERIC);
+        library.addBook(book, 3);
+        Member member = new Member(new Person("Restored", "Reader", false), library);
+        Checkout active = new Checkout(member, book);
+        Checkout returned = new Checkout(member, book);
+        returned.impl_setReturned(true);
+        Map<IBook, List<ICheckout>> books = new HashMap<>();
+        books.put(book, new ArrayList<>(Arrays.asList(active, returned)));
+        member.impl_setBooks(books);
+
+        library.impl_setMembers(new ArrayList<>(Arrays.asList(member)));
+        assertEquals(1, library.getCheckedOutCount(book.getID()));
+        assertEquals(Arrays.asList(active), library.getActiveCheckouts(book));
+    }
+
+    @Test
+    public void dueIndexFollowsDueDatesAndReturns() throws Exception {
+        long day = 24L * 60 * 60 * 1000;
+        long start = 1522512000000L;
+        Library library = new Library("Due Dates");
+        IBook book = new Book("Due", "Author", BookType.GENERIC);
+        library.addBook(book, 3);
+        IMember first = library.addMember(new Person("Early", "Reader", false));
+        IMember second = library.addMember(new Person("Late", "Reader", false));
+        try {
+            World.setDate(new Date(start));
+            ICheckout early = library.reserveBook(first, book, 1);
+            World.setDate(new Date(start + 3 * day));
+            ICheckout late = library.reserveBook(second, book, 1);
+            assertTrue(library.getOverdueCheckouts().isEmpty());
+            assertEquals(Arrays.asList(early, late), library.getUpcomingCheckouts(5));
+            assertEquals(Arrays.asList(early), library.getUpcomingCheckouts(1));
+
+            World.setDate(new Date(start + 8 * day));
+            assertEquals(Arrays.asList(early), library.getOverdueCheckouts());
+            assertEquals(Arrays.asList(late), library.getUpcomingCheckouts(5));
+
+            // renewing moves the checkout behind the later one
+            early.resetDueDate();
+            assertTrue(library.getOverdueCheckouts().isEmpty());
+            assertEquals(Arrays.asList(late, early), library.getUpcomingCheckouts(5));
+
+            second.checkIn(late);
+            assertEquals(Arrays.asList(early), library.getUpcomingCheckouts(5));
+            first.checkIn(early);
+            assertEquals(Collections.emptyList(), library.getUpcomingCheckouts(5));
+        } finally {
+            World.setDate(null);
+        }
+    }
+
+    @Test
+    public void fineLedgerAccruesWithTheWorldDate() throws Exception {
+        long day = 24L * 60 * 60 * 1000;
+        long start = 1522512000000L;
+        Loader loader = Loader.getLoader();
+        Library library = new Library("Fine Ledger");
+        IBook book = new Book("Fined", "Author", BookType.GENERIC);
+        Person student = new Person("Fined", "Student", false);
+        Person punctual = new Person("Punctual", "Student", false);
+        loader.loadLibrary(library);
+        loader.loadBook(book);
+        loader.loadPerson(student);
+        loader.loadPerson(punctual);
+        library.addBook(book, 3);
+        IMember first = library.addMember(student);
+        IMember second = library.addMember(punctual);
+        try {
+            World.setDate(new Date(start));
+            ICheckout late = library.reserveBook(first, book, 1);
+            World.setDate(new Date(start + 5 * day));
+            ICheckout onTime = library.reserveBook(second, book, 1);
+            assertEquals(0, library.getOutstandingFines(), 0);
+            assertTrue(library.getFines().isEmpty());
+
+            World.setDate(new Date(start + 10 * day));
+            assertEquals(1.5, first.getFine(), 0);
+            assertEquals(0, second.getFine(), 0);
+            assertEquals(1.5, library.getOutstandingFines(), 0);
+            assertEquals(Collections.singletonMap(first, 1.5), library.getFines());
+
+            // changes between accruals are applied in place
+            ICheckout another = library.reserveBook(second, book, 1);
+            assertEquals(1.5, library.getOutstandingFines(), 0);
+
+            // becoming a teacher changes the rate of every checkout
+            student.setTeacher(true);
+            assertEquals(0.75, first.getFine(), 0);
+            assertEquals(0.75, library.getOutstandingFines(), 0);
+
+            World.setDate(new Date(start + 14 * day));
+            assertEquals(1.75, first.getFine(), 0);
+            assertEquals(1.0, second.getFine(), 0);
+            assertEquals(2.75, library.getOutstandingFines(), 0);
+
+            late.payFine();
+            assertEquals(0, first.getFine(), 0);
+            assertEquals(1.0, library.getOutstandingFines(), 0);
+
+            onTime.payFine();
+            second.checkIn(onTime);
+            assertEquals(0, library.getOutstandingFines(), 0);
+            assertTrue(library.getFines().isEmpty());
+            assertFalse(another.isOverdue());
+        } finally {
+            World.setDate(null);
+        }
+    }
+
+    @Test
+    public void concurrentReservationsNeverOversell() throws Exception {
+        Library library = new Library("Contended Library");
+        IBook book = newBook("Popular");
+        library.addBook(book, 5);
+        List<IMember> members = addMembers(library, 64);
+
+        AtomicInteger reserved = new AtomicInteger();
+        AtomicInteger outOfStock = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch ready = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (IMember member : members) {
+            Thread thread = new Thread(() -> {
+                try {
+                    ready.await();
+                    library.reserveBook(member, book, 1);
+                    reserved.incrementAndGet();
+                } catch (OutOfStockException ex) {
+                    outOfStock.incrementAndGet();
+                } catch (Throwable ex) {
+                    failure.compareAndSet(null, ex);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        ready.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNull(failure.get());
+        assertEquals(5, reserved.get());
+        assertEquals(members.size() - 5, outOfStock.get());
+        assertEquals(5, library.getCheckedOutCount(book.getID()));
+        assertEquals(5, countActive(members, book));
+        assertTrue(library.checkOutOfStock(book));
+    }
+
+    @Test
+    public void returnsReleaseStockUnderContention() throws Exception {
+        Library library = new Library("Busy Library");
+        List<IBook> books = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            IBook book = newBook("Title " + i);
+            library.addBook(book, 3);
+            books.add(book);
+        }
+        List<IMember> members = addMembers(library, 32);
+
+        AtomicBoolean oversold = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Random random = new Random(t);
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 2000 && failure.get() == null; i++) {
+                    IMember member = members.get(random.nextInt(members.size()));
+                    IBook book = books.get(random.nextInt(books.size()));
+                    try {
+                        if (random.nextBoolean()) {
+                            library.reserveBook(member, book, 1);
+                        } else {
+                            for (ICheckout checkout : member.getCheckout(book)) {
+                                member.returnCheckout(checkout);
+                                break;
+                            }
+                        }
+                        if (library.getCheckedOutCount(book.getID()) > library.getQuantity(book.getID())) {
+                            oversold.set(true);
+                        }
+                    } catch (OutOfStockException | MaximumCheckoutsException ex) {
+                        // expected while the titles are contended
+                    } catch (Throwable ex) {
+                        failure.compareAndSet(null, ex);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNull(failure.get());
+        assertFalse(oversold.get());
+        for (IBook book : books) {
+            int active = countActive(members, book);
+            assertTrue(active <= library.getQuantity(book.getID()));
+            assertEquals(active, library.getCheckedOutCount(book.getID()));
+            assertEquals(active, library.snapshot().getCheckedOutCount(book.getID()));
+        }
+    }
+
+    @Test
+    public void returnedCopiesCanBeReservedAgain() throws Exception {
+        Library library = new Library("Small Library");
+        IBook book = newBook("Only Copy");
+        library.addBook(book, 1);
+        List<IMember> members = addMembers(library, 2);
+
+        ICheckout checkout = library.reserveBook(members.get(0), book, 1);
+        try {
+            library.reserveBook(members.get(1), book, 1);
+            fail("the only copy was reserved twice");
+        } catch (OutOfStockException ex) {
+            // expected
+        }
+        members.get(0).returnCheckout(checkout);
+        assertEquals(0, library.getCheckedOutCount(book.getID()));
+        library.reserveBook(members.get(1), book, 1);
+        assertEquals(1, library.getCheckedOutCount(book.getID()));
+    }
+
+    @Test
+    public void membersCheckOutSeveralTitlesUpToTheirLimit() throws Exception {
+        Library library = new Library("Limited Library");
+        List<IBook> books = new ArrayList<>();
+        for (int i = 0; i < 11; i++) {
+            IBook book = newBook("Limited " + i);
+            library.addBook(book, 2);
+            books.add(book);
+        }
+        IMember student = library.addMember(new Person("Limited", "Student", false));
+        IMember teacher = library.addMember(new Person("Limited", "Teacher", true));
+
+        for (int i = 0; i < 5; i++) {
+            library.reserveBook(student, books.get(i), 1);
+        }
+        try {
+            library.reserveBook(student, books.get(5), 1);
+            fail("a student checked out a sixth title");
+        } catch (MaximumCheckoutsException ex) {
+            // expected
+        }
+        assertEquals(5, student.getCheckouts().size());
+        // the refused title keeps both of its copies
+        assertEquals(0, library.getCheckedOutCount(books.get(5).getID()));
+
+        for (int i = 0; i < 10; i++) {
+            library.reserveBook(teacher, books.get(i), 1);
+        }
+        try {
+            library.reserveBook(teacher, books.get(10), 1);
+            fail("a teacher checked out an eleventh title");
+        } catch (MaximumCheckoutsException ex) {
+            // expected
+        }
+        assertEquals(10, teacher.getCheckouts().size());
+        assertTrue(library.checkOutOfStock(books.get(0)));
+
+        student.returnCheckout(student.getCheckout(books.get(0)).get(0));
+        library.reserveBook(student, books.get(5), 1);
+        assertEquals(5, student.getCheckouts().size());
+    }
+
+    @Test
+    public void memberLimitHoldsUnderContention() throws Exception {
+        Library library = new Library("Greedy Library");
+        List<IBook> books = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            IBook book = newBook("Greedy " + i);
+            library.addBook(book, 1);
+            books.add(book);
+        }
+        IMember member = library.addMember(new Person("Greedy", "Reader", false));
+
+        AtomicInteger reserved = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch ready = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (IBook book : books) {
+            Thread thread = new Thread(() -> {
+                try {
+                    ready.await();
+                    library.reserveBook(member, book, 1);
+                    reserved.incrementAndGet();
+                } catch (MaximumCheckoutsException ex) {
+                    refused.incrementAndGet();
+                } catch (Throwable ex) {
+                    failure.compareAndSet(null, ex);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        ready.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNull(failure.get());
+        assertEquals(5, reserved.get());
+        assertEquals(books.size() - 5, refused.get());
+        assertEquals(5, member.getCheckouts().size());
+        int checkedOut = 0;
+        for (IBook book : books) {
+            checkedOut += library.getCheckedOutCount(book.getID());
+        }
+        // refused reservations give their claimed copies back
+        assertEquals(5, checkedOut);
+    }
+
+    private static List<IMember> addMembers(Library library, int count) {
+        List<IMember> members = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            members.add(library.addMember(new Person("Member", String.valueOf(i), false)));
+        }
+        return members;
+    }
+
+    private static int countActive(List<IMember> members, IBook book) {
+        int active = 0;
+        for (IMember member : members) {
+            active += member.getCheckout(book).size();
+        }
+        return active;
+    }
+
+    private static IBook newBook(String title) {
+        return new Book(title, "Author", BookType.GENERIC);
+    }
+
+}
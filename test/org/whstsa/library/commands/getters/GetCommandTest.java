@@ -0,0 +1,69 @@
+package org.whstsa.library.commands.getters;
+
+import org.json.JSONObject;
+import org.junit.Test;
+import org.whstsa.library.api.BookType;
+import org.whstsa.library.api.impl.Book;
+import org.whstsa.library.api.impl.Person;
+import org.whstsa.library.api.impl.library.Library;
+import org.whstsa.library.api.library.IMember;
+import org.whstsa.library.commands.api.ICommandSender;
+import org.whstsa.library.db.Loader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class GetCommandTest {
+
+    @Test
+    public void entitiesAreGroupedByType() {
+        Loader loader = Loader.getLoader();
+        Person person = new Person("Get", "Command", false);
+        Book book = new Book("Get Command", "Author", BookType.GENERIC);
+        Library library = new Library("Get Command");
+        loader.loadPerson(person);
+        loader.loadBook(book);
+        loader.loadLibrary(library);
+        IMember member = library.addMember(person);
+        UUID missing = UUID.randomUUID();
+        Sender sender = new Sender();
+
+        JSONObject result = new GetCommand().handle(new String[]{
+                book.getID().toString(), person.getID().toString(), library.getID().toString(),
+                member.getID().toString(), missing.toString(), "not-a-uuid"}, sender);
+
+        assertEquals(book.getID().toString(), result.getJSONArray("books").getJSONObject(0).get("uuid").toString());
+        assertEquals(person.getID().toString(), result.getJSONArray("people").getJSONObject(0).get("uuid").toString());
+        assertEquals(library.getID().toString(), result.getJSONArray("libraries").getJSONObject(0).get("uuid").toString());
+        assertEquals(member.getID().toString(), result.getJSONArray("other").getJSONObject(0).get("uuid").toString());
+        assertEquals(1, result.getJSONArray("other").length());
+        assertEquals(Arrays.asList(
+                "Notice: Skipping " + missing + " as it does not exist.",
+                "Notice: Skipping not-a-uuid as it is an invalid UUID."), sender.messages);
+    }
+
+    private static class Sender implements ICommandSender {
+
+        private final List<String> messages = new ArrayList<>();
+
+        @Override
+        public Type getType() {
+            return Type.CONSOLE;
+        }
+
+        @Override
+        public void sendMessage(String... messages) {
+            this.messages.addAll(Arrays.asList(messages));
+        }
+
+        @Override
+        public void sendMessage(Object... messages) {
+            Arrays.stream(messages).map(String::valueOf).forEach(this.messages::add);
+        }
+    }
+
+}
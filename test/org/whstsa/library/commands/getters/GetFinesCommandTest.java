@@ -0,0 +1,76 @@
+package org.whstsa.library.commands.getters;
+
+import org.json.JSONObject;
+import org.junit.Test;
+import org.whstsa.library.World;
+import org.whstsa.library.api.BookType;
+import org.whstsa.library.api.impl.Book;
+import org.whstsa.library.api.impl.Person;
+import org.whstsa.library.api.impl.library.Library;
+import org.whstsa.library.api.library.IMember;
+import org.whstsa.library.commands.api.ICommandSender;
+import org.whstsa.library.db.Loader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class GetFinesCommandTest {
+
+    @Test
+    public void reportsTheLedgerOfALibrary() throws Exception {
+        long day = 24L * 60 * 60 * 1000;
+        Loader loader = Loader.getLoader();
+        Library library = new Library("Fines Command");
+        Book book = new Book("Fines Command", "Author", BookType.GENERIC);
+        Person person = new Person("Fines", "Command", false);
+        loader.loadLibrary(library);
+        loader.loadBook(book);
+        loader.loadPerson(person);
+        library.addBook(book, 1);
+        IMember member = library.addMember(person);
+        Sender sender = new Sender();
+        try {
+            World.setDate(new Date(1522512000000L));
+            library.reserveBook(member, book, 1);
+            World.setDate(new Date(1522512000000L + 9 * day));
+
+            JSONObject result = new GetFinesCommand().handle(new String[]{library.getID().toString()}, sender);
+            assertEquals(1.0, result.getDouble("total"), 0);
+            assertEquals(1.0, result.getJSONObject("members").getDouble(member.getID().toString()), 0);
+            assertEquals(1, result.getJSONObject("members").length());
+        } finally {
+            World.setDate(null);
+        }
+
+        UUID missing = UUID.randomUUID();
+        assertNull(new GetFinesCommand().handle(new String[]{missing.toString()}, sender));
+        assertNull(new GetFinesCommand().handle(new String[]{"not-a-uuid"}, sender));
+        assertEquals(Arrays.asList("Notice: " + missing + " does not exist.", "Notice: not-a-uuid is an invalid UUID."), sender.messages);
+    }
+
+    private static class Sender implements ICommandSender {
+
+        private final List<String> messages = new ArrayList<>();
+
+        @Override
+        public Type getType() {
+            return Type.CONSOLE;
+        }
+
+        @Override
+        public void sendMessage(String... messages) {
+            this.messages.addAll(Arrays.asList(messages));
+        }
+
+        @Override
+        public void sendMessage(Object... messages) {
+            Arrays.stream(messages).map(String::valueOf).forEach(this.messages::add);
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+package org.whstsa.library.commands.getters;
+
+import org.json.JSONObject;
+import org.junit.Test;
+import org.whstsa.library.api.BookType;
+import org.whstsa.library.api.impl.Book;
+import org.whstsa.library.api.impl.library.Library;
+import org.whstsa.library.commands.api.ICommandSender;
+import org.whstsa.library.db.Loader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class GetGenresCommandTest {
+
+    @Test
+    public void reportsTheCountersOfALibrary() {
+        Loader loader = Loader.getLoader();
+        Library library = new Library("Genres Command");
+        Book book = new Book("Genres Command", "Author", BookType.NONFICTION);
+        loader.loadLibrary(library);
+        loader.loadBook(book);
+        library.addBook(book, 3);
+        Sender sender = new Sender();
+
+        JSONObject result = new GetGenresCommand().handle(new String[]{library.getID().toString()}, sender);
+        JSONObject nonfiction = result.getJSONObject(BookType.NONFICTION.getGenre());
+        assertEquals(1, nonfiction.getInt("titles"));
+        assertEquals(3, nonfiction.getInt("copies"));
+        assertEquals(0, nonfiction.getInt("checkedOut"));
+        assertEquals(BookType.values().length, result.length());
+
+        UUID missing = UUID.randomUUID();
+        assertNull(new GetGenresCommand().handle(new String[]{missing.toString()}, sender));
+        assertNull(new GetGenresCommand().handle(new String[]{"not-a-uuid"}, sender));
+        assertEquals(Arrays.asList(
+                "Notice: " + missing + " does not exist.",
+                "Notice: not-a-uuid is an invalid UUID."), sender.messages);
+    }
+
+    private static class Sender implements ICommandSender {
+
+        private final List<String> messages = new ArrayList<>();
+
+        @Override
+        public Type getType() {
+            return Type.CONSOLE;
+        }
+
+        @Override
+        public void sendMessage(String... messages) {
+            this.messages.addAll(Arrays.asList(messages));
+        }
+
+        @Override
+        public void sendMessage(Object... messages) {
+            Arrays.stream(messages).map(String::valueOf).forEach(this.messages::add);
+        }
+    }
+
+}
@@ -0,0 +1,83 @@
+package org.whstsa.library.commands.getters;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.whstsa.library.World;
+import org.whstsa.library.api.BookType;
+import org.whstsa.library.api.DateUtils;
+import org.whstsa.library.api.books.IBook;
+import org.whstsa.library.api.impl.Book;
+import org.whstsa.library.api.impl.Person;
+import org.whstsa.library.api.impl.library.Library;
+import org.whstsa.library.api.library.ICheckout;
+import org.whstsa.library.api.library.IMember;
+import org.whstsa.library.commands.api.ICommandSender;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class GetHistoryCommandTest {
+
+    @Test
+    public void historyIsFoundForIDsThatAreNotLoaded() throws Exception {
+        long day = 17532;
+        Library library = new Library("History Command");
+        IBook book = new Book("History Command", "Author", BookType.GENERIC);
+        library.addBook(book, 1);
+        IMember member = library.addMember(new Person("History", "Command", false));
+        try {
+            World.setDate(DateUtils.toDate(day));
+            ICheckout checkout = library.reserveBook(member, book, 1);
+            World.setDate(DateUtils.toDate(day + 5));
+            member.checkIn(checkout);
+        } finally {
+            World.setDate(null);
+        }
+        // neither the library nor the book was ever loaded
+        library.removeMember(member);
+        Sender sender = new Sender();
+
+        JSONArray memberHistory = new GetHistoryCommand().handle(new String[]{member.getID().toString()}, sender).getJSONArray("history");
+        assertEquals(1, memberHistory.length());
+        JSONObject entry = memberHistory.getJSONObject(0);
+        assertEquals(book.getID().toString(), entry.get("book").toString());
+        assertEquals(DateUtils.toDayString(day), entry.getString("checkoutDate"));
+        assertEquals(DateUtils.toDayString(day + 5), entry.getString("returnDate"));
+
+        JSONArray bookHistory = new GetHistoryCommand().handle(new String[]{book.getID().toString()}, sender).getJSONArray("history");
+        assertEquals(1, bookHistory.length());
+        assertEquals(member.getID().toString(), bookHistory.getJSONObject(0).get("member").toString());
+        assertTrue(sender.messages.isEmpty());
+
+        UUID unknown = UUID.randomUUID();
+        assertEquals(0, new GetHistoryCommand().handle(new String[]{unknown.toString()}, sender).getJSONArray("history").length());
+        assertNull(new GetHistoryCommand().handle(new String[]{"not-a-uuid"}, sender));
+        assertEquals(Arrays.asList("Notice: No returns are recorded for " + unknown + ".", "Notice: not-a-uuid is an invalid UUID."), sender.messages);
+    }
+
+    private static class Sender implements ICommandSender {
+
+        private final List<String> messages = new ArrayList<>();
+
+        @Override
+        public Type getType() {
+            return Type.CONSOLE;
+        }
+
+        @Override
+        public void sendMessage(String... messages) {
+            this.messages.addAll(Arrays.asList(messages));
+        }
+
+        @Override
+        public void sendMessage(Object... messages) {
+            Arrays.stream(messages).map(String::valueOf).forEach(this.messages::add);
+        }
+    }
+
+}
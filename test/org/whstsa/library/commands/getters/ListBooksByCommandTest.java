@@ -0,0 +1,76 @@
+package org.whstsa.library.commands.getters;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.whstsa.library.api.BookType;
+import org.whstsa.library.api.impl.Book;
+import org.whstsa.library.commands.api.ICommandSender;
+import org.whstsa.library.db.Loader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ListBooksByCommandTest {
+
+    @Test
+    public void booksAreListedByAuthorAndGenre() {
+        Loader loader = Loader.getLoader();
+        Book first = new Book("First Listed", "Listed Author Name", BookType.GRAPHIC_NOVEL);
+        Book second = new Book("Second Listed", "Listed Author Name", BookType.CHILDRENS);
+        loader.loadBook(first);
+        loader.loadBook(second);
+        Sender sender = new Sender();
+        try {
+            JSONArray byAuthor = new ListBooksByAuthorCommand().handle(new String[]{"Listed", "Author", "Name"}, sender).getJSONArray("books");
+            assertEquals(2, byAuthor.length());
+
+            JSONArray byGenre = new ListBooksByGenreCommand().handle(new String[]{"Graphic", "Novel"}, sender).getJSONArray("books");
+            assertTrue(contains(byGenre, "First Listed"));
+            assertFalse(contains(byGenre, "Second Listed"));
+
+            JSONObject counts = new ListBooksByGenreCommand().handle(new String[0], sender);
+            assertTrue(counts.getInt("Graphic Novel") >= 1);
+            assertEquals(BookType.values().length, counts.length());
+
+            assertNull(new ListBooksByGenreCommand().handle(new String[]{"Poetry"}, sender));
+            assertEquals(Arrays.asList("Notice: Poetry is not a genre."), sender.messages);
+        } finally {
+            loader.unloadBook(first.getID());
+            loader.unloadBook(second.getID());
+        }
+    }
+
+    private static boolean contains(JSONArray books, String title) {
+        for (int i = 0; i < books.length(); i++) {
+            if (title.equals(books.getJSONObject(i).getString("title"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class Sender implements ICommandSender {
+
+        private final List<String> messages = new ArrayList<>();
+
+        @Override
+        public Type getType() {
+            return Type.CONSOLE;
+        }
+
+        @Override
+        public void sendMessage(String... messages) {
+            this.messages.addAll(Arrays.asList(messages));
+        }
+
+        @Override
+        public void sendMessage(Object... messages) {
+            Arrays.stream(messages).map(String::valueOf).forEach(this.messages::add);
+        }
+    }
+
+}
@@ -0,0 +1,238 @@
+package org.whstsa.library.db;
+
+import org.junit.Test;
+import org.whstsa.library.api.BookType;
+import org.whstsa.library.api.DateUtils;
+import org.whstsa.library.api.books.IBook;
+import org.whstsa.library.api.exceptions.LoadingException;
+import org.whstsa.library.api.impl.Book;
+import org.whstsa.library.api.impl.Person;
+import org.whstsa.library.api.impl.library.Checkout;
+import org.whstsa.library.api.impl.library.Library;
+import org.whstsa.library.api.library.ICheckout;
+import org.whstsa.library.api.library.ILibrary;
+import org.whstsa.library.api.library.IMember;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class BinarySnapshotTest {
+
+    private static final long DUE_DATE = 1522512538433L;
+    private static final long DUE_DAY = DateUtils.toEpochDay(DUE_DATE);
+    private static final long CHECKOUT_DAY = DUE_DAY - 7;
+
+    private final UUID bookID = UUID.randomUUID();
+    private final UUID personID = UUID.randomUUID();
+    private final UUID libraryID = UUID.randomUUID();
+    private final UUID memberID = UUID.randomUUID();
+    private final UUID activeID = UUID.randomUUID();
+    private final UUID returnedID = UUID.randomUUID();
+
+    @Test
+    public void readsSnapshot() throws Exception {
+        BinarySnapshot.read(ByteBuffer.wrap(this.writeSnapshot(BinarySnapshot.VERSION, BookType.MYSTERY.name())), Loader.getLoader());
+        this.assertLoaded(BookType.MYSTERY);
+    }
+
+    @Test
+    public void roundTripsSnapshot() throws Exception {
+        Loader loader = Loader.getLoader();
+        BinarySnapshot.read(ByteBuffer.wrap(this.writeSnapshot(BinarySnapshot.VERSION, BookType.MYSTERY.name())), loader);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinarySnapshot.write(loader, out);
+        BinarySnapshot.read(ByteBuffer.wrap(out.toByteArray()), loader);
+        this.assertLoaded(BookType.MYSTERY);
+    }
+
+    @Test
+    public void readsMembersLazily() throws Exception {
+        Loader loader = Loader.getLoader();
+        loader.setLazyLoading(true);
+        try {
+            BinarySnapshot.read(ByteBuffer.wrap(this.writeSnapshot(BinarySnapshot.VERSION, BookType.MYSTERY.name())), loader);
+        } finally {
+            loader.setLazyLoading(false);
+        }
+        assertNotNull(((Library) ObjectDelegate.getLibrary(this.libraryID)).getHydrator());
+
+        // the unbuilt member section is written back out and can be read eagerly
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinarySnapshot.write(loader, out);
+        assertNotNull(((Library) ObjectDelegate.getLibrary(this.libraryID)).getHydrator());
+        BinarySnapshot.read(ByteBuffer.wrap(out.toByteArray()), loader);
+        assertNull(((Library) ObjectDelegate.getLibrary(this.libraryID)).getHydrator());
+        this.assertLoaded(BookType.MYSTERY);
+    }
+
+    @Test
+    public void readsVersionOneSnapshotsAndReencodesTheirMembers() throws Exception {
+        Loader loader = Loader.getLoader();
+        loader.setLazyLoading(true);
+        try {
+            BinarySnapshot.read(ByteBuffer.wrap(this.writeSnapshot(1, BookType.MYSTERY.name())), loader);
+        } finally {
+            loader.setLazyLoading(false);
+        }
+        assertNotNull(((Library) ObjectDelegate.getLibrary(this.libraryID)).getHydrator());
+
+        // epoch milliseconds are not copied into a version 2 member section
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinarySnapshot.write(loader, out);
+        assertEquals(BinarySnapshot.VERSION, ByteBuffer.wrap(out.toByteArray(), BinarySnapshot.MAGIC.length, 4).getInt());
+        BinarySnapshot.read(ByteBuffer.wrap(out.toByteArray()), loader);
+        this.assertLoaded(BookType.MYSTERY, Checkout.UNKNOWN_DAY);
+    }
+
+    @Test
+    public void unknownBookTypesFallBackToGeneric() throws Exception {
+        BinarySnapshot.read(ByteBuffer.wrap(this.writeSnapshot(BinarySnapshot.VERSION, "NOT_A_TYPE")), Loader.getLoader());
+        this.assertLoaded(BookType.GENERIC);
+    }
+
+    @Test
+    public void readsBatchesOfRecordsInParallel() throws Exception {
+        Loader loader = Loader.getLoader();
+        List<IBook> books = new ArrayList<>();
+        List<Person> people = new ArrayList<>();
+        BookType[] types = BookType.values();
+        for (int i = 0; i < 2500; i++) {
+            IBook book = new Book("Batch " + i, "Author " + (i % 7), types[i % types.length]);
+            loader.loadBook(book);
+            books.add(book);
+        }
+        for (int i = 0; i < 1500; i++) {
+            Person person = new Person("Batch", String.valueOf(i), i % 2 == 0);
+            loader.loadPerson(person);
+            people.add(person);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinarySnapshot.write(loader, out);
+        books.forEach(book -> loader.unloadBook(book.getID()));
+        people.forEach(person -> loader.unloadPerson(person.getID()));
+        BinarySnapshot.read(ByteBuffer.wrap(out.toByteArray()), loader);
+
+        for (IBook book : books) {
+            IBook loaded = ObjectDelegate.getBook(book.getID());
+            assertNotSame(book, loaded);
+            assertEquals(book.getName(), loaded.getName());
+            assertEquals(book.getAuthorName(), loaded.getAuthorName());
+            assertEquals(book.getType(), loaded.getType());
+        }
+        for (Person person : people) {
+            assertEquals(person.getLastName(), ObjectDelegate.getPerson(person.getID()).getLastName());
+            assertEquals(person.isTeacher(), ObjectDelegate.getPerson(person.getID()).isTeacher());
+        }
+    }
+
+    @Test(expected = LoadingException.class)
+    public void rejectsNewerVersions() throws Exception {
+        BinarySnapshot.read(ByteBuffer.wrap(this.writeSnapshot(BinarySnapshot.VERSION + 1, BookType.MYSTERY.name())), Loader.getLoader());
+    }
+
+    @Test(expected = LoadingException.class)
+    public void rejectsTruncatedSnapshots() throws Exception {
+        byte[] bytes = this.writeSnapshot(BinarySnapshot.VERSION, BookType.MYSTERY.name());
+        BinarySnapshot.read(ByteBuffer.wrap(bytes, 0, bytes.length - 5).slice(), Loader.getLoader());
+    }
+
+    private void assertLoaded(BookType type) {
+        this.assertLoaded(type, CHECKOUT_DAY);
+    }
+
+    private void assertLoaded(BookType type, long checkoutDay) {
+        assertEquals("Snapshot Title", ObjectDelegate.getBook(this.bookID).getName());
+        assertEquals(type, ObjectDelegate.getBook(this.bookID).getType());
+        assertTrue(ObjectDelegate.getPerson(this.personID).isTeacher());
+
+        ILibrary library = ObjectDelegate.getLibrary(this.libraryID);
+        assertEquals("Snapshot Library", library.getName());
+        assertEquals(4, library.getQuantity(this.bookID));
+        assertEquals(1, library.getCheckedOutCount(this.bookID));
+
+        IMember member = library.getMemberMap().get(this.memberID);
+        assertSame(ObjectDelegate.getPerson(this.personID), member.getPerson());
+        List<ICheckout> checkouts = member.getCheckouts(true);
+        assertEquals(1, checkouts.size());
+        ICheckout checkout = checkouts.get(0);
+        assertEquals(this.activeID, checkout.getID());
+        assertEquals(DUE_DAY, checkout.getDueDay());
+        assertEquals(checkoutDay, checkout.getCheckoutDay());
+    }
+
+    /**
+     * Writes one book, person and library, with one member holding an active and a
+     * returned checkout, in the layout of the given version
+     */
+    private byte[] writeSnapshot(int version, String bookType) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.write(BinarySnapshot.MAGIC);
+        data.writeInt(version);
+
+        String[] strings = {"Snapshot Title", "Snapshot Author", bookType, "Ada", "Lovelace", "Snapshot Library"};
+        data.writeInt(strings.length);
+        for (String string : strings) {
+            byte[] encoded = string.getBytes(StandardCharsets.UTF_8);
+            data.writeInt(encoded.length);
+            data.write(encoded);
+        }
+
+        data.writeInt(1);
+        writeUUID(data, this.bookID);
+        data.writeInt(0);
+        data.writeInt(1);
+        data.writeInt(2);
+
+        data.writeInt(1);
+        writeUUID(data, this.personID);
+        data.writeInt(3);
+        data.writeInt(4);
+        data.writeBoolean(true);
+
+        data.writeInt(1);
+        writeUUID(data, this.libraryID);
+        data.writeInt(5);
+        data.writeInt(1);
+        writeUUID(data, this.bookID);
+        data.writeInt(1);
+        writeUUID(data, this.bookID);
+        data.writeInt(4);
+
+        data.writeInt(1);
+        writeUUID(data, this.memberID);
+        writeUUID(data, this.personID);
+        data.writeInt(2);
+        this.writeCheckout(data, version, this.activeID, false);
+        this.writeCheckout(data, version, this.returnedID, true);
+
+        data.flush();
+        return bytes.toByteArray();
+    }
+
+    private void writeCheckout(DataOutputStream data, int version, UUID checkoutID, boolean returned) throws IOException {
+        writeUUID(data, checkoutID);
+        writeUUID(data, this.bookID);
+        data.writeLong(version == 1 ? DUE_DATE : DUE_DAY);
+        if (version > 2) {
+            data.writeLong(CHECKOUT_DAY);
+        }
+        data.writeBoolean(returned);
+    }
+
+    private static void writeUUID(DataOutputStream data, UUID uuid) throws IOException {
+        data.writeLong(uuid.getMostSignificantBits());
+        data.writeLong(uuid.getLeastSignificantBits());
+    }
+
+}
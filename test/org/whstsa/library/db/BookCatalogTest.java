@@ -0,0 +1,107 @@
+package org.whstsa.library.db;
+
+import org.json.JSONObject;
+import org.junit.Test;
+import org.whstsa.library.api.BookType;
+import org.whstsa.library.api.books.IBook;
+import org.whstsa.library.api.impl.Book;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class BookCatalogTest {
+
+    @Test
+    public void rowsKeepTheirValuesAcrossGrowth() {
+        BookCatalog catalog = new BookCatalog();
+        CatalogBook first = catalog.add("Title 0", "Author", BookType.FICTION, UUID.randomUUID());
+        for (int i = 1; i < 3000; i++) {
+            catalog.add("Title " + i, "Author", i % 2 == 0 ? BookType.FICTION : BookType.HORROR, UUID.randomUUID());
+        }
+
+        assertEquals(3000, catalog.size());
+        assertEquals("Title 0", first.getName());
+        assertEquals("Author", first.getAuthorName());
+        assertEquals(BookType.FICTION, first.getType());
+        assertEquals(3000, catalog.findByAuthor("Author").size());
+        assertEquals(1500, catalog.findByType(BookType.HORROR).size());
+    }
+
+    @Test
+    public void scansSkipRemovedRowsAndIncludeLooseBooks() {
+        BookCatalog catalog = new BookCatalog();
+        CatalogBook kept = catalog.add("Kept", "Shared Author", BookType.MYSTERY, UUID.randomUUID());
+        CatalogBook removed = catalog.add("Removed", "Shared Author", BookType.MYSTERY, UUID.randomUUID());
+        Book loose = new Book("Loose", "Shared Author", BookType.MYSTERY);
+        catalog.addLoose(loose);
+        catalog.remove(removed);
+
+        assertEquals(2, catalog.size());
+        assertEquals(Arrays.asList(kept, loose), catalog.findByAuthor("Shared Author"));
+        assertEquals(Arrays.asList(kept, loose), catalog.findByType(BookType.MYSTERY));
+        assertEquals("Removed", removed.getName());
+
+        int[] counts = catalog.countTypes();
+        assertEquals(2, counts[BookType.MYSTERY.ordinal()]);
+        assertEquals(0, counts[BookType.GENERIC.ordinal()]);
+
+        catalog.remove(loose);
+        assertEquals(1, catalog.size());
+        assertEquals(1, catalog.countTypes()[BookType.MYSTERY.ordinal()]);
+    }
+
+    @Test
+    public void flyweightSettersWriteTheColumns() {
+        BookCatalog catalog = new BookCatalog();
+        CatalogBook book = catalog.add("Before", "Old Author", BookType.GENERIC, UUID.randomUUID());
+
+        book.setTitle("After");
+        book.setAuthor("New Author");
+        book.setType(BookType.FANTASY);
+
+        assertEquals("After", book.getName());
+        assertEquals("New Author", book.getAuthorName());
+        assertEquals(BookType.FANTASY, book.getType());
+        assertTrue(catalog.findByAuthor("Old Author").isEmpty());
+        assertEquals(1, catalog.findByType(BookType.FANTASY).size());
+
+        JSONObject json = book.toJSON();
+        assertEquals("After", json.getString("title"));
+        assertEquals("New Author", json.getString("authorName"));
+        assertEquals("FANTASY", json.getString("bookType"));
+    }
+
+    @Test
+    public void loaderBuildsCatalogRowsWhenEnabled() throws Exception {
+        Loader loader = Loader.getLoader();
+        UUID uuid = UUID.randomUUID();
+        Book loose = new Book("Loose Catalog Book", "Catalog Test Author", BookType.BIOGRAPHY);
+        loader.setColumnarCatalog(true);
+        try {
+            JSONObject raw = new JSONObject();
+            raw.put("title", "Catalog Book");
+            raw.put("authorName", "Catalog Test Author");
+            raw.put("bookType", "BIOGRAPHY");
+            raw.put("uuid", uuid.toString());
+            IBook book = loader.loadBook(raw);
+            loader.loadBook(loose);
+
+            assertTrue(book instanceof CatalogBook);
+            List<IBook> books = loader.getCatalog().findByAuthor("Catalog Test Author");
+            assertEquals(Arrays.asList(book, loose), books);
+            assertEquals(2, ObjectDelegate.countBookTypes()[BookType.BIOGRAPHY.ordinal()]);
+
+            loader.unloadBook(uuid);
+            assertEquals(1, loader.getCatalog().size());
+        } finally {
+            loader.unloadBook(uuid);
+            loader.unloadBook(loose.getID());
+            loader.setColumnarCatalog(false);
+        }
+        assertNull(loader.getCatalog());
+    }
+
+}
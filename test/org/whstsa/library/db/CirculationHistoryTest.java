@@ -0,0 +1,132 @@
+package org.whstsa.library.db;
+
+import org.junit.After;
+import org.junit.Test;
+import org.whstsa.library.World;
+import org.whstsa.library.api.BookType;
+import org.whstsa.library.api.DateUtils;
+import org.whstsa.library.api.books.IBook;
+import org.whstsa.library.api.impl.Book;
+import org.whstsa.library.api.impl.Person;
+import org.whstsa.library.api.impl.library.Checkout;
+import org.whstsa.library.api.impl.library.Library;
+import org.whstsa.library.api.library.ICheckout;
+import org.whstsa.library.api.library.IMember;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class CirculationHistoryTest {
+
+    private static final long DAY = 17532;
+
+    @After
+    public void resetDate() {
+        World.setDate(null);
+    }
+
+    @Test
+    public void returnsAreRecordedPerMemberAndBook() throws Exception {
+        Library library = new Library("History");
+        IBook book = new Book("Recorded", "Author", BookType.GENERIC);
+        library.addBook(book, 2);
+        IMember first = library.addMember(new Person("First", "Borrower", false));
+        IMember second = library.addMember(new Person("Second", "Borrower", false));
+
+        setDay(DAY);
+        ICheckout firstCheckout = library.reserveBook(first, book, 1);
+        setDay(DAY + 2);
+        ICheckout secondCheckout = library.reserveBook(second, book, 1);
+        first.checkIn(firstCheckout);
+        setDay(DAY + 4);
+        second.checkIn(secondCheckout);
+
+        // returned checkouts leave the live model
+        assertTrue(first.getCheckouts(true).isEmpty());
+        assertTrue(firstCheckout.isReturned());
+
+        List<CirculationRecord> firstHistory = CirculationHistory.getHistory().getMemberHistory(first.getID());
+        assertEquals(1, firstHistory.size());
+        assertEquals(book.getID(), firstHistory.get(0).getBookID());
+        assertEquals(DAY, firstHistory.get(0).getCheckoutDay());
+        assertEquals(DAY + 2, firstHistory.get(0).getReturnDay());
+
+        List<CirculationRecord> bookHistory = CirculationHistory.getHistory().getBookHistory(book.getID());
+        assertEquals(2, bookHistory.size());
+        assertEquals(first.getID(), bookHistory.get(0).getMemberID());
+        assertEquals(second.getID(), bookHistory.get(1).getMemberID());
+        assertEquals(DAY + 4, bookHistory.get(1).getReturnDay());
+        assertTrue(CirculationHistory.getHistory().getMemberHistory(UUID.randomUUID()).isEmpty());
+    }
+
+    @Test
+    public void replayedReturnsAreNotRecordedAgain() throws Exception {
+        Library library = new Library("Replayed History");
+        IBook book = new Book("Replayed", "Author", BookType.GENERIC);
+        library.addBook(book, 1);
+        IMember member = library.addMember(new Person("Replayed", "Borrower", false));
+        Checkout checkout = (Checkout) library.reserveBook(member, book, 1);
+
+        checkout.impl_replayReturn();
+        assertTrue(checkout.isReturned());
+        assertEquals(0, library.getCheckedOutCount(book.getID()));
+        assertTrue(CirculationHistory.getHistory().getMemberHistory(member.getID()).isEmpty());
+    }
+
+    @Test
+    public void unknownCheckoutDaysStayUnknown() throws Exception {
+        Library library = new Library("Unknown Days");
+        IBook book = new Book("Unknown", "Author", BookType.GENERIC);
+        IMember member = library.addMember(new Person("Unknown", "Borrower", false));
+        Checkout checkout = new Checkout(member, book, UUID.randomUUID(), DAY, Checkout.UNKNOWN_DAY);
+
+        assertFalse(checkout.toJSON().has("checkoutDate"));
+        assertEquals(DateUtils.toDayString(DAY), checkout.toJSON().getString("dueDate"));
+
+        setDay(DAY);
+        checkout.checkIn();
+        assertEquals(Checkout.UNKNOWN_DAY, CirculationHistory.getHistory().getMemberHistory(member.getID()).get(0).getCheckoutDay());
+    }
+
+    @Test
+    public void committedRecordsSurviveReattaching() throws Exception {
+        File file = File.createTempFile("library", CirculationHistory.HISTORY_SUFFIX);
+        file.deleteOnExit();
+        CirculationHistory history = CirculationHistory.getHistory();
+        history.attach(file);
+        assertEquals(0, history.size());
+
+        Library library = new Library("Attached History");
+        IBook book = new Book("Attached", "Author", BookType.GENERIC);
+        library.addBook(book, 1);
+        IMember member = library.addMember(new Person("Attached", "Borrower", false));
+        setDay(DAY);
+        ICheckout checkout = library.reserveBook(member, book, 1);
+        setDay(DAY + 3);
+        member.checkIn(checkout);
+        history.commit();
+        assertEquals(40, file.length());
+
+        // a partially written record is discarded
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[]{1, 2, 3, 4, 5});
+        }
+        history.attach(file);
+        assertEquals(1, history.size());
+        assertEquals(40, file.length());
+        List<CirculationRecord> records = history.getBookHistory(book.getID());
+        assertEquals(1, records.size());
+        assertEquals(member.getID(), records.get(0).getMemberID());
+        assertEquals(DAY, records.get(0).getCheckoutDay());
+        assertEquals(DAY + 3, records.get(0).getReturnDay());
+    }
+
+    private static void setDay(long day) {
+        World.setDate(DateUtils.toDate(day));
+    }
+
+}
@@ -0,0 +1,79 @@
+package org.whstsa.library.db;
+
+import org.junit.Test;
+import org.whstsa.library.api.impl.Person;
+import org.whstsa.library.api.impl.library.Library;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class DenseIDMapTest {
+
+    @Test
+    public void idsAreDenseAndStable() {
+        DenseIDMap map = new DenseIDMap();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+
+        assertEquals(-1, map.get(first));
+        assertEquals(0, map.intern(first));
+        assertEquals(1, map.intern(second));
+        assertEquals(0, map.intern(first));
+        assertEquals(0, map.get(first));
+        assertEquals(1, map.get(second));
+    }
+
+    @Test
+    public void concurrentInterningHandsOutEveryIDOnce() throws Exception {
+        DenseIDMap map = new DenseIDMap();
+        List<UUID> uuids = new ArrayList<>();
+        for (int i = 0; i < 4000; i++) {
+            uuids.add(UUID.randomUUID());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                List<UUID> shuffled = new ArrayList<>(uuids);
+                Collections.shuffle(shuffled, new Random(thread));
+                futures.add(executor.submit(() -> shuffled.forEach(map::intern)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Set<Integer> ids = new HashSet<>();
+        for (UUID uuid : uuids) {
+            int id = map.get(uuid);
+            assertTrue(id >= 0 && id < uuids.size());
+            ids.add(id);
+        }
+        assertEquals(uuids.size(), ids.size());
+    }
+
+    @Test
+    public void loadedObjectsAreAssignedIDs() {
+        Loader loader = Loader.getLoader();
+        Library library = new Library("Dense IDs");
+        Person person = new Person("Dense", "Member", false);
+        loader.loadLibrary(library);
+        loader.loadPerson(person);
+        UUID memberID = library.addMember(person).getID();
+        UUID checkoutID = UUID.randomUUID();
+
+        assertTrue(loader.getDenseID(library.getID()) >= 0);
+        assertTrue(loader.getDenseID(memberID) >= 0);
+        assertEquals(-1, loader.getDenseID(checkoutID));
+        int id = loader.internID(checkoutID);
+        assertEquals(id, loader.getDenseID(checkoutID));
+        assertEquals(id, loader.internID(checkoutID));
+    }
+
+}
@@ -0,0 +1,191 @@
+package org.whstsa.library.db;
+
+import org.json.JSONObject;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.whstsa.library.api.BookType;
+import org.whstsa.library.api.books.IBook;
+import org.whstsa.library.api.impl.Book;
+import org.whstsa.library.api.impl.Person;
+import org.whstsa.library.api.impl.library.Library;
+import org.whstsa.library.api.library.ICheckout;
+import org.whstsa.library.api.library.ILibrary;
+import org.whstsa.library.api.library.IMember;
+
+import java.io.File;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class JournalTest {
+
+    private static File journalFile;
+
+    @BeforeClass
+    public static void attach() throws Exception {
+        File dataFile = File.createTempFile("journal-test", ".json");
+        dataFile.deleteOnExit();
+        journalFile = Journal.getJournalFile(dataFile);
+        journalFile.deleteOnExit();
+        Journal.getJournal().attach(new IOFileDelegate(dataFile), journalFile, 0);
+    }
+
+    @Test
+    public void commitWritesEveryConcurrentEntryOnce() throws Exception {
+        Journal journal = Journal.getJournal();
+        journal.commit();
+        int start = readLines().size();
+
+        ILibrary library = new Library("Group Commit");
+        int threads = 8;
+        int entries = 500;
+        CountDownLatch ready = new CountDownLatch(1);
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            UUID bookID = new UUID(t, 0);
+            Thread writer = new Thread(() -> {
+                try {
+                    ready.await();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                for (int i = 0; i < entries; i++) {
+                    journal.recordQuantity(library, bookID, i);
+                    if (i % 100 == 0) {
+                        try {
+                            journal.commit();
+                        } catch (Exception ex) {
+                            throw new RuntimeException(ex);
+                        }
+                    }
+                }
+            });
+            writer.start();
+            writers.add(writer);
+        }
+        ready.countDown();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        journal.commit();
+
+        List<String> lines = readLines();
+        Set<String> seen = new HashSet<>();
+        for (String line : lines.subList(start, lines.size())) {
+            JSONObject entry = new JSONObject(line);
+            if (entry.getString("op").equals("quantity") && entry.getString("library").equals(library.getID().toString())) {
+                assertTrue("entry written twice: " + line, seen.add(entry.getString("book") + "/" + entry.getInt("quantity")));
+            }
+        }
+        assertEquals(threads * entries, seen.size());
+    }
+
+    @Test
+    public void replayRebuildsUnloadedState() throws Exception {
+        Journal journal = Journal.getJournal();
+        Loader loader = Loader.getLoader();
+        journal.commit();
+        int start = readLines().size();
+
+        Person person = new Person("Journal", "Reader", false);
+        loader.loadPerson(person);
+        IBook book = new Book("Journal Replay", "Test Author", BookType.FANTASY);
+        loader.loadBook(book);
+        Library library = new Library("Replay Library");
+        loader.loadLibrary(library);
+        library.addBook(book, 3);
+        IMember member = library.addMember(person);
+        ICheckout returned = library.reserveBook(member, book, 1);
+        member.returnCheckout(returned);
+        ICheckout active = library.reserveBook(member, book, 1);
+        journal.commit();
+
+        List<String> lines = readLines();
+        StringBuilder text = new StringBuilder();
+        lines.subList(start, lines.size()).forEach(line -> text.append(line).append('\n'));
+
+        loader.unloadLibrary(library.getID());
+        loader.unloadBook(book.getID());
+        loader.unloadPerson(person.getID());
+        assertNull(ObjectDelegate.getLibrary(library.getID()));
+
+        assertEquals(lines.size() - start, loader.replay(new StringReader(text.toString())));
+        assertReplayed(library.getID(), member.getID(), book.getID(), active.getID());
+
+        // replaying entries that are already applied, and a torn last entry, changes nothing
+        text.append("{\"op\":\"checkout\",\"libr");
+        assertEquals(lines.size() - start, loader.replay(new StringReader(text.toString())));
+        assertReplayed(library.getID(), member.getID(), book.getID(), active.getID());
+    }
+
+    @Test
+    public void unchangedTeacherFlagIsNotJournaled() throws Exception {
+        Journal journal = Journal.getJournal();
+        Person person = new Person("Steady", "Teacher", true);
+        journal.commit();
+        int start = readLines().size();
+
+        person.setTeacher(true);
+        journal.commit();
+        assertEquals(start, readLines().size());
+
+        person.setTeacher(false);
+        journal.commit();
+        List<String> lines = readLines();
+        assertEquals(start + 1, lines.size());
+        JSONObject entry = new JSONObject(lines.get(start));
+        assertEquals("person", entry.getString("op"));
+        assertFalse(entry.getJSONObject("person").getBoolean("teacher"));
+    }
+
+    @Test
+    public void defaultQuantityIsJournaled() throws Exception {
+        Journal journal = Journal.getJournal();
+        Library library = new Library("Default Quantity");
+        IBook book = new Book("Unstocked", "Test Author", BookType.GENERIC);
+        library.impl_setBookList(Collections.singletonList(book));
+        IMember member = library.addMember(new Person("Default", "Reader", false));
+        journal.commit();
+        int start = readLines().size();
+
+        library.reserveBook(member, book, 1);
+        journal.commit();
+
+        assertEquals(5, library.getQuantity(book.getID()));
+        List<String> lines = readLines();
+        JSONObject quantity = null;
+        for (String line : lines.subList(start, lines.size())) {
+            JSONObject entry = new JSONObject(line);
+            if (entry.getString("op").equals("quantity") && entry.getString("library").equals(library.getID().toString())) {
+                assertNull("quantity journaled twice", quantity);
+                quantity = entry;
+            }
+        }
+        assertNotNull(quantity);
+        assertEquals(book.getID().toString(), quantity.getString("book"));
+        assertEquals(5, quantity.getInt("quantity"));
+    }
+
+    private static void assertReplayed(UUID libraryID, UUID memberID, UUID bookID, UUID checkoutID) {
+        ILibrary library = ObjectDelegate.getLibrary(libraryID);
+        assertNotNull(library);
+        assertEquals("Replay Library", library.getName());
+        assertEquals(3, library.getQuantity(bookID));
+        assertEquals(1, library.getMembers().size());
+        IMember member = library.getMemberMap().get(memberID);
+        assertNotNull(member);
+        List<ICheckout> checkouts = member.getCheckouts(true);
+        assertEquals(1, checkouts.size());
+        assertEquals(checkoutID, checkouts.get(0).getID());
+        assertEquals(1, library.getCheckedOutCount(bookID));
+    }
+
+    private static List<String> readLines() throws Exception {
+        return Files.readAllLines(journalFile.toPath(), StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,331 @@
+package org.whstsa.library.db;
+
+import org.json.JSONArray;
+import org.json.JSONTokener;
+import org.junit.Test;
+import org.whstsa.library.api.BookType;
+import org.whstsa.library.api.exceptions.HydrationException;
+import org.whstsa.library.api.exceptions.LoadingException;
+import org.whstsa.library.api.books.IBook;
+import org.whstsa.library.api.impl.Book;
+import org.whstsa.library.api.impl.Person;
+import org.whstsa.library.api.impl.library.Library;
+import org.whstsa.library.api.library.ICheckout;
+import org.whstsa.library.api.library.ILibrary;
+import org.whstsa.library.api.library.IMember;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class LoaderTest {
+
+    @Test
+    public void librariesBeforeTheirBooksAndPeopleAreHeldBack() throws Exception {
+        UUID bookID = UUID.randomUUID();
+        UUID personID = UUID.randomUUID();
+        UUID memberID = UUID.randomUUID();
+        UUID libraryID = UUID.randomUUID();
+        String json = "{"
+                + "\"libraries\":[{\"books\":[\"" + bookID + "\"],"
+                + "\"members\":[{\"checkouts\":{},\"personID\":\"" + personID + "\",\"uuid\":\"" + memberID + "\"}],"
+                + "\"name\":\"Streamed\",\"quantities\":{\"" + bookID + "\":3},\"uuid\":\"" + libraryID + "\"}],"
+                + "\"books\":[{\"authorName\":\"Author\",\"title\":\"Title\",\"uuid\":\"" + bookID + "\",\"bookType\":\"FICTION\"}],"
+                + "\"people\":[{\"firstName\":\"First\",\"lastName\":\"Last\",\"teacher\":true,\"uuid\":\"" + personID + "\"}]"
+                + "}";
+
+        Loader.getLoader().load(new StringReader(json));
+
+        IBook book = ObjectDelegate.getBook(bookID);
+        assertNotNull(book);
+        assertEquals("Title", book.getName());
+        assertEquals(BookType.FICTION, book.getType());
+        assertTrue(ObjectDelegate.getPerson(personID).isTeacher());
+
+        ILibrary library = ObjectDelegate.getLibrary(libraryID);
+        assertNotNull(library);
+        assertEquals("Streamed", library.getName());
+        assertEquals(1, library.getBooks().size());
+        assertSame(book, library.getBooks().get(0));
+        assertEquals(3, library.getQuantity(bookID));
+        IMember member = library.getMemberMap().get(memberID);
+        assertNotNull(member);
+        assertSame(ObjectDelegate.getPerson(personID), member.getPerson());
+    }
+
+    @Test
+    public void danglingBookIDsAreSkipped() throws Exception {
+        UUID bookID = UUID.randomUUID();
+        UUID missingID = UUID.randomUUID();
+        UUID libraryID = UUID.randomUUID();
+        String json = "{"
+                + "\"books\":[{\"authorName\":\"Author\",\"title\":\"Kept\",\"uuid\":\"" + bookID + "\",\"bookType\":\"GENERIC\"}],"
+                + "\"libraries\":[{\"books\":[\"" + missingID + "\",\"" + bookID + "\"],\"members\":[],"
+                + "\"name\":\"Dangling\",\"quantities\":{},\"uuid\":\"" + libraryID + "\"}]"
+                + "}";
+
+        Loader.getLoader().load(new StringReader(json));
+
+        ILibrary library = ObjectDelegate.getLibrary(libraryID);
+        assertEquals(1, library.getBooks().size());
+        assertSame(ObjectDelegate.getBook(bookID), library.getBooks().get(0));
+        assertEquals(1, library.getTitleCount(BookType.GENERIC));
+    }
+
+    @Test
+    public void unknownKeysAndNonArraySectionsAreSkipped() throws Exception {
+        UUID bookID = UUID.randomUUID();
+        String json = "{\"version\":{\"nested\":[1,2,{\"books\":[]}]},"
+                + "\"people\":\"none\","
+                + "\"books\":[{\"authorName\":\"A\",\"title\":\"Skipped Around\",\"uuid\":\"" + bookID + "\",\"bookType\":\"UNKNOWN_TYPE\"}],"
+                + "\"libraries\":null}";
+
+        Loader.getLoader().load(new StringReader(json));
+
+        IBook book = ObjectDelegate.getBook(bookID);
+        assertNotNull(book);
+        assertEquals("Skipped Around", book.getName());
+        assertEquals(BookType.GENERIC, book.getType());
+    }
+
+    @Test(expected = LoadingException.class)
+    public void inputThatIsNotAnObjectIsRejected() throws Exception {
+        Loader.getLoader().load(new StringReader("[]"));
+    }
+
+    @Test(expected = LoadingException.class)
+    public void missingSeparatorIsRejected() throws Exception {
+        Loader.getLoader().load(new StringReader("{\"books\":[] \"people\":[]}"));
+    }
+
+    @Test(expected = LoadingException.class)
+    public void badRecordFailsTheLoad() throws Exception {
+        Loader.getLoader().load(new StringReader("{\"books\":[{\"authorName\":\"A\",\"title\":\"T\",\"uuid\":\"not-a-uuid\",\"bookType\":\"GENERIC\"}]}"));
+    }
+
+    @Test
+    public void savedDatabaseStreamsBackIn() throws Exception {
+        Loader loader = Loader.getLoader();
+        IBook book = new Book("Round \"Trip\"", "Writer", BookType.MYSTERY);
+        Person person = new Person("Saved", "Person", false);
+        Library library = new Library("Saved Library");
+        loader.loadBook(book);
+        loader.loadPerson(person);
+        loader.loadLibrary(library);
+        library.addBook(book, 4);
+        IMember member = library.addMember(person);
+        ICheckout checkout = library.reserveBook(member, book, 1);
+
+        StringWriter writer = new StringWriter();
+        loader.writeJSON(writer);
+        loader.unloadLibrary(library.getID());
+        loader.unloadBook(book.getID());
+        loader.unloadPerson(person.getID());
+        loader.load(new StringReader(writer.toString()));
+
+        IBook loadedBook = ObjectDelegate.getBook(book.getID());
+        assertNotSame(book, loadedBook);
+        assertEquals("Round \"Trip\"", loadedBook.getName());
+        assertEquals(BookType.MYSTERY, loadedBook.getType());
+        assertFalse(ObjectDelegate.getPerson(person.getID()).isTeacher());
+
+        ILibrary loadedLibrary = ObjectDelegate.getLibrary(library.getID());
+        assertEquals("Saved Library", loadedLibrary.getName());
+        assertEquals(4, loadedLibrary.getQuantity(book.getID()));
+        IMember loadedMember = loadedLibrary.getMemberMap().get(member.getID());
+        assertSame(ObjectDelegate.getPerson(person.getID()), loadedMember.getPerson());
+        List<ICheckout> checkouts = loadedMember.getCheckouts();
+        assertEquals(1, checkouts.size());
+        assertEquals(checkout.getID(), checkouts.get(0).getID());
+        assertSame(loadedBook, checkouts.get(0).getBook());
+        assertFalse(checkouts.get(0).isReturned());
+    }
+
+    @Test
+    public void manyRecordsLoadInParallel() throws Exception {
+        int bookCount = 3000;
+        int personCount = 1000;
+        int libraryCount = 20;
+        List<UUID> bookIDs = new ArrayList<>();
+        List<UUID> personIDs = new ArrayList<>();
+        List<UUID> libraryIDs = new ArrayList<>();
+        StringBuilder json = new StringBuilder("{\"libraries\":[");
+        for (int i = 0; i < bookCount; i++) {
+            bookIDs.add(UUID.randomUUID());
+        }
+        for (int i = 0; i < personCount; i++) {
+            personIDs.add(UUID.randomUUID());
+        }
+        for (int l = 0; l < libraryCount; l++) {
+            UUID libraryID = UUID.randomUUID();
+            libraryIDs.add(libraryID);
+            json.append(l == 0 ? "" : ",").append("{\"books\":[");
+            for (int i = 0; i < bookCount; i += libraryCount) {
+                json.append(i == 0 ? "" : ",").append('"').append(bookIDs.get(i + l)).append('"');
+            }
+            json.append("],\"members\":[");
+            for (int i = 0; i < personCount; i += libraryCount) {
+                json.append(i == 0 ? "" : ",").append("{\"checkouts\":{},\"personID\":\"").append(personIDs.get(i + l))
+                        .append("\",\"uuid\":\"").append(UUID.randomUUID()).append("\"}");
+            }
+            json.append("],\"name\":\"Parallel ").append(l).append("\",\"quantities\":{},\"uuid\":\"").append(libraryID).append("\"}");
+        }
+        json.append("],\"books\":[");
+        for (int i = 0; i < bookCount; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"authorName\":\"Author\",\"title\":\"Book ").append(i)
+                    .append("\",\"uuid\":\"").append(bookIDs.get(i)).append("\",\"bookType\":\"GENERIC\"}");
+        }
+        json.append("],\"people\":[");
+        for (int i = 0; i < personCount; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"firstName\":\"First\",\"lastName\":\"").append(i)
+                    .append("\",\"teacher\":false,\"uuid\":\"").append(personIDs.get(i)).append("\"}");
+        }
+        json.append("]}");
+
+        Loader.getLoader().load(new StringReader(json.toString()));
+
+        for (int i = 0; i < bookCount; i++) {
+            assertEquals("Book " + i, ObjectDelegate.getBook(bookIDs.get(i)).getName());
+        }
+        for (int i = 0; i < personCount; i++) {
+            assertEquals(String.valueOf(i), ObjectDelegate.getPerson(personIDs.get(i)).getLastName());
+        }
+        for (int l = 0; l < libraryCount; l++) {
+            ILibrary library = ObjectDelegate.getLibrary(libraryIDs.get(l));
+            assertEquals("Parallel " + l, library.getName());
+            assertEquals(bookCount / libraryCount, library.getBooks().size());
+            assertFalse(library.getBooks().contains(null));
+            assertEquals(personCount / libraryCount, library.getMembers().size());
+            for (IMember member : library.getMembers()) {
+                assertSame(ObjectDelegate.getPerson(member.getPerson().getID()), member.getPerson());
+            }
+        }
+    }
+
+    @Test
+    public void rawMembersKeepTheirTextAndIDs() throws Exception {
+        String members = "[{\"checkouts\":{\"b\":[{\"uuid\":\"nested\",\"note\":\"say \\\"uuid\\\": [x]\"}]},"
+                + "\"personID\":\"p1\",\"tags\":[[\"uuid\"],{\"personID\":\"deep\"}],\"uuid\":\"m1\"},"
+                + " {\"uuid\":\"m2\", \"personID\":\"p\\\\2\"}]";
+        JSONTokener tokener = new JSONTokener(members + ",\"after\"");
+
+        Loader.RawMembers rawMembers = Loader.readRawMembers(tokener);
+
+        assertEquals(members, rawMembers.text);
+        assertTrue(new JSONArray(members).similar(new JSONArray(rawMembers.toJSONString())));
+        assertEquals(2, rawMembers.ids.size());
+        assertArrayEquals(new String[]{"m1", "p1"}, rawMembers.ids.get(0));
+        assertArrayEquals(new String[]{"m2", "p\\2"}, rawMembers.ids.get(1));
+        assertEquals(',', tokener.nextClean());
+        assertEquals("after", tokener.nextValue());
+    }
+
+    @Test
+    public void emptyRawMembersHaveNoIDs() throws Exception {
+        Loader.RawMembers rawMembers = Loader.readRawMembers(new JSONTokener(" [ ] "));
+        assertEquals("[ ]", rawMembers.text);
+        assertTrue(rawMembers.ids.isEmpty());
+    }
+
+    @Test
+    public void rawMembersLeaveOtherValuesUnread() throws Exception {
+        JSONTokener tokener = new JSONTokener("{\"uuid\":\"x\"}");
+        assertNull(Loader.readRawMembers(tokener));
+        assertEquals('{', tokener.nextClean());
+    }
+
+    @Test(expected = LoadingException.class)
+    public void unterminatedRawMembersAreRejected() throws Exception {
+        Loader.readRawMembers(new JSONTokener("[{\"uuid\":\"m1\"}"));
+    }
+
+    @Test
+    public void lazyLibrariesHydrateOnFirstAccess() throws Exception {
+        UUID bookID = UUID.randomUUID();
+        UUID personID = UUID.randomUUID();
+        UUID memberID = UUID.randomUUID();
+        UUID checkoutID = UUID.randomUUID();
+        UUID libraryID = UUID.randomUUID();
+        String members = "[{\"checkouts\":{\"" + bookID + "\":[{\"dueDate\":\"2018-03-31T12:08:58.433-04\",\"returned\":false,"
+                + "\"uuid\":\"" + checkoutID + "\",\"bookID\":\"" + bookID + "\"}]},"
+                + "\"personID\":\"" + personID + "\",\"uuid\":\"" + memberID + "\"}]";
+        Loader loader = Loader.getLoader();
+        loader.setLazyLoading(true);
+        try {
+            loader.load(new StringReader(this.libraryJSON(bookID, personID, libraryID, members)));
+        } finally {
+            loader.setLazyLoading(false);
+        }
+
+        Library library = (Library) ObjectDelegate.getLibrary(libraryID);
+        assertNotNull(library.getHydrator());
+        assertEquals(2, library.getQuantity(bookID));
+
+        // saving before hydration writes the members back exactly as they were read
+        StringWriter writer = new StringWriter();
+        loader.writeJSON(writer);
+        assertTrue(writer.toString().contains(members));
+
+        IMember member = library.getMemberMap().get(memberID);
+        assertNull(library.getHydrator());
+        assertSame(ObjectDelegate.getPerson(personID), member.getPerson());
+        List<ICheckout> checkouts = member.getCheckouts(true);
+        assertEquals(1, checkouts.size());
+        assertEquals(checkoutID, checkouts.get(0).getID());
+    }
+
+    @Test
+    public void failedHydrationKeepsTheMembersAndRefusesToSave() throws Exception {
+        UUID bookID = UUID.randomUUID();
+        UUID personID = UUID.randomUUID();
+        UUID libraryID = UUID.randomUUID();
+        String members = "[{\"personID\":\"" + personID + "\",,\"uuid\":\"broken\"}]";
+        Loader loader = Loader.getLoader();
+        loader.setLazyLoading(true);
+        try {
+            loader.load(new StringReader(this.libraryJSON(bookID, personID, libraryID, members)));
+        } finally {
+            loader.setLazyLoading(false);
+        }
+        Library library = (Library) ObjectDelegate.getLibrary(libraryID);
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            try {
+                library.getMembers();
+                fail("hydration should fail");
+            } catch (HydrationException ex) {
+                assertSame(library, ex.getLibrary());
+            }
+            assertNotNull(library.getHydrator());
+        }
+
+        File file = File.createTempFile("loader-test", ".json");
+        file.deleteOnExit();
+        Files.write(file.toPath(), "{}".getBytes(StandardCharsets.UTF_8));
+        IOFileDelegate delegate = new IOFileDelegate(file);
+        try {
+            delegate.save(loader);
+            fail("saving a library that failed to hydrate should be refused");
+        } catch (IOException ex) {
+            assertTrue(ex.getCause() instanceof HydrationException);
+        } finally {
+            loader.unloadLibrary(libraryID);
+        }
+        assertEquals("{}", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+    }
+
+    private String libraryJSON(UUID bookID, UUID personID, UUID libraryID, String members) {
+        return "{\"books\":[{\"authorName\":\"Lazy\",\"title\":\"Lazy Book\",\"uuid\":\"" + bookID + "\",\"bookType\":\"GENERIC\"}],"
+                + "\"people\":[{\"firstName\":\"Lazy\",\"lastName\":\"Reader\",\"teacher\":false,\"uuid\":\"" + personID + "\"}],"
+                + "\"libraries\":[{\"books\":[\"" + bookID + "\"],\"members\":" + members + ","
+                + "\"name\":\"Lazy Library\",\"quantities\":{\"" + bookID + "\":2},\"uuid\":\"" + libraryID + "\"}]}";
+    }
+}
@@ -0,0 +1,182 @@
+package org.whstsa.library.db;
+
+import org.junit.Test;
+import org.whstsa.library.api.BookType;
+import org.whstsa.library.api.impl.Book;
+import org.whstsa.library.api.impl.Person;
+import org.whstsa.library.api.impl.library.Library;
+import org.whstsa.library.api.library.IMember;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class ObjectDelegateTest {
+
+    @Test
+    public void membershipsFollowAddsAndRemoves() {
+        Loader loader = Loader.getLoader();
+        Person person = new Person("Member", "Of Two", false);
+        loader.loadPerson(person);
+        Library first = new Library("First Membership");
+        Library second = new Library("Second Membership");
+        Library other = new Library("Other Membership");
+        loader.loadLibrary(first);
+        loader.loadLibrary(second);
+        loader.loadLibrary(other);
+
+        assertTrue(person.getMemberships().isEmpty());
+        assertFalse(ObjectDelegate.getActivePeople().contains(person));
+
+        IMember firstMember = first.addMember(person);
+        IMember secondMember = second.addMember(person);
+        assertEquals(new HashSet<>(Arrays.asList(firstMember, secondMember)), new HashSet<>(person.getMemberships()));
+        assertTrue(first.isMember(person));
+        assertFalse(other.isMember(person));
+        assertTrue(ObjectDelegate.getActivePeople().contains(person));
+
+        first.removeMember(firstMember);
+        assertEquals(Arrays.asList(secondMember), person.getMemberships());
+
+        // unloaded libraries are no longer memberships
+        loader.unloadLibrary(second.getID());
+        assertTrue(person.getMemberships().isEmpty());
+        assertFalse(ObjectDelegate.getActivePeople().contains(person));
+    }
+
+    @Test
+    public void lazyLibrariesIndexMembershipsWithoutHydrating() throws Exception {
+        UUID personID = UUID.randomUUID();
+        UUID memberID = UUID.randomUUID();
+        UUID libraryID = UUID.randomUUID();
+        UUID otherID = UUID.randomUUID();
+        String json = "{\"people\":[{\"firstName\":\"Lazy\",\"lastName\":\"Member\",\"teacher\":false,\"uuid\":\"" + personID + "\"}],"
+                + "\"books\":[],\"libraries\":["
+                + "{\"books\":[],\"members\":[{\"checkouts\":{},\"personID\":\"" + personID + "\",\"uuid\":\"" + memberID + "\"}],"
+                + "\"name\":\"Lazy Membership\",\"quantities\":{},\"uuid\":\"" + libraryID + "\"},"
+                + "{\"books\":[],\"members\":[{\"checkouts\":{},\"personID\":\"" + UUID.randomUUID() + "\",\"uuid\":\"" + UUID.randomUUID() + "\"}],"
+                + "\"name\":\"Other Lazy Membership\",\"quantities\":{},\"uuid\":\"" + otherID + "\"}]}";
+        Loader loader = Loader.getLoader();
+        loader.setLazyLoading(true);
+        try {
+            loader.load(new StringReader(json));
+        } finally {
+            loader.setLazyLoading(false);
+        }
+        Library library = (Library) ObjectDelegate.getLibrary(libraryID);
+        Library other = (Library) ObjectDelegate.getLibrary(otherID);
+        assertNotNull(library.getHydrator());
+
+        assertTrue(ObjectDelegate.getActivePeople().contains(ObjectDelegate.getPerson(personID)));
+        assertNotNull(library.getHydrator());
+
+        // only the library the person belongs to is hydrated to find the member
+        assertEquals(1, ObjectDelegate.getPerson(personID).getMemberships().size());
+        assertEquals(memberID, ObjectDelegate.getPerson(personID).getMemberships().get(0).getID());
+        assertNull(library.getHydrator());
+        assertNotNull(other.getHydrator());
+    }
+
+    @Test
+    public void membersAreFoundThroughTheRegistry() {
+        Loader loader = Loader.getLoader();
+        Library library = new Library("Registered Members");
+        loader.loadLibrary(library);
+        IMember member = library.addMember(new Person("Registered", "Member", false));
+
+        assertSame(member, ObjectDelegate.getMember(member.getID()));
+        assertSame(library, ObjectDelegate.getMemberLibrary(member.getID()));
+        assertSame(library, Library.findLibrary(member.getID()));
+
+        library.removeMember(member);
+        assertNull(ObjectDelegate.getMember(member.getID()));
+        assertNull(Library.findLibrary(member.getID()));
+        assertNull(ObjectDelegate.getMember(null));
+    }
+
+    @Test
+    public void lazyLibrariesRegisterTheirMembersWithoutHydrating() throws Exception {
+        UUID memberID = UUID.randomUUID();
+        UUID libraryID = UUID.randomUUID();
+        UUID otherID = UUID.randomUUID();
+        String json = "{\"libraries\":["
+                + "{\"books\":[],\"members\":[{\"checkouts\":{},\"personID\":\"" + UUID.randomUUID() + "\",\"uuid\":\"" + memberID + "\"}],"
+                + "\"name\":\"Lazy Registry\",\"quantities\":{},\"uuid\":\"" + libraryID + "\"},"
+                + "{\"books\":[],\"members\":[{\"checkouts\":{},\"personID\":\"" + UUID.randomUUID() + "\",\"uuid\":\"" + UUID.randomUUID() + "\"}],"
+                + "\"name\":\"Other Lazy Registry\",\"quantities\":{},\"uuid\":\"" + otherID + "\"}]}";
+        Loader loader = Loader.getLoader();
+        loader.setLazyLoading(true);
+        try {
+            loader.load(new StringReader(json));
+        } finally {
+            loader.setLazyLoading(false);
+        }
+        Library library = (Library) ObjectDelegate.getLibrary(libraryID);
+        Library other = (Library) ObjectDelegate.getLibrary(otherID);
+
+        assertSame(library, ObjectDelegate.getMemberLibrary(memberID));
+        assertNotNull(library.getHydrator());
+        assertEquals(memberID, ObjectDelegate.getMember(memberID).getID());
+        assertNull(library.getHydrator());
+        assertNotNull(other.getHydrator());
+    }
+
+    @Test
+    public void identitiesHoldTheirEntities() {
+        Loader loader = Loader.getLoader();
+        Person person = new Person("Typed", "Identity", false);
+        Book book = new Book("Typed Identities", "Author", BookType.GENERIC);
+        Library library = new Library("Typed Identities");
+        loader.loadPerson(person);
+        loader.loadBook(book);
+        loader.loadLibrary(library);
+        IMember member = library.addMember(person);
+
+        assertEquals(EntityType.PERSON, ObjectDelegate.getEntityType(person.getID()));
+        assertEquals(EntityType.BOOK, ObjectDelegate.getEntityType(book.getID()));
+        assertEquals(EntityType.LIBRARY, ObjectDelegate.getEntityType(library.getID()));
+        assertEquals(EntityType.MEMBER, ObjectDelegate.getEntityType(member.getID()));
+        assertSame(person, ObjectDelegate.getSerializable(person.getID()));
+        assertSame(book, ObjectDelegate.getSerializable(book.getID()));
+        assertSame(library, ObjectDelegate.getSerializable(library.getID()));
+        assertSame(member, ObjectDelegate.getSerializable(member.getID()));
+        assertSame(member, loader.getIdentity(member.getID()).getEntity());
+        assertSame(library, loader.getIdentity(member.getID()).getOwner());
+        assertNull(ObjectDelegate.getSerializable(UUID.randomUUID()));
+
+        loader.unloadLibrary(library.getID());
+        assertNull(ObjectDelegate.getEntityType(library.getID()));
+        assertNull(ObjectDelegate.getEntityType(member.getID()));
+        assertNull(ObjectDelegate.getSerializable(member.getID()));
+    }
+
+    @Test
+    public void deferredMembersAreReplacedOnHydration() throws Exception {
+        UUID memberID = UUID.randomUUID();
+        UUID libraryID = UUID.randomUUID();
+        String json = "{\"libraries\":[{\"books\":[],\"members\":[{\"checkouts\":{},\"personID\":\"" + UUID.randomUUID() + "\",\"uuid\":\"" + memberID + "\"}],"
+                + "\"name\":\"Deferred Identities\",\"quantities\":{},\"uuid\":\"" + libraryID + "\"}]}";
+        Loader loader = Loader.getLoader();
+        loader.setLazyLoading(true);
+        try {
+            loader.load(new StringReader(json));
+        } finally {
+            loader.setLazyLoading(false);
+        }
+        Library library = (Library) ObjectDelegate.getLibrary(libraryID);
+
+        // the type is known from the registry alone
+        assertEquals(EntityType.MEMBER, ObjectDelegate.getEntityType(memberID));
+        assertSame(library, ObjectDelegate.getMemberLibrary(memberID));
+        assertNotNull(library.getHydrator());
+
+        IMember member = (IMember) ObjectDelegate.getSerializable(memberID);
+        assertNull(library.getHydrator());
+        assertSame(library.getMemberMap().get(memberID), member);
+        assertSame(member, loader.getIdentity(memberID).getEntity());
+    }
+
+}
@@ -0,0 +1,195 @@
+package org.whstsa.library.util;
+
+import org.junit.Test;
+import org.whstsa.library.api.BookType;
+import org.whstsa.library.api.Identifiable;
+import org.whstsa.library.api.impl.Book;
+import org.whstsa.library.db.Loader;
+import org.whstsa.library.db.ObjectDelegate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class NameIndexTest {
+
+    @Test
+    public void matchesAreRankedByTierThenLength() {
+        NameIndex<Item> index = new NameIndex<>(Item::getID);
+        Item exact = index(index, "Dune");
+        Item caseInsensitive = index(index, "DUNE");
+        Item longSubstring = index(index, "Children of Dune");
+        Item shortSubstring = index(index, "Dune Messiah");
+        index(index, "Neuromancer");
+
+        assertEquals(Arrays.asList(exact, caseInsensitive, shortSubstring, longSubstring), index.find("Dune"));
+        assertEquals(caseInsensitive, index.findFirst("  dune  "));
+        assertEquals(Arrays.asList(shortSubstring), index.find("messiah"));
+        assertTrue(index.find("Foundation").isEmpty());
+        assertNull(index.findFirst(""));
+    }
+
+    @Test
+    public void equalNamesAreOrderedByID() {
+        NameIndex<Item> index = new NameIndex<>(Item::getID);
+        Item second = new Item("Same Name", new UUID(0, 2));
+        Item first = new Item("Same Name", new UUID(0, 1));
+        index.add(second);
+        index.add(first);
+
+        assertEquals(Arrays.asList(first, second), index.find("Same Name"));
+    }
+
+    @Test
+    public void shortQueriesScanEveryItem() {
+        NameIndex<Item> index = new NameIndex<>(Item::getID);
+        Item item = index(index, "Jo Ann");
+
+        assertEquals(Arrays.asList(item), index.find("o a"));
+        assertEquals(Arrays.asList(item), index.find("jo"));
+    }
+
+    @Test
+    public void renamedAndRemovedItemsAreReindexed() {
+        NameIndex<Item> index = new NameIndex<>(Item::getID);
+        Item item = index(index, "Old Name");
+
+        item.name = "New Name";
+        index.update(item);
+        assertTrue(index.find("Old").isEmpty());
+        assertEquals(item, index.findFirst("new"));
+
+        index.remove(item);
+        assertEquals(0, index.size());
+        assertNull(index.findFirst("New Name"));
+        index.update(item);
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void removalsCompactTheSlots() {
+        NameIndex<Item> index = new NameIndex<>(Item::getID);
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            items.add(index(index, "Item " + i));
+        }
+        for (int i = 0; i < 2900; i++) {
+            index.remove(items.get(i));
+        }
+
+        assertEquals(100, index.size());
+        assertEquals(items.get(2999), index.findFirst("item 2999"));
+        assertEquals(100, index.find("item").size());
+        assertNull(index.findFirst("item 10"));
+    }
+
+    @Test
+    public void listsAreSearchedWithTheSameRanking() {
+        Item substring = new Item("The Hobbit", UUID.randomUUID());
+        Item caseInsensitive = new Item("hobbit", UUID.randomUUID());
+        Item tie = new Item("HOBBIT", UUID.randomUUID());
+
+        assertEquals(caseInsensitive, ListUtils.findIdentifiable(Arrays.asList(substring, caseInsensitive, tie), "Hobbit"));
+        assertEquals(substring, ListUtils.findIdentifiable(Arrays.asList(substring), "hob"));
+        assertNull(ListUtils.findIdentifiable(Arrays.asList(substring), "Silmarillion"));
+    }
+
+    @Test
+    public void loadedBooksAreReindexedOnRename() {
+        Loader loader = Loader.getLoader();
+        Book book = new Book("Name Index Before", "Author", BookType.GENERIC);
+        loader.loadBook(book);
+        try {
+            assertEquals(book, ObjectDelegate.findBookByTitle("name index before"));
+            book.setTitle("Name Index After");
+            assertNull(ObjectDelegate.findBookByTitle("Name Index Before"));
+            assertEquals(book, ObjectDelegate.findBookByTitle("Name Index After"));
+        } finally {
+            loader.unloadBook(book.getID());
+        }
+        assertNull(ObjectDelegate.findBookByTitle("Name Index After"));
+    }
+
+    @Test
+    public void findSimilarToleratesTypos() {
+        NameIndex<Item> index = new NameIndex<>(Item::getID);
+        Item potter = index(index, "Harry Potter");
+        Item potty = index(index, "Harry Potty");
+        index(index, "The Lord of the Rings");
+        index(index, "Dune");
+
+        assertEquals(Arrays.asList(potter, potty), index.findSimilar("Hary Poter", NameIndex.DEFAULT_SIMILARITY, 10));
+        assertEquals(Arrays.asList(potter), index.findSimilar("Hary Poter", NameIndex.DEFAULT_SIMILARITY, 1));
+        assertTrue(index.findSimilar("Zzyzx", NameIndex.DEFAULT_SIMILARITY, 10).isEmpty());
+    }
+
+    @Test
+    public void similarityIsTheJaccardIndexOfTrigrams() {
+        NameIndex<Item> index = new NameIndex<>(Item::getID);
+        Item dune = index(index, "Dune");
+        Item dunes = index(index, "Dunes");
+        Map<Item, Double> similarities = index.getSimilarities("DUNE", 0);
+
+        assertEquals(1.0, similarities.get(dune), 1e-9);
+        assertTrue(similarities.get(dunes) > 0 && similarities.get(dunes) < 1);
+        assertTrue(index.getSimilarities("", 0).isEmpty());
+    }
+
+    @Test
+    public void equallySimilarNamesAreOrderedByNameThenID() {
+        NameIndex<Item> index = new NameIndex<>(Item::getID);
+        Item second = new Item("Same Name", new UUID(0, 2));
+        Item first = new Item("Same Name", new UUID(0, 1));
+        index.add(second);
+        index.add(first);
+
+        assertEquals(Arrays.asList(first, second), index.findSimilar("Same Nam", NameIndex.DEFAULT_SIMILARITY, 10));
+    }
+
+    @Test
+    public void compactedItemsAreNotSimilar() {
+        NameIndex<Item> index = new NameIndex<>(Item::getID);
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            items.add(index(index, "Volume " + i));
+        }
+        for (int i = 0; i < 1900; i++) {
+            index.remove(items.get(i));
+        }
+
+        for (Item item : index.findSimilar("Volume 10", 0, 1000)) {
+            assertTrue(items.indexOf(item) >= 1900);
+        }
+    }
+
+    private static Item index(NameIndex<Item> index, String name) {
+        Item item = new Item(name, UUID.randomUUID());
+        index.add(item);
+        return item;
+    }
+
+    private static class Item implements Identifiable {
+
+        private final UUID uuid;
+        private String name;
+
+        private Item(String name, UUID uuid) {
+            this.name = name;
+            this.uuid = uuid;
+        }
+
+        @Override
+        public String getName() {
+            return this.name;
+        }
+
+        private UUID getID() {
+            return this.uuid;
+        }
+    }
+
+}
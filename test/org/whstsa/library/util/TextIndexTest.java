@@ -0,0 +1,89 @@
+package org.whstsa.library.util;
+
+import org.junit.Test;
+import org.whstsa.library.api.BookType;
+import org.whstsa.library.api.books.IBook;
+import org.whstsa.library.api.impl.Book;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class TextIndexTest {
+
+    private final TextIndex<IBook> index = new TextIndex<>(book -> book.getName() + " " + book.getAuthorName(), IBook::getID);
+
+    @Test
+    public void wholeWordsRankAbovePrefixes() {
+        IBook hobbits = this.add("Hobbits of the Shire", "Someone");
+        IBook hobbit = this.add("The Hobbit", "J. R. R. Tolkien");
+        this.add("Dune", "Frank Herbert");
+        assertEquals(Arrays.asList(hobbit, hobbits), this.index.search("hobbit"));
+        // a prefix of both words is an equal match, so the names decide
+        assertEquals(Arrays.asList(hobbits, hobbit), this.index.search("HOB"));
+    }
+
+    @Test
+    public void everyQueryWordHasToMatch() {
+        IBook rings = this.add("The Lord of the Rings", "J. R. R. Tolkien");
+        this.add("Lord Jim", "Joseph Conrad");
+        this.add("The Two Towers", "J. R. R. Tolkien");
+        assertEquals(Collections.singletonList(rings), this.index.search("lord rin"));
+        assertEquals(Collections.singletonList(rings), this.index.search("tolkien, lord"));
+        assertEquals(Collections.emptyList(), this.index.search("lord towers"));
+    }
+
+    @Test
+    public void morePreciseMatchesRankFirst() {
+        IBook prefixOnly = this.add("Harrying Potters", "Someone");
+        IBook oneWord = this.add("Harry Potters", "Someone");
+        IBook bothWords = this.add("Harry Potter", "J. K. Rowling");
+        assertEquals(Arrays.asList(bothWords, oneWord, prefixOnly), this.index.search("harry potter"));
+    }
+
+    @Test
+    public void tiesAreOrderedByNameThenID() {
+        IBook first = this.add("Same Title", "Author", new UUID(0, 1));
+        IBook second = this.add("Same Title", "Author", new UUID(0, 2));
+        IBook earlier = this.add("Other Title", "Author", new UUID(0, 3));
+        assertEquals(Arrays.asList(earlier, first, second), this.index.search("title"));
+    }
+
+    @Test
+    public void updatesAndRemovalsAreReflected() {
+        IBook book = this.add("Old Name", "Author");
+        book.setTitle("New Name");
+        assertEquals(Collections.singletonList(book), this.index.search("old"));
+        this.index.update(book);
+        assertEquals(Collections.emptyList(), this.index.search("old"));
+        assertEquals(Collections.singletonList(book), this.index.search("new"));
+        this.index.remove(book);
+        assertEquals(Collections.emptyList(), this.index.search("new"));
+        assertEquals(0, this.index.size());
+    }
+
+    @Test
+    public void queriesWithoutWordsMatchNothing() {
+        this.add("Anything", "Anyone");
+        assertEquals(Collections.emptyList(), this.index.search(" - "));
+        assertEquals(Collections.emptyList(), this.index.search(null));
+    }
+
+    @Test
+    public void tokenizeSplitsAtPunctuationAndDropsRepeats() {
+        assertArrayEquals(new String[]{"harry", "potter", "2nd", "edition"}, TextIndex.tokenize("Harry Potter: 2nd Edition (Harry)"));
+    }
+
+    private IBook add(String title, String author) {
+        return this.add(title, author, UUID.randomUUID());
+    }
+
+    private IBook add(String title, String author, UUID uuid) {
+        IBook book = new Book(title, author, BookType.GENERIC, uuid);
+        this.index.add(book);
+        return book;
+    }
+
+}
@@ -0,0 +1,84 @@
+package org.whstsa.library.util;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class UUIDIntMapTest {
+
+    @Test
+    public void primitiveAccessMatchesAHashMap() {
+        Random random = new Random(16);
+        List<UUID> keys = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            // a small key space with shared halves forces collisions and probe chains
+            keys.add(new UUID(random.nextInt(40), random.nextInt(40)));
+        }
+        UUIDIntMap map = new UUIDIntMap();
+        Map<UUID, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            UUID key = keys.get(random.nextInt(keys.size()));
+            switch (random.nextInt(4)) {
+                case 0:
+                    map.putInt(key, i);
+                    expected.put(key, i);
+                    break;
+                case 1:
+                    assertEquals(expected.merge(key, 3, Integer::sum).intValue(), map.addInt(key, 3));
+                    break;
+                case 2:
+                    assertEquals(expected.remove(key) != null, map.removeKey(key));
+                    break;
+                default:
+                    assertEquals(expected.getOrDefault(key, -1).intValue(), map.getInt(key, -1));
+                    assertEquals(expected.containsKey(key), map.containsKey(key.getMostSignificantBits(), key.getLeastSignificantBits()));
+                    break;
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        assertEquals(expected, map);
+        assertEquals(expected, new HashMap<>(map));
+    }
+
+    @Test
+    public void mapMethodsBox() {
+        UUIDIntMap map = new UUIDIntMap(1);
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+
+        assertNull(map.put(first, 1));
+        assertEquals(Integer.valueOf(1), map.put(first, 2));
+        map.put(second, 5);
+        assertEquals(Integer.valueOf(2), map.get(first));
+        assertNull(map.get("not a uuid"));
+        assertFalse(map.containsKey("not a uuid"));
+        assertTrue(map.containsKey(second));
+
+        for (Map.Entry<UUID, Integer> entry : map.entrySet()) {
+            entry.setValue(entry.getValue() * 10);
+        }
+        assertEquals(50, map.getInt(second, 0));
+
+        Map<UUID, Integer> visited = new HashMap<>();
+        map.forEachInt(visited::put);
+        assertEquals(map, visited);
+
+        assertEquals(Integer.valueOf(20), map.remove(first));
+        assertNull(map.remove(first));
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertEquals(0, map.getInt(second, 0));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void iteratorsCannotRemove() {
+        UUIDIntMap map = new UUIDIntMap();
+        map.putInt(UUID.randomUUID(), 1);
+        Iterator<Map.Entry<UUID, Integer>> iterator = map.entrySet().iterator();
+        iterator.next();
+        iterator.remove();
+    }
+
+}